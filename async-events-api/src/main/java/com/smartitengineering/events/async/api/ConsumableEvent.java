@@ -0,0 +1,43 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api;
+
+import java.io.InputStream;
+
+/**
+ * An event received by a subscriber and handed over to consumers.
+ * @author imyousuf
+ */
+public interface ConsumableEvent {
+
+  String getId();
+
+  String getUniqueId();
+
+  String getContentType();
+
+  String getContentAsString();
+
+  /**
+   * @return Stream of the content of the event as UTF-8 encoded bytes, without converting it to a string
+   */
+  InputStream getContentAsStream();
+
+  String getCreationDate();
+}
@@ -18,6 +18,10 @@
  */
 package com.smartitengineering.events.async.api;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Future;
+
 /**
  *
  * @author imyousuf
@@ -25,4 +29,21 @@ package com.smartitengineering.events.async.api;
 public interface EventPublisher {
 
   public boolean publishEvent(String eventContentType, String eventMessage);
+
+  /**
+   * Publish a batch of events. Results are returned in the iteration order of the events passed.
+   * @param events Events to publish
+   * @return Result of publication for each event
+   */
+  public List<PublicationResult> publishEvents(Collection<PublishableEvent> events);
+
+  /**
+   * Publish an event without blocking the caller till the event is published.
+   * @param eventContentType Content type of the event
+   * @param eventMessage The event message
+   * @param callback Callback to notify once publication completes, could be null
+   * @return Future that completes with the result of the publication
+   */
+  public Future<Boolean> publishEventAsync(String eventContentType, String eventMessage,
+                                           PublicationCallback callback);
 }
@@ -0,0 +1,154 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A future whose result is set explicitly once an event has been published. The first of setting the result,
+ * setting an error or cancelling completes the future, later attempts are ignored. On completion the optional
+ * callback is notified using the callback executor if one is available, else in the completing thread.
+ * @author imyousuf
+ */
+public class PublicationFuture implements Future<Boolean> {
+
+  private static final int PENDING = 0;
+  private static final int COMPLETING = 1;
+  private static final int PUBLISHED = 2;
+  private static final int FAILED = 3;
+  private static final int CANCELLED = 4;
+  private final AtomicInteger state = new AtomicInteger(PENDING);
+  private final CountDownLatch completion = new CountDownLatch(1);
+  private Boolean published;
+  private Throwable error;
+  private final PublicationCallback callback;
+  private final Executor callbackExecutor;
+
+  public PublicationFuture() {
+    this(null, null);
+  }
+
+  public PublicationFuture(PublicationCallback callback, Executor callbackExecutor) {
+    this.callback = callback;
+    this.callbackExecutor = callbackExecutor;
+  }
+
+  public void set(Boolean published) {
+    if (state.compareAndSet(PENDING, COMPLETING)) {
+      this.published = published;
+      complete(PUBLISHED);
+    }
+  }
+
+  public void setException(Throwable error) {
+    if (state.compareAndSet(PENDING, COMPLETING)) {
+      this.error = error;
+      complete(FAILED);
+    }
+  }
+
+  /**
+   * Cancel the publication if it has not completed yet. Cancelling does not stop publishing the event, only
+   * notifying its result.
+   */
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    if (state.compareAndSet(PENDING, CANCELLED)) {
+      completion.countDown();
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return state.get() == CANCELLED;
+  }
+
+  @Override
+  public boolean isDone() {
+    return state.get() != PENDING;
+  }
+
+  @Override
+  public Boolean get() throws InterruptedException, ExecutionException {
+    completion.await();
+    return getResult();
+  }
+
+  @Override
+  public Boolean get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+                                                         TimeoutException {
+    if (!completion.await(timeout, unit)) {
+      throw new TimeoutException();
+    }
+    return getResult();
+  }
+
+  /**
+   * Invoked once the publication completes with a result or an error, but not when cancelled.
+   */
+  protected void done() {
+    if (callback == null) {
+      return;
+    }
+    final Runnable notifier = new Runnable() {
+
+      @Override
+      public void run() {
+        if (state.get() == PUBLISHED) {
+          callback.published(Boolean.TRUE.equals(published));
+        }
+        else {
+          callback.failed(error);
+        }
+      }
+    };
+    if (callbackExecutor == null) {
+      notifier.run();
+    }
+    else {
+      callbackExecutor.execute(notifier);
+    }
+  }
+
+  private void complete(int outcome) {
+    state.set(outcome);
+    completion.countDown();
+    done();
+  }
+
+  private Boolean getResult() throws ExecutionException {
+    switch (state.get()) {
+      case PUBLISHED:
+        return published;
+      case CANCELLED:
+        throw new CancellationException();
+      default:
+        throw new ExecutionException(error);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api;
+
+import java.io.Serializable;
+
+/**
+ * Outcome of publishing a single event of a batch. If publication failed due to an error, e.g. the hub being
+ * unavailable, the error is available from {@link #getError()}, else it is null.
+ * @author imyousuf
+ */
+public class PublicationResult implements Serializable {
+
+  private final PublishableEvent event;
+  private final boolean published;
+  private final Throwable error;
+
+  public PublicationResult(PublishableEvent event, boolean published, Throwable error) {
+    this.event = event;
+    this.published = published;
+    this.error = error;
+  }
+
+  public PublishableEvent getEvent() {
+    return event;
+  }
+
+  public boolean isPublished() {
+    return published;
+  }
+
+  public Throwable getError() {
+    return error;
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api;
+
+import java.io.InputStream;
+
+/**
+ * A consumer that reads the content of events as a stream of bytes instead of a string, avoiding conversions of
+ * large contents. Subscribers invoke {@link #consumeStream(java.lang.String, java.io.InputStream)} instead of
+ * {@link #consume(java.lang.String, java.lang.String)} for such consumers.
+ * @author imyousuf
+ */
+public interface StreamEventConsumer extends EventConsumer {
+
+  /**
+   * Consume an event.
+   * @param eventContentType Content type of the event
+   * @param eventContent UTF-8 encoded content of the event
+   */
+  void consumeStream(String eventContentType, InputStream eventContent);
+}
@@ -27,4 +27,18 @@ public interface UriStorer {
   void storeNextUri(String uri);
 
   String getNextUri();
+
+  /**
+   * Store the URI to poll next along with the id of the last event consumed from the page it refers to, so that
+   * polling can resume right after that event instead of from the start of the page.
+   * @param uri The URI to poll next
+   * @param lastConsumedEventId Id of the last consumed event of the page, null if none was consumed
+   */
+  void storeCheckpoint(String uri, String lastConsumedEventId);
+
+  /**
+   * Retrieve the id of the last event consumed from the page referred by {@link #getNextUri()}.
+   * @return Id of the last consumed event or null if none of the events of the page were consumed
+   */
+  String getLastConsumedEventId();
 }
@@ -0,0 +1,121 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import junit.framework.TestCase;
+
+/**
+ * Tests completion of publication futures and notification of their callbacks.
+ */
+public class PublicationFutureTest extends TestCase {
+
+  public void testFirstCompletionWins() throws Exception {
+    final RecordingCallback callback = new RecordingCallback();
+    final PublicationFuture future = new PublicationFuture(callback, null);
+    assertFalse(future.isDone());
+    future.set(Boolean.TRUE);
+    future.set(Boolean.FALSE);
+    future.setException(new IllegalStateException());
+    assertFalse(future.cancel(true));
+    assertTrue(future.isDone());
+    assertFalse(future.isCancelled());
+    assertTrue(future.get());
+    assertEquals(1, callback.outcomes.size());
+    assertEquals(Boolean.TRUE, callback.outcomes.get(0));
+  }
+
+  public void testErrorIsReportedWithCause() throws Exception {
+    final RecordingCallback callback = new RecordingCallback();
+    final PublicationFuture future = new PublicationFuture(callback, null);
+    final EventPublicationException error = new EventPublicationException(new IOException("Hub unavailable"));
+    future.setException(error);
+    try {
+      future.get(1, TimeUnit.SECONDS);
+      fail("Error should have been reported");
+    }
+    catch (ExecutionException ex) {
+      assertSame(error, ex.getCause());
+    }
+    assertEquals(1, callback.outcomes.size());
+    assertSame(error, callback.outcomes.get(0));
+  }
+
+  public void testCancelledFutureDoesNotNotify() throws Exception {
+    final RecordingCallback callback = new RecordingCallback();
+    final PublicationFuture future = new PublicationFuture(callback, null);
+    assertTrue(future.cancel(false));
+    future.set(Boolean.TRUE);
+    assertTrue(future.isDone());
+    assertTrue(future.isCancelled());
+    try {
+      future.get();
+      fail("Cancellation should have been reported");
+    }
+    catch (CancellationException ex) {
+    }
+    assertTrue(callback.outcomes.isEmpty());
+  }
+
+  public void testGetTimesOutWhilePending() throws Exception {
+    final PublicationFuture future = new PublicationFuture();
+    try {
+      future.get(10, TimeUnit.MILLISECONDS);
+      fail("Pending publication should have timed out");
+    }
+    catch (TimeoutException ex) {
+    }
+  }
+
+  public void testCallbackIsNotifiedOnExecutor() throws Exception {
+    final RecordingCallback callback = new RecordingCallback();
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+    final PublicationFuture future = new PublicationFuture(callback, new Executor() {
+
+      public void execute(Runnable command) {
+        tasks.add(command);
+      }
+    });
+    future.set(Boolean.FALSE);
+    assertTrue(callback.outcomes.isEmpty());
+    assertEquals(1, tasks.size());
+    tasks.get(0).run();
+    assertEquals(Boolean.FALSE, callback.outcomes.get(0));
+  }
+
+  private static class RecordingCallback implements PublicationCallback {
+
+    private final List<Object> outcomes = new ArrayList<Object>();
+
+    public void published(boolean published) {
+      outcomes.add(Boolean.valueOf(published));
+    }
+
+    public void failed(Throwable error) {
+      outcomes.add(error);
+    }
+  }
+}
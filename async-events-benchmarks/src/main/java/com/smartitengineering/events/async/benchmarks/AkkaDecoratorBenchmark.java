@@ -0,0 +1,147 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.benchmarks;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+import com.smartitengineering.events.async.api.EventPublisher;
+import com.smartitengineering.events.async.api.PublicationCallback;
+import com.smartitengineering.events.async.api.PublicationFuture;
+import com.smartitengineering.events.async.api.PublicationResult;
+import com.smartitengineering.events.async.api.PublishableEvent;
+import com.smartitengineering.events.async.api.impl.akka.decorator.EventPublisherImpl;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Publishing through the Akka decorator, {@link EventPublisherImpl}, to a decorated publisher that does nothing, so
+ * that only the cost of the actors in between is measured. The decorator is configured by the
+ * <tt>decoratorconfig.properties</tt> of this module, which binds the decorated publisher with {@link Module}.
+ * @author imyousuf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AkkaDecoratorBenchmark {
+
+  private static final int BATCH_SIZE = 16;
+  private static final String CONTENT_TYPE = "text/plain";
+  private final String message = StubHub.getContent(256);
+  private final EventPublisher decoratee = new NoOpEventPublisher();
+  private EventPublisher publisher;
+  private Collection<PublishableEvent> batch;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    StubHub.quietLogging();
+    publisher = new EventPublisherImpl();
+    final List<PublishableEvent> events = new ArrayList<PublishableEvent>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; ++i) {
+      events.add(new PublishableEvent(CONTENT_TYPE, message));
+    }
+    batch = events;
+    if (!publisher.publishEvent(CONTENT_TYPE, message)) {
+      throw new IllegalStateException("Decorator did not publish the event");
+    }
+  }
+
+  /**
+   * Calling the decorated publisher directly, as the baseline for the others.
+   */
+  @Benchmark
+  public boolean baseline() {
+    return decoratee.publishEvent(CONTENT_TYPE, message);
+  }
+
+  @Benchmark
+  public boolean publishEvent() {
+    return publisher.publishEvent(CONTENT_TYPE, message);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean publishEventContended() {
+    return publisher.publishEvent(CONTENT_TYPE, message);
+  }
+
+  @Benchmark
+  public Boolean publishEventAsync() throws Exception {
+    return publisher.publishEventAsync(CONTENT_TYPE, message, null).get();
+  }
+
+  /**
+   * Scored per event so that it compares with {@link #publishEvent()}.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public List<PublicationResult> publishEvents() {
+    return publisher.publishEvents(batch);
+  }
+
+  /**
+   * Binds the decorated publisher, referred to by the <tt>moduleClass</tt> of the decorator configuration.
+   */
+  public static class Module extends AbstractModule {
+
+    @Override
+    protected void configure() {
+      bind(EventPublisher.class).annotatedWith(Names.named("decorateePublisher")).to(NoOpEventPublisher.class);
+    }
+  }
+
+  public static class NoOpEventPublisher implements EventPublisher {
+
+    public boolean publishEvent(String eventContentType, String eventMessage) {
+      return true;
+    }
+
+    public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+      final List<PublicationResult> results = new ArrayList<PublicationResult>(events.size());
+      for (PublishableEvent event : events) {
+        results.add(new PublicationResult(event, true, null));
+      }
+      return results;
+    }
+
+    public PublicationFuture publishEventAsync(String eventContentType, String eventMessage,
+                                               PublicationCallback callback) {
+      final PublicationFuture future = new PublicationFuture(callback, null);
+      future.set(Boolean.TRUE);
+      return future;
+    }
+  }
+}
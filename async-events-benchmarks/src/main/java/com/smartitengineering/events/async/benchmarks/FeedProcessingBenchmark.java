@@ -0,0 +1,153 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.benchmarks;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
+import com.smartitengineering.events.async.api.EventConsumer;
+import com.smartitengineering.events.async.api.UriStorer;
+import com.smartitengineering.events.async.api.impl.hub.EventSubscriberImpl;
+import com.smartitengineering.util.rest.client.ConnectionConfig;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Processing a page of the Atom feed of events with {@link EventSubscriberImpl}, from reading the page through
+ * fetching or decoding its events to handing them to a consumer. As the cursor is never advanced every poll processes
+ * the same canned page served by a {@link StubHub}.
+ * @author imyousuf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FeedProcessingBenchmark {
+
+  @Param({"10", "100"})
+  private int entries;
+  @Param({"256"})
+  private int contentLength;
+  @Param({"false", "true"})
+  private boolean inlineContent;
+  private StubHub hub;
+  private EventSubscriberImpl subscriber;
+  private CountingConsumer consumer;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    StubHub.quietLogging();
+    hub = new StubHub();
+    final String feedUri = hub.addFeed(entries, contentLength, inlineContent);
+    final int port = hub.getPort();
+    consumer = new CountingConsumer();
+    subscriber = Guice.createInjector(new AbstractModule() {
+
+      @Override
+      protected void configure() {
+        ConnectionConfig config = new ConnectionConfig();
+        config.setBasicUri("");
+        config.setContextPath("/hub/");
+        config.setHost("localhost");
+        config.setPort(port);
+        bind(ConnectionConfig.class).toInstance(config);
+        bind(String.class).annotatedWith(Names.named("eventAtomFeedUri")).toInstance(feedUri);
+        bind(String.class).annotatedWith(Names.named("subscribtionCronExpression")).toInstance("0 0 0 * * ?");
+        bind(new TypeLiteral<Collection<EventConsumer>>() {
+        }).toInstance(Collections.<EventConsumer>singletonList(consumer));
+        bind(UriStorer.class).toInstance(new HeadUriStorer());
+        bindConstant().annotatedWith(Names.named("subscribeInlineEventContent")).to(inlineContent);
+        //Poll only when the benchmark asks to, the scheduled poll is stopped right away
+        bindConstant().annotatedWith(Names.named("subscribeSharedScheduler")).to(true);
+        bindConstant().annotatedWith(Names.named("subscribePollIntervalMillis")).to(TimeUnit.DAYS.toMillis(1));
+      }
+    }).getInstance(EventSubscriberImpl.class);
+    subscriber.stopPolling();
+    subscriber.poll();
+    if (subscriber.getLastPollEventCount() != entries || consumer.consumed != entries) {
+      throw new IllegalStateException("Events of the stub feed were not consumed");
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    subscriber.stopPolling();
+    hub.stop();
+  }
+
+  @Benchmark
+  public int poll() {
+    subscriber.poll();
+    return subscriber.getLastPollEventCount();
+  }
+
+  /**
+   * Always polls the head of the feed.
+   */
+  private static class HeadUriStorer implements UriStorer {
+
+    public void storeNextUri(String uri) {
+    }
+
+    public String getNextUri() {
+      return null;
+    }
+
+    public void storeCheckpoint(String uri, String lastConsumedEventId) {
+    }
+
+    public String getLastConsumedEventId() {
+      return null;
+    }
+  }
+
+  private static class CountingConsumer implements EventConsumer {
+
+    private int consumed;
+    private long consumedLength;
+
+    public void startConsumption() {
+    }
+
+    public void consume(String eventContentType, String eventMessage) {
+      consumed++;
+      consumedLength += eventMessage.length();
+    }
+
+    public void endConsumption(boolean prematureEnd) {
+    }
+  }
+}
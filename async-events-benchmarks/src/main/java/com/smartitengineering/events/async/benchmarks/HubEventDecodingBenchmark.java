@@ -0,0 +1,84 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.benchmarks;
+
+import com.smartitengineering.events.async.api.impl.hub.HubEvent;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding the JSON representation of a {@link HubEvent}, from the bytes of a response as when fetching an event and
+ * from a string as when decoding an event inlined in a feed entry.
+ * @author imyousuf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HubEventDecodingBenchmark {
+
+  @Param({"64", "4096", "65536"})
+  private int contentLength;
+  private final ObjectMapper mapper = new ObjectMapper();
+  private String json;
+  private byte[] jsonBytes;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    json = StubHub.getEventJson("bench-1", 1, contentLength);
+    jsonBytes = json.getBytes("UTF-8");
+    if (decodeString().getContentAsString().length() != contentLength) {
+      throw new IllegalStateException("Event content was not decoded");
+    }
+  }
+
+  @Benchmark
+  public HubEvent decodeBytes() throws IOException {
+    return mapper.readValue(new ByteArrayInputStream(jsonBytes), HubEvent.class);
+  }
+
+  @Benchmark
+  public HubEvent decodeString() throws IOException {
+    return mapper.readValue(json, HubEvent.class);
+  }
+
+  /**
+   * Decoding along with materializing the content as a string, as consumers of strings need it.
+   */
+  @Benchmark
+  public String decodeContentAsString() throws IOException {
+    return mapper.readValue(new ByteArrayInputStream(jsonBytes), HubEvent.class).getContentAsString();
+  }
+}
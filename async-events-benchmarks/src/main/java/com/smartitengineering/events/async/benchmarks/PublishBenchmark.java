@@ -0,0 +1,108 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.benchmarks;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.name.Names;
+import com.smartitengineering.events.async.api.PublicationResult;
+import com.smartitengineering.events.async.api.PublishableEvent;
+import com.smartitengineering.events.async.api.impl.hub.EventPublisherImpl;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Publishing events to the hub with {@link EventPublisherImpl}, one at a time and in batches, against a
+ * {@link StubHub} on the loopback interface.
+ * @author imyousuf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PublishBenchmark {
+
+  private static final int BATCH_SIZE = 16;
+  @Param({"64", "4096"})
+  private int contentLength;
+  private StubHub hub;
+  private EventPublisherImpl publisher;
+  private String message;
+  private Collection<PublishableEvent> batch;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    StubHub.quietLogging();
+    hub = new StubHub();
+    final String channelHubUri = hub.getChannelHubUri();
+    publisher = Guice.createInjector(new AbstractModule() {
+
+      @Override
+      protected void configure() {
+        bind(String.class).annotatedWith(Names.named("channelHubUri")).toInstance(channelHubUri);
+      }
+    }).getInstance(EventPublisherImpl.class);
+    message = StubHub.getContent(contentLength);
+    final List<PublishableEvent> events = new ArrayList<PublishableEvent>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; ++i) {
+      events.add(new PublishableEvent("text/plain", message));
+    }
+    batch = events;
+    if (!publisher.publishEvent("text/plain", message) || hub.getPostedEvents() != 1) {
+      throw new IllegalStateException("Stub hub did not accept the event");
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    hub.stop();
+  }
+
+  @Benchmark
+  public boolean publishEvent() {
+    return publisher.publishEvent("text/plain", message);
+  }
+
+  /**
+   * Scored per event so that it compares with {@link #publishEvent()}.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public List<PublicationResult> publishEvents() {
+    return publisher.publishEvents(batch);
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A stand in for the event hub serving canned responses from memory, so that benchmarks measure the client side
+ * only. It accepts every event posted to the channel hub and serves Atom pages of events registered with
+ * {@link #addFeed(int, int, boolean)} along with the events themselves.
+ * @author imyousuf
+ */
+public class StubHub {
+
+  public static final String CHANNEL_PATH = "/hub/api/channels/bench/";
+  public static final String HUB_PATH = CHANNEL_PATH + "hub";
+  public static final String CREATION_DATE = "2011-01-01T00:00:00Z";
+  private static final String ATOM_CONTENT_TYPE = "application/atom+xml";
+  private static final String JSON_CONTENT_TYPE = "application/json";
+  private final HttpServer server;
+  private final ExecutorService executorService;
+  private final Map<String, Response> responses = new ConcurrentHashMap<String, Response>();
+  private final AtomicLong postedEvents = new AtomicLong();
+
+  public StubHub() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    executorService = Executors.newFixedThreadPool(8, new ThreadFactory() {
+
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "stub-hub");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    server.setExecutor(executorService);
+    server.createContext("/", new HttpHandler() {
+
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          respond(exchange);
+        }
+        finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public String getBaseUri() {
+    return "http://localhost:" + getPort();
+  }
+
+  public String getChannelHubUri() {
+    return getBaseUri() + HUB_PATH;
+  }
+
+  public long getPostedEvents() {
+    return postedEvents.get();
+  }
+
+  /**
+   * Register a single Atom page of events, newest first as the hub serves them, along with the events it links to.
+   * @param entries Number of entries in the page
+   * @param contentLength Number of characters in the content of each event
+   * @param inlineContent Whether to embed the event in the content of its entry as well
+   * @return Absolute URI of the page
+   */
+  public String addFeed(int entries, int contentLength, boolean inlineContent) {
+    final String feedKey = new StringBuilder().append(entries).append('-').append(contentLength).append('-').append(
+        inlineContent).toString();
+    final String feedPath = CHANNEL_PATH + "feeds/" + feedKey;
+    final String feedUri = getBaseUri() + feedPath;
+    final StringBuilder feed = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    feed.append("<feed xmlns=\"http://www.w3.org/2005/Atom\">");
+    feed.append("<id>").append(feedUri).append("</id>");
+    feed.append("<title>Events</title>");
+    feed.append("<updated>").append(CREATION_DATE).append("</updated>");
+    feed.append("<link rel=\"self\" href=\"").append(feedUri).append("\"/>");
+    for (int i = entries; i > 0; --i) {
+      final String eventPath = feedPath + "/events/" + i;
+      final String event = getEventJson(feedKey + '-' + i, i, contentLength);
+      responses.put(eventPath, new Response(JSON_CONTENT_TYPE, getBytes(event)));
+      feed.append("<entry>");
+      feed.append("<id>").append(i).append("</id>");
+      feed.append("<title>Event ").append(i).append("</title>");
+      feed.append("<updated>").append(CREATION_DATE).append("</updated>");
+      feed.append("<link rel=\"alternate\" type=\"").append(JSON_CONTENT_TYPE).append("\" href=\"").append(getBaseUri()).
+          append(eventPath).append("\"/>");
+      if (inlineContent) {
+        feed.append("<content type=\"text\">").append(escapeXml(event)).append("</content>");
+      }
+      feed.append("</entry>");
+    }
+    feed.append("</feed>");
+    responses.put(feedPath, new Response(ATOM_CONTENT_TYPE, getBytes(feed.toString())));
+    return feedUri;
+  }
+
+  public void stop() {
+    server.stop(0);
+    executorService.shutdownNow();
+  }
+
+  /**
+   * JSON representation of an event as the hub serves it.
+   */
+  public static String getEventJson(String uniqueId, int id, int contentLength) {
+    return new StringBuilder("{\"id\":\"").append(id).append("\",\"uniqueId\":\"").append(uniqueId).append(
+        "\",\"content-type\":\"text/plain\",\"content-as-string\":\"").append(getContent(contentLength)).append(
+        "\",\"created-at\":\"").append(CREATION_DATE).append("\"}").toString();
+  }
+
+  /**
+   * Content made of plain ASCII letters and digits so that it needs no escaping in either JSON or XML.
+   */
+  public static String getContent(int length) {
+    final String alphabet = "abcdefghijklmnopqrstuvwxyz0123456789";
+    final StringBuilder content = new StringBuilder(length);
+    for (int i = 0; i < length; ++i) {
+      content.append(alphabet.charAt(i % alphabet.length()));
+    }
+    return content.toString();
+  }
+
+  /**
+   * Keep the clients from logging every request at INFO level, which would otherwise dominate the measurements.
+   */
+  public static void quietLogging() {
+    Logger.getLogger("").setLevel(Level.WARNING);
+  }
+
+  protected void respond(HttpExchange exchange) throws IOException {
+    final InputStream requestBody = exchange.getRequestBody();
+    final byte[] buffer = new byte[4096];
+    while (requestBody.read(buffer) >= 0) {
+    }
+    final String path = exchange.getRequestURI().getPath();
+    if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+      if (HUB_PATH.equals(path)) {
+        postedEvents.incrementAndGet();
+        exchange.sendResponseHeaders(201, -1);
+      }
+      else {
+        exchange.sendResponseHeaders(405, -1);
+      }
+      return;
+    }
+    final Response response = responses.get(path);
+    if (response == null) {
+      exchange.sendResponseHeaders(404, -1);
+      return;
+    }
+    exchange.getResponseHeaders().set("Content-Type", response.contentType);
+    exchange.sendResponseHeaders(200, response.body.length);
+    final OutputStream responseBody = exchange.getResponseBody();
+    responseBody.write(response.body);
+    responseBody.flush();
+  }
+
+  private static String escapeXml(String text) {
+    return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+  }
+
+  private static byte[] getBytes(String text) {
+    try {
+      return text.getBytes("UTF-8");
+    }
+    catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static class Response {
+
+    private final String contentType;
+    private final byte[] body;
+
+    public Response(String contentType, byte[] body) {
+      this.contentType = contentType;
+      this.body = body;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.benchmarks;
+
+import com.smartitengineering.events.async.api.impl.hub.FileSystemUriStorer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Storing and retrieving the URI to poll next with {@link FileSystemUriStorer}, which is done on every poll that
+ * advances the cursor. The file is written under <tt>./target/benchmarks/</tt>.
+ * @author imyousuf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class UriStorerBenchmark {
+
+  private static final String PATH_TO_FOLDER = "./target/benchmarks/";
+  private static final String FILE_NAME = "uriStore.txt";
+  private final String[] uris = new String[]{"http://localhost:10080/hub/api/channels/bench/events/before/1000",
+                                             "http://localhost:10080/hub/api/channels/bench/events/before/1010"};
+  private final String[] eventIds = new String[]{"1000", "1010"};
+  private FileSystemUriStorer storer;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    StubHub.quietLogging();
+    storer = new FileSystemUriStorer(PATH_TO_FOLDER, FILE_NAME);
+    storer.storeNextUri(uris[0]);
+  }
+
+  /**
+   * Alternates between two URIs so that every call changes the stored one.
+   */
+  @Benchmark
+  public void storeNextUri() {
+    next ^= 1;
+    storer.storeNextUri(uris[next]);
+  }
+
+  @Benchmark
+  public void storeCheckpoint() {
+    next ^= 1;
+    storer.storeCheckpoint(uris[next], eventIds[next]);
+  }
+
+  @Benchmark
+  public String getNextUri() {
+    return storer.getNextUri();
+  }
+
+  /**
+   * Retrieving the URI as a subscriber does on start up, reading it from the file.
+   */
+  @Benchmark
+  public String getNextUriFromFile() {
+    return new FileSystemUriStorer(PATH_TO_FOLDER, FILE_NAME).getNextUri();
+  }
+}
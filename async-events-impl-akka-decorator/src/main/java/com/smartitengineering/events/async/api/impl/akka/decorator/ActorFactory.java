@@ -19,9 +19,12 @@
 package com.smartitengineering.events.async.api.impl.akka.decorator;
 
 import com.smartitengineering.events.async.api.EventPublicationException;
+import akka.actor.ActorRef;
 import akka.actor.Actors;
 import akka.actor.Supervisor;
 import akka.actor.SupervisorFactory;
+import akka.actor.UntypedActor;
+import akka.actor.UntypedActorFactory;
 import akka.config.Supervision;
 import akka.config.Supervision.OneForOneStrategy;
 import akka.config.Supervision.Supervise;
@@ -29,12 +32,26 @@ import akka.config.Supervision.SuperviseTypedActor;
 import akka.config.TypedActorConfigurator;
 import com.google.inject.Module;
 import com.smartitengineering.events.async.api.EventPublisher;
+import com.smartitengineering.events.async.api.PublicationCallback;
+import com.smartitengineering.events.async.api.PublicationFuture;
+import com.smartitengineering.events.async.api.PublicationResult;
+import com.smartitengineering.events.async.api.PublishableEvent;
 import com.smartitengineering.util.bean.PropertiesLocator;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
 import org.slf4j.Logger;
@@ -46,13 +63,26 @@ import org.slf4j.LoggerFactory;
  */
 public final class ActorFactory {
 
-  private final TypedActorConfigurator manager;
+  private final TypedActorConfigurator[] managers;
   private final String remoteServiceId;
   private final String remoteAddress;
   private final Integer remotePort;
   private final boolean remote;
   private final SupervisorFactory supervisorFactory;
   private final Supervisor supervisor;
+  private final ActorRef[] untypedActors;
+  private final ActorRouter router;
+  private final EventPublisher localPublisher;
+  private final EventPublisher remotePublisher;
+  private final RingBufferPublisher pipeline;
+  private final RetryPolicy retryPolicy;
+  private final CircuitBreaker circuitBreaker;
+  private final EventPublisher fallbackPublisher;
+  private final ExecutorService callbackExecutor;
+  private final ActorRef[] remoteActors;
+  private final AtomicInteger nextRemoteActor = new AtomicInteger();
+  private final boolean oneWay;
+  private final Semaphore asyncWindow;
   protected transient final Logger logger = LoggerFactory.getLogger(getClass());
   private static final String CONFIG_PATH =
                               "com/smartitengineering/events/async/api/impl/akka/decorator/decoratorconfig.properties";
@@ -64,61 +94,159 @@ public final class ActorFactory {
   private static final String REMOTE_ADDR = "remoteAddress";
   private static final String REMOTE_PORT = "remotePort";
   private static final String REMOTE_SERVICE_ID = "serviceId";
+  private static final String CALLBACK_THREADS = "callbackThreads";
+  private static final String REMOTE_CONNECTIONS = "remoteConnections";
+  private static final String ASYNC_MODE = "asyncMode";
+  private static final String ASYNC_WINDOW = "asyncWindow";
+  private static final String ASYNC_MODE_ONE_WAY = "oneway";
+  private static final String POOL_SIZE = "poolSize";
+  private static final String ROUTING_STRATEGY = "routingStrategy";
+  private static final String RETRY_POLICY = "retryPolicy";
+  private static final String RETRY_MAX_RETRIES = "retryMaxRetries";
+  private static final String RETRIAL_ATTEMPTS = "retrialAttempts";
+  private static final String RETRY_DELAY = "retryDelay";
+  private static final String RETRY_MAX_DELAY = "retryMaxDelay";
+  private static final String RETRY_MULTIPLIER = "retryMultiplier";
+  private static final String RETRY_JITTER = "retryJitter";
+  private static final String RETRY_MAX_ELAPSED = "retryMaxElapsed";
+  private static final String CIRCUIT_FAILURE_THRESHOLD = "circuitFailureThreshold";
+  private static final String CIRCUIT_OPEN_TIMEOUT = "circuitOpenTimeout";
+  private static final String CIRCUIT_HALF_OPEN_REQUESTS = "circuitHalfOpenRequests";
+  private static final String CIRCUIT_FALLBACK_CLASS = "circuitFallbackClass";
+  private static final String PIPELINE_CAPACITY = "pipelineCapacity";
+  private static final String PIPELINE_FULL_POLICY = "pipelineFullPolicy";
+  private static final String PIPELINE_WORKERS = "pipelineWorkers";
 
   protected ActorFactory(final Properties properties) {
     final int retryAttempts = NumberUtils.toInt(properties.getProperty(RETRY_ATTEMPTS), 10);
     final int retryTimeout = NumberUtils.toInt(properties.getProperty(RETRY_TIMEOUT), 2000);
     final int supervisionTimeout = NumberUtils.toInt(properties.getProperty(SUPERVISION_TIMEOUT), 2000);
     final boolean remoting = Boolean.parseBoolean(properties.getProperty(REMOTING));
+    final int callbackThreads = NumberUtils.toInt(properties.getProperty(CALLBACK_THREADS), 0);
+    final int window = NumberUtils.toInt(properties.getProperty(ASYNC_WINDOW), 0);
+    final int poolSize = Math.max(1, NumberUtils.toInt(properties.getProperty(POOL_SIZE), 1));
+    retryPolicy = getRetryPolicy(properties);
+    circuitBreaker = new CircuitBreaker(NumberUtils.toInt(properties.getProperty(CIRCUIT_FAILURE_THRESHOLD), 5),
+                                        NumberUtils.toLong(properties.getProperty(CIRCUIT_OPEN_TIMEOUT), 10000),
+                                        NumberUtils.toInt(properties.getProperty(CIRCUIT_HALF_OPEN_REQUESTS), 1));
+    final String fallbackClassStr = properties.getProperty(CIRCUIT_FALLBACK_CLASS);
+    fallbackPublisher = StringUtils.isNotBlank(fallbackClassStr) ? getFallbackPublisher(fallbackClassStr) : null;
+    oneWay = ASYNC_MODE_ONE_WAY.equalsIgnoreCase(StringUtils.trim(properties.getProperty(ASYNC_MODE)));
+    asyncWindow = window > 0 ? new Semaphore(window) : null;
     if (logger.isDebugEnabled()) {
       logger.debug("Retry Attempts " + retryAttempts);
       logger.debug("Retry Timeout " + retryTimeout);
       logger.debug("Supervision Timeout " + supervisionTimeout);
       logger.debug("Remoting " + remoting);
+      logger.debug("Callback Threads " + callbackThreads);
+      logger.debug("One way asynchronous publication " + oneWay);
+      logger.debug("Asynchronous publication window " + window);
+      logger.debug("Pool Size " + poolSize);
+      logger.debug("Fallback Publisher " + fallbackPublisher);
+    }
+    if (callbackThreads > 0) {
+      callbackExecutor = Executors.newFixedThreadPool(callbackThreads, new ThreadFactory() {
+
+        public Thread newThread(Runnable runnable) {
+          final Thread thread = new Thread(runnable, "publication-callback");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    else {
+      callbackExecutor = null;
     }
     if (remoting) {
       logger.info("Setting up remote actor retrieval configuration");
       remote = true;
-      manager = null;
+      managers = null;
       remoteServiceId = properties.getProperty(REMOTE_SERVICE_ID);
       remoteAddress = properties.getProperty(REMOTE_ADDR);
       remotePort = NumberUtils.toInt(properties.getProperty(REMOTE_PORT), 30000);
+      remoteActors = new ActorRef[Math.max(1, NumberUtils.toInt(properties.getProperty(REMOTE_CONNECTIONS), 1))];
+      for (int i = 0; i < remoteActors.length; ++i) {
+        remoteActors[i] = Actors.remote().actorFor(remoteServiceId, remoteAddress, remotePort);
+      }
     }
     else {
       logger.info("Setting up typed actor configuration");
       remote = false;
-      manager = new TypedActorConfigurator();
-      manager.configure(new OneForOneStrategy(new Class[]{EventPublicationException.class}, retryAttempts, retryTimeout),
-                        new SuperviseTypedActor[]{new SuperviseTypedActor(EventPublisher.class,
-                                                                          EventPublisherActor.class,
-                                                                          Supervision.permanent(), supervisionTimeout)});
       final String moduleClassStr = properties.getProperty(MODULE_CLASS);
+      Module module = null;
       if (StringUtils.isNotBlank(moduleClassStr)) {
-        Module module = null;
         module = getGuiceModule(moduleClassStr, properties);
+      }
+      managers = new TypedActorConfigurator[poolSize];
+      for (int i = 0; i < poolSize; ++i) {
+        final TypedActorConfigurator manager = new TypedActorConfigurator();
+        manager.configure(new OneForOneStrategy(new Class[]{EventPublicationException.class}, retryAttempts,
+                                                retryTimeout),
+                          new SuperviseTypedActor[]{new SuperviseTypedActor(EventPublisher.class,
+                                                                            EventPublisherActor.class,
+                                                                            Supervision.permanent(),
+                                                                            supervisionTimeout)});
         if (module != null) {
           logger.info("Performing Google Guice injection");
           manager.addExternalGuiceModule(module).inject();
         }
+        logger.info("Start supervision");
+        manager.supervise();
+        managers[i] = manager;
       }
-      logger.info("Start supervision");
-      manager.supervise();
       remoteServiceId = null;
       remoteAddress = null;
       remotePort = null;
+      remoteActors = null;
     }
     /*
      * Bootstrap
      */
     {
-      logger.info("Bootstrap supervision factory for the untyped actor");
+      logger.info("Bootstrap supervision factory for the untyped actors");
+      router = new ActorRouter(poolSize, ActorRouter.Strategy.parse(properties.getProperty(ROUTING_STRATEGY)));
+      untypedActors = new ActorRef[poolSize];
+      final Supervise[] supervises = new Supervise[poolSize];
+      final UntypedActorFactory untypedActorFactory = new UntypedActorFactory() {
+
+        public UntypedActor create() {
+          return new EventPublisherUntypedActor(ActorFactory.this);
+        }
+      };
+      for (int i = 0; i < poolSize; ++i) {
+        untypedActors[i] = Actors.actorOf(untypedActorFactory);
+        supervises[i] = new Supervise(untypedActors[i], Supervision.permanent());
+      }
       supervisorFactory =
       new SupervisorFactory(new Supervision.SupervisorConfig(new OneForOneStrategy(new Class[]{
-            EventPublicationException.class}, retryAttempts, retryTimeout),
-                                                             new Supervise[]{new Supervise(Actors.actorOf(
-            EventPublisherUntypedActor.class), Supervision.permanent())}));
+            EventPublicationException.class}, retryAttempts, retryTimeout), supervises));
       supervisor = supervisorFactory.newInstance();
       supervisor.start();
+      if (remote) {
+        localPublisher = null;
+        remotePublisher = new RemoteEventPublisher();
+      }
+      else {
+        remotePublisher = null;
+        final EventPublisher[] typedActors = new EventPublisher[poolSize];
+        for (int i = 0; i < poolSize; ++i) {
+          typedActors[i] = managers[i].getInstance(EventPublisher.class);
+        }
+        localPublisher = new LocalEventPublisher(typedActors);
+      }
+      final int pipelineCapacity = NumberUtils.toInt(properties.getProperty(PIPELINE_CAPACITY), 0);
+      if (pipelineCapacity > 0) {
+        logger.info("Starting publish pipeline");
+        final RingBufferPublisher.FullPolicy fullPolicy =
+                                             RingBufferPublisher.FullPolicy.parse(properties.getProperty(
+            PIPELINE_FULL_POLICY));
+        final int workers = NumberUtils.toInt(properties.getProperty(PIPELINE_WORKERS), poolSize);
+        pipeline = new RingBufferPublisher(remote ? remotePublisher : localPublisher, pipelineCapacity, fullPolicy,
+                                           workers, callbackExecutor);
+      }
+      else {
+        pipeline = null;
+      }
     }
   }
 
@@ -186,25 +314,450 @@ public final class ActorFactory {
     return module;
   }
 
+  protected final EventPublisher getFallbackPublisher(final String fallbackClassStr) throws IllegalArgumentException,
+                                                                                          IllegalStateException {
+    final Class clazz;
+    try {
+      clazz = Class.forName(StringUtils.trim(fallbackClassStr), true, Thread.currentThread().getContextClassLoader());
+    }
+    catch (ClassNotFoundException ex) {
+      throw new IllegalStateException(ex);
+    }
+    if (!EventPublisher.class.isAssignableFrom(clazz)) {
+      throw new IllegalArgumentException("Specified class not instance of EventPublisher");
+    }
+    try {
+      return (EventPublisher) clazz.newInstance();
+    }
+    catch (InstantiationException ex) {
+      throw new IllegalStateException(ex);
+    }
+    catch (IllegalAccessException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * Create the retry policy configured; <tt>fixed</tt> for retrying after the same delay every time, <tt>none</tt>
+   * for not retrying at all and exponential backoff with jitter otherwise. The maximum number of retries falls back
+   * to <tt>retrialAttempts</tt>, the number of retries the actor used to make, if not configured.
+   */
+  protected static RetryPolicy getRetryPolicy(final Properties properties) {
+    final String policy = StringUtils.trimToEmpty(properties.getProperty(RETRY_POLICY));
+    final int maxRetries = NumberUtils.toInt(properties.getProperty(RETRY_MAX_RETRIES), NumberUtils.toInt(
+        properties.getProperty(RETRIAL_ATTEMPTS), 5));
+    final long delay = NumberUtils.toLong(properties.getProperty(RETRY_DELAY), 100);
+    final long maxElapsed = NumberUtils.toLong(properties.getProperty(RETRY_MAX_ELAPSED), 4000);
+    if ("none".equalsIgnoreCase(policy)) {
+      return new FixedRetryPolicy(0, 0, 0);
+    }
+    if ("fixed".equalsIgnoreCase(policy)) {
+      return new FixedRetryPolicy(delay, maxRetries, maxElapsed);
+    }
+    return new ExponentialBackoffRetryPolicy(delay, NumberUtils.toLong(properties.getProperty(RETRY_MAX_DELAY), 2000),
+                                             NumberUtils.toDouble(properties.getProperty(RETRY_MULTIPLIER), 2),
+                                             NumberUtils.toDouble(properties.getProperty(RETRY_JITTER), 0.5),
+                                             maxRetries, maxElapsed);
+  }
+
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  public CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  /**
+   * Make a single attempt to publish the event through one of the actors. The returned future is complete and holds
+   * the error, if any, instead of it being thrown. While the circuit is open the event is diverted to the fallback
+   * publisher if one is configured, else the attempt fails fast with a {@link CircuitOpenException}.
+   */
+  protected Future<Boolean> attemptPublish(String eventContentType, String eventMessage) {
+    final PublicationFuture future = new PublicationFuture();
+    if (!circuitBreaker.allowRequest()) {
+      if (fallbackPublisher == null) {
+        future.setException(new CircuitOpenException());
+        return future;
+      }
+      try {
+        future.set(fallbackPublisher.publishEvent(eventContentType, eventMessage));
+      }
+      catch (RuntimeException ex) {
+        future.setException(ex);
+      }
+      return future;
+    }
+    Throwable error = null;
+    try {
+      if (remote) {
+        future.set(remotePublisher.publishEvent(eventContentType, eventMessage));
+      }
+      else {
+        future.set(((LocalEventPublisher) localPublisher).routeEvent(eventContentType, eventMessage).get());
+      }
+    }
+    catch (ExecutionException ex) {
+      error = ex.getCause();
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      error = new EventPublicationException(ex);
+    }
+    catch (RuntimeException ex) {
+      error = ex;
+    }
+    if (error != null) {
+      future.setException(error);
+    }
+    recordOutcome(error);
+    return future;
+  }
+
+  /**
+   * Publish the events as a single request through the circuit breaker, diverting them to the fallback publisher or
+   * failing them fast while the circuit is open.
+   */
+  protected List<PublicationResult> attemptPublish(Collection<PublishableEvent> events) {
+    if (!circuitBreaker.allowRequest()) {
+      if (fallbackPublisher != null) {
+        return fallbackPublisher.publishEvents(events);
+      }
+      final List<PublicationResult> results = new ArrayList<PublicationResult>(events.size());
+      for (PublishableEvent event : events) {
+        results.add(new PublicationResult(event, false, new CircuitOpenException()));
+      }
+      return results;
+    }
+    final List<PublicationResult> results;
+    try {
+      results = ((LocalEventPublisher) localPublisher).routeEvents(events);
+    }
+    catch (RuntimeException ex) {
+      recordOutcome(ex);
+      throw ex;
+    }
+    Throwable error = null;
+    for (PublicationResult result : results) {
+      if (result != null && result.getError() instanceof EventPublicationException) {
+        error = result.getError();
+        break;
+      }
+    }
+    recordOutcome(error);
+    return results;
+  }
+
+  /**
+   * Only failures due to {@link EventPublicationException} count towards opening the circuit; any other outcome
+   * means the decorated publisher responded.
+   */
+  protected void recordOutcome(Throwable error) {
+    if (error instanceof EventPublicationException) {
+      circuitBreaker.failed();
+    }
+    else {
+      circuitBreaker.succeeded();
+    }
+  }
+
+  /**
+   * Compute the delay before attempting a failed publication again as per the retry policy. Only failures due to
+   * {@link EventPublicationException} are retried, except those due to the circuit being open.
+   * @return Delay in milliseconds or a negative value if the publication is not to be retried
+   */
+  protected long getRetryDelay(Throwable error, int failedAttempts, long startTime) {
+    if (!isRetriable(error)) {
+      return -1;
+    }
+    return retryPolicy.getRetryDelay(failedAttempts, System.currentTimeMillis() - startTime);
+  }
+
+  protected static RuntimeException toRuntimeException(Throwable error) {
+    if (error instanceof RuntimeException) {
+      return (RuntimeException) error;
+    }
+    return new EventPublicationException(error);
+  }
+
+  protected static boolean isRetriable(Throwable error) {
+    return error instanceof EventPublicationException && !(error instanceof CircuitOpenException);
+  }
+
+  protected static List<Integer> getRetriableIndices(List<PublicationResult> results) {
+    final List<Integer> indices = new ArrayList<Integer>();
+    for (int i = 0; i < results.size(); ++i) {
+      if (results.get(i) != null && isRetriable(results.get(i).getError())) {
+        indices.add(i);
+      }
+    }
+    return indices;
+  }
+
+  /**
+   * Retrieve the publish pipeline, if a capacity is configured for it.
+   */
+  public RingBufferPublisher getPipeline() {
+    return pipeline;
+  }
+
   public EventPublisher getInstance() {
+    if (pipeline != null) {
+      logger.info("Returning publish pipeline");
+      return pipeline;
+    }
     if (remote) {
       logger.info("Returning untyped actor wrapped in a proxy publisher");
-      return new EventPublisher() {
-
-        public boolean publishEvent(String eventContentType, String eventMessage) {
-          EventMessage message = new EventMessage(eventContentType, eventMessage);
-          final Object reply = Actors.remote().actorFor(remoteServiceId, remoteAddress, remotePort).sendRequestReply(
-              message);
-          if (reply == null) {
-            return false;
+      return remotePublisher;
+    }
+    else {
+      logger.info("Returning typed actors as publisher");
+      return localPublisher;
+    }
+  }
+
+  /**
+   * Send the event to the untyped actor without waiting for its reply; the returned future completes once the actor
+   * replies. In one way mode no reply is asked for and the returned future completes with true as soon as the event
+   * is sent. Otherwise, if a window is configured, at most that many events await their replies at a time and
+   * sending blocks till an earlier event is acknowledged.
+   */
+  protected Future<Boolean> sendAsync(ActorRef actorRef, String eventContentType, String eventMessage,
+                                      PublicationCallback callback) {
+    final EventMessage message = new EventMessage(eventContentType, eventMessage);
+    if (oneWay) {
+      actorRef.sendOneWay(message);
+      final PublicationFuture future = new PublicationFuture(callback, callbackExecutor);
+      future.set(Boolean.TRUE);
+      return future;
+    }
+    if (asyncWindow != null) {
+      try {
+        asyncWindow.acquire();
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new EventPublicationException(ex);
+      }
+    }
+    final akka.dispatch.Future<Object> reply;
+    try {
+      reply = actorRef.sendRequestReplyFuture(message);
+    }
+    catch (RuntimeException ex) {
+      if (asyncWindow != null) {
+        asyncWindow.release();
+      }
+      throw ex;
+    }
+    return new ActorReplyFuture(reply, callback, callbackExecutor, asyncWindow);
+  }
+
+  /**
+   * Retrieve a reference to the remote actor, taking turns among the references looked up at start up.
+   */
+  protected ActorRef getRemoteActor() {
+    return remoteActors[(nextRemoteActor.getAndIncrement() & Integer.MAX_VALUE) % remoteActors.length];
+  }
+
+  /**
+   * Routes publications to the pool of typed actors, and asynchronous publications to the pool of untyped actors,
+   * as selected by the router.
+   */
+  private class LocalEventPublisher implements EventPublisher {
+
+    private final EventPublisher[] typedActors;
+
+    public LocalEventPublisher(EventPublisher[] typedActors) {
+      this.typedActors = typedActors;
+    }
+
+    /**
+     * Publish the event, retrying as per the retry policy. Retries wait in the calling thread so that the actors keep
+     * publishing other events meanwhile.
+     */
+    public boolean publishEvent(String eventContentType, String eventMessage) {
+      final long startTime = System.currentTimeMillis();
+      int failedAttempts = 0;
+      while (true) {
+        final Throwable error;
+        try {
+          return attemptPublish(eventContentType, eventMessage).get().booleanValue();
+        }
+        catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new EventPublicationException(ex);
+        }
+        catch (ExecutionException ex) {
+          error = ex.getCause();
+        }
+        final long delay = getRetryDelay(error, ++failedAttempts, startTime);
+        if (delay < 0 || !sleep(delay)) {
+          throw toRuntimeException(error);
+        }
+        if (logger.isDebugEnabled()) {
+          logger.debug("Retrying publication after " + failedAttempts + " failed attempts");
+        }
+      }
+    }
+
+    protected Future<Boolean> routeEvent(String eventContentType, String eventMessage) {
+      final int routee = router.select(eventContentType);
+      router.sent(routee);
+      try {
+        return typedActors[routee].publishEventAsync(eventContentType, eventMessage, null);
+      }
+      finally {
+        router.completed(routee);
+      }
+    }
+
+    /**
+     * Publish the events, retrying those failed as per the retry policy.
+     */
+    public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+      final long startTime = System.currentTimeMillis();
+      final List<PublicationResult> results = new ArrayList<PublicationResult>(attemptPublish(events));
+      int failedAttempts = 0;
+      List<Integer> failedIndices = getRetriableIndices(results);
+      while (!failedIndices.isEmpty()) {
+        final long delay = retryPolicy.getRetryDelay(++failedAttempts, System.currentTimeMillis() - startTime);
+        if (delay < 0 || !sleep(delay)) {
+          break;
+        }
+        final List<PublishableEvent> retryEvents = new ArrayList<PublishableEvent>(failedIndices.size());
+        for (Integer index : failedIndices) {
+          retryEvents.add(results.get(index).getEvent());
+        }
+        final List<PublicationResult> retryResults = attemptPublish(retryEvents);
+        for (int i = 0; i < failedIndices.size() && i < retryResults.size(); ++i) {
+          results.set(failedIndices.get(i), retryResults.get(i));
+        }
+        failedIndices = getRetriableIndices(results);
+      }
+      return results;
+    }
+
+    /**
+     * Publish the events in a batch by a single actor, unless routing by content type in which case events are
+     * batched by the actor of their content type.
+     */
+    protected List<PublicationResult> routeEvents(Collection<PublishableEvent> events) {
+      if (router.size() == 1 || router.getStrategy() != ActorRouter.Strategy.CONSISTENT_HASH) {
+        final int routee = router.select(null);
+        router.sent(routee);
+        try {
+          return typedActors[routee].publishEvents(events);
+        }
+        finally {
+          router.completed(routee);
+        }
+      }
+      final List<PublishableEvent> eventList = new ArrayList<PublishableEvent>(events);
+      final List<List<Integer>> indices = new ArrayList<List<Integer>>(router.size());
+      for (int i = 0; i < router.size(); ++i) {
+        indices.add(new ArrayList<Integer>());
+      }
+      for (int i = 0; i < eventList.size(); ++i) {
+        indices.get(router.select(eventList.get(i).getContentType())).add(i);
+      }
+      final PublicationResult[] results = new PublicationResult[eventList.size()];
+      for (int routee = 0; routee < indices.size(); ++routee) {
+        final List<Integer> routeeIndices = indices.get(routee);
+        if (routeeIndices.isEmpty()) {
+          continue;
+        }
+        final List<PublishableEvent> batch = new ArrayList<PublishableEvent>(routeeIndices.size());
+        for (Integer index : routeeIndices) {
+          batch.add(eventList.get(index));
+        }
+        router.sent(routee);
+        try {
+          final List<PublicationResult> batchResults = typedActors[routee].publishEvents(batch);
+          for (int i = 0; i < routeeIndices.size(); ++i) {
+            results[routeeIndices.get(i)] = i < batchResults.size() ? batchResults.get(i) : new PublicationResult(
+                batch.get(i), false, null);
+          }
+        }
+        finally {
+          router.completed(routee);
+        }
+      }
+      return Arrays.asList(results);
+    }
+
+    public Future<Boolean> publishEventAsync(String eventContentType, String eventMessage,
+                                             final PublicationCallback callback) {
+      final int routee = router.select(eventContentType);
+      router.sent(routee);
+      final PublicationCallback routedCallback = new PublicationCallback() {
+
+        public void published(boolean published) {
+          router.completed(routee);
+          if (callback != null) {
+            callback.published(published);
+          }
+        }
+
+        public void failed(Throwable error) {
+          router.completed(routee);
+          if (callback != null) {
+            callback.failed(error);
           }
-          return Boolean.parseBoolean(reply.toString());
         }
       };
+      try {
+        return sendAsync(untypedActors[routee], eventContentType, eventMessage, routedCallback);
+      }
+      catch (RuntimeException ex) {
+        router.completed(routee);
+        throw ex;
+      }
     }
-    else {
-      logger.info("Returning typed actor as publisher");
-      return manager.getInstance(EventPublisher.class);
+  }
+
+  /**
+   * Wait for the delay before retrying.
+   * @return False if interrupted while waiting
+   */
+  protected static boolean sleep(long delay) {
+    try {
+      Thread.sleep(delay);
+      return true;
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private class RemoteEventPublisher implements EventPublisher {
+
+    public boolean publishEvent(String eventContentType, String eventMessage) {
+      EventMessage message = new EventMessage(eventContentType, eventMessage);
+      final Object reply = getRemoteActor().sendRequestReply(message);
+      if (reply == null) {
+        return false;
+      }
+      return Boolean.parseBoolean(reply.toString());
+    }
+
+    public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+      final List<PublicationResult> results = new ArrayList<PublicationResult>(events.size());
+      for (PublishableEvent event : events) {
+        try {
+          results.add(new PublicationResult(event, publishEvent(event.getContentType(), event.getMessage()), null));
+        }
+        catch (RuntimeException ex) {
+          results.add(new PublicationResult(event, false, ex));
+        }
+      }
+      return results;
+    }
+
+    public Future<Boolean> publishEventAsync(String eventContentType, String eventMessage,
+                                             PublicationCallback callback) {
+      return sendAsync(getRemoteActor(), eventContentType, eventMessage, callback);
     }
   }
 
@@ -228,6 +781,13 @@ public final class ActorFactory {
   private static final Semaphore semaphore = new Semaphore(1);
 
   public static EventPublisher getActorRef() {
+    return getDefaultFactory().getInstance();
+  }
+
+  /**
+   * Retrieve the factory configured from the default configuration, creating it if needed.
+   */
+  static ActorFactory getDefaultFactory() {
     if (factory == null) {
       try {
         semaphore.acquire();
@@ -240,6 +800,6 @@ public final class ActorFactory {
       }
       semaphore.release();
     }
-    return factory.getInstance();
+    return factory;
   }
 }
@@ -0,0 +1,160 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.akka.decorator;
+
+import com.smartitengineering.events.async.api.EventPublicationException;
+import com.smartitengineering.events.async.api.PublicationCallback;
+import com.smartitengineering.events.async.api.PublicationFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import scala.Option;
+import scala.runtime.AbstractFunction1;
+import scala.runtime.BoxedUnit;
+
+/**
+ * Adapts the future of an actor's reply to a publication future. The reply of the untyped actor is the string form
+ * of the boolean result of publication. If the reply does not arrive before the actor future expires the publication
+ * fails with a timeout, releasing its permit of the window of outstanding publications, if any, so that a lost reply
+ * does not keep later publications from being sent.
+ * @author imyousuf
+ */
+class ActorReplyFuture extends PublicationFuture {
+
+  private static final long EXPIRY_GRACE_MILLIS = 100;
+  private static ScheduledExecutorService expiryScheduler;
+  private final akka.dispatch.Future<Object> reply;
+  private final Semaphore window;
+  private final AtomicBoolean permitHeld;
+
+  ActorReplyFuture(akka.dispatch.Future<Object> reply, PublicationCallback callback, Executor callbackExecutor) {
+    this(reply, callback, callbackExecutor, null);
+  }
+
+  /**
+   * @param window Window of outstanding publications to release a permit of once the reply is received or expires,
+   *               may be null
+   */
+  ActorReplyFuture(akka.dispatch.Future<Object> reply, PublicationCallback callback, Executor callbackExecutor,
+                   Semaphore window) {
+    super(callback, callbackExecutor);
+    this.reply = reply;
+    this.window = window;
+    this.permitHeld = new AtomicBoolean(window != null);
+    reply.onComplete(new AbstractFunction1<akka.dispatch.Future<Object>, BoxedUnit>() {
+
+      @Override
+      public BoxedUnit apply(akka.dispatch.Future<Object> completed) {
+        complete(completed);
+        return BoxedUnit.UNIT;
+      }
+    });
+    if (window != null && !isDone()) {
+      scheduleExpiry();
+    }
+  }
+
+  @Override
+  public Boolean get() throws InterruptedException, ExecutionException {
+    if (!isDone()) {
+      try {
+        /*
+         * Await so that an actor reply timing out is reported instead of waiting forever
+         */
+        reply.await();
+      }
+      catch (RuntimeException ex) {
+        expire(ex);
+      }
+    }
+    return super.get();
+  }
+
+  protected final void complete(akka.dispatch.Future<Object> completed) {
+    releasePermit();
+    final Option<Throwable> exception = completed.exception();
+    if (exception.isDefined()) {
+      setException(exception.get());
+      return;
+    }
+    final Option<Object> result = completed.result();
+    if (result.isDefined() && result.get() != null) {
+      set(Boolean.parseBoolean(result.get().toString()));
+    }
+    else {
+      set(Boolean.FALSE);
+    }
+  }
+
+  /**
+   * Fail the publication as its reply did not arrive in time.
+   */
+  protected final void expire(Throwable error) {
+    releasePermit();
+    setException(error);
+  }
+
+  /**
+   * Release the permit of the window, at most once however the publication completes.
+   */
+  protected final void releasePermit() {
+    if (permitHeld.compareAndSet(true, false)) {
+      window.release();
+    }
+  }
+
+  protected boolean isPermitHeld() {
+    return permitHeld.get();
+  }
+
+  /**
+   * Expire the publication shortly after the actor future expires, in case its completion is never notified.
+   */
+  protected void scheduleExpiry() {
+    final long delay = TimeUnit.NANOSECONDS.toMillis(reply.timeoutInNanos()) + EXPIRY_GRACE_MILLIS;
+    getExpiryScheduler().schedule(new Runnable() {
+
+      public void run() {
+        if (!isDone()) {
+          expire(new EventPublicationException(new TimeoutException("No reply to publication in " + delay + "ms")));
+        }
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  protected static synchronized ScheduledExecutorService getExpiryScheduler() {
+    if (expiryScheduler == null) {
+      expiryScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+        public Thread newThread(Runnable r) {
+          final Thread thread = new Thread(r, "publication-reply-expiry");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return expiryScheduler;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.akka.decorator;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Selects which of a pool of publisher actors publishes an event. Round robin takes turns, smallest mailbox picks
+ * the actor with the fewest publications outstanding, i.e. sent to but not yet completed by it, and consistent hash
+ * always picks the same actor for a content type so that events of a type are published in order.
+ * @author imyousuf
+ */
+class ActorRouter {
+
+  enum Strategy {
+
+    ROUND_ROBIN, SMALLEST_MAILBOX, CONSISTENT_HASH;
+
+    /**
+     * Parse strategies written as roundRobin, round-robin or ROUND_ROBIN, defaulting to round robin.
+     */
+    static Strategy parse(String strategy) {
+      final String normalized = StringUtils.remove(StringUtils.remove(StringUtils.trimToEmpty(strategy), '-'), '_');
+      for (Strategy value : values()) {
+        if (StringUtils.remove(value.name(), '_').equalsIgnoreCase(normalized)) {
+          return value;
+        }
+      }
+      return ROUND_ROBIN;
+    }
+  }
+  private static final int VIRTUAL_NODES = 160;
+  private final Strategy strategy;
+  private final AtomicInteger[] outstanding;
+  private final AtomicInteger next = new AtomicInteger();
+  private final SortedMap<Integer, Integer> ring = new TreeMap<Integer, Integer>();
+
+  ActorRouter(int routees, Strategy strategy) {
+    if (routees < 1) {
+      throw new IllegalArgumentException("At least one routee is required!");
+    }
+    this.strategy = strategy;
+    this.outstanding = new AtomicInteger[routees];
+    for (int i = 0; i < routees; ++i) {
+      outstanding[i] = new AtomicInteger();
+      for (int node = 0; node < VIRTUAL_NODES; ++node) {
+        ring.put(hash(new StringBuilder("routee-").append(i).append('-').append(node).toString()), i);
+      }
+    }
+  }
+
+  public Strategy getStrategy() {
+    return strategy;
+  }
+
+  public int size() {
+    return outstanding.length;
+  }
+
+  /**
+   * Select the routee to publish an event of the content type.
+   */
+  public int select(String contentType) {
+    if (outstanding.length == 1) {
+      return 0;
+    }
+    switch (strategy) {
+      case SMALLEST_MAILBOX: {
+        final int start = (next.getAndIncrement() & Integer.MAX_VALUE) % outstanding.length;
+        int selected = start;
+        int smallest = Integer.MAX_VALUE;
+        for (int i = 0; i < outstanding.length; ++i) {
+          final int index = (start + i) % outstanding.length;
+          final int size = outstanding[index].get();
+          if (size < smallest) {
+            smallest = size;
+            selected = index;
+          }
+        }
+        return selected;
+      }
+      case CONSISTENT_HASH: {
+        final SortedMap<Integer, Integer> tail = ring.tailMap(hash(contentType == null ? "" : contentType));
+        return tail.isEmpty() ? ring.get(ring.firstKey()) : tail.get(tail.firstKey());
+      }
+      default:
+        return (next.getAndIncrement() & Integer.MAX_VALUE) % outstanding.length;
+    }
+  }
+
+  /**
+   * Record that a publication has been sent to the routee.
+   */
+  public void sent(int routee) {
+    outstanding[routee].incrementAndGet();
+  }
+
+  /**
+   * Record that a publication sent to the routee has completed.
+   */
+  public void completed(int routee) {
+    outstanding[routee].decrementAndGet();
+  }
+
+  public int getOutstanding(int routee) {
+    return outstanding[routee].get();
+  }
+
+  /**
+   * FNV-1a hash of the UTF-16 code units of the key, finalized for an even spread around the ring.
+   */
+  protected static int hash(String key) {
+    int hash = 0x811c9dc5;
+    for (int i = 0; i < key.length(); ++i) {
+      hash ^= key.charAt(i);
+      hash *= 0x01000193;
+    }
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    return hash;
+  }
+}
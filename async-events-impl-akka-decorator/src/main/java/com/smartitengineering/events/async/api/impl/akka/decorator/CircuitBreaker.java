@@ -0,0 +1,129 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.akka.decorator;
+
+/**
+ * Guards publications to the decorated publisher so that while it keeps failing, publications fail fast instead of
+ * each waiting out its own attempts. The circuit opens after a number of consecutive failures; once open, requests
+ * are rejected till the open timeout elapses, after which it is half open and lets a few trial requests through. A
+ * successful trial closes the circuit again while a failed one opens it for another timeout.
+ * @author imyousuf
+ */
+public class CircuitBreaker {
+
+  public enum State {
+
+    CLOSED, OPEN, HALF_OPEN
+  }
+  private final int failureThreshold;
+  private final long openTimeoutMillis;
+  private final int halfOpenRequests;
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private int trialRequests;
+  private long openedAt;
+  private long rejectedRequests;
+
+  /**
+   * @param failureThreshold Consecutive failures to open the circuit after, 0 or less to never open it
+   * @param openTimeoutMillis Time to keep the circuit open before letting trial requests through
+   * @param halfOpenRequests Trial requests to let through at a time while half open
+   */
+  public CircuitBreaker(int failureThreshold, long openTimeoutMillis, int halfOpenRequests) {
+    this.failureThreshold = failureThreshold;
+    this.openTimeoutMillis = Math.max(0, openTimeoutMillis);
+    this.halfOpenRequests = Math.max(1, halfOpenRequests);
+  }
+
+  /**
+   * Check whether a request may proceed. A request allowed must report its outcome through {@link #succeeded()}
+   * or {@link #failed()}.
+   */
+  public synchronized boolean allowRequest() {
+    updateState();
+    switch (state) {
+      case CLOSED:
+        return true;
+      case HALF_OPEN:
+        if (trialRequests < halfOpenRequests) {
+          ++trialRequests;
+          return true;
+        }
+      default:
+        ++rejectedRequests;
+        return false;
+    }
+  }
+
+  public synchronized void succeeded() {
+    if (state == State.OPEN) {
+      return;
+    }
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+    trialRequests = 0;
+  }
+
+  public synchronized void failed() {
+    switch (state) {
+      case CLOSED:
+        if (failureThreshold > 0 && ++consecutiveFailures >= failureThreshold) {
+          open();
+        }
+        break;
+      case HALF_OPEN:
+        open();
+        break;
+      default:
+    }
+  }
+
+  public synchronized State getState() {
+    updateState();
+    return state;
+  }
+
+  public synchronized int getConsecutiveFailures() {
+    return consecutiveFailures;
+  }
+
+  /**
+   * Retrieve the number of requests rejected as the circuit was open.
+   */
+  public synchronized long getRejectedRequests() {
+    return rejectedRequests;
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private void open() {
+    state = State.OPEN;
+    openedAt = currentTimeMillis();
+    trialRequests = 0;
+  }
+
+  private void updateState() {
+    if (state == State.OPEN && currentTimeMillis() - openedAt >= openTimeoutMillis) {
+      state = State.HALF_OPEN;
+      trialRequests = 0;
+    }
+  }
+}
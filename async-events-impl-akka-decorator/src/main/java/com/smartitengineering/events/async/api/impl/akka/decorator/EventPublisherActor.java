@@ -21,13 +21,21 @@ package com.smartitengineering.events.async.api.impl.akka.decorator;
 import akka.actor.TypedActor;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
-import com.smartitengineering.events.async.api.EventPublicationException;
 import com.smartitengineering.events.async.api.EventPublisher;
+import com.smartitengineering.events.async.api.PublicationCallback;
+import com.smartitengineering.events.async.api.PublicationFuture;
+import com.smartitengineering.events.async.api.PublicationResult;
+import com.smartitengineering.events.async.api.PublishableEvent;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Future;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- *
+ * Publishes through the injected publisher. Each invocation makes a single attempt; retries are scheduled by the
+ * callers from {@link ActorFactory} as per its {@link RetryPolicy}, so that the actor is free to process other
+ * publications while a failed one waits to be retried.
  * @author imyousuf
  */
 public class EventPublisherActor extends TypedActor implements EventPublisher {
@@ -35,32 +43,33 @@ public class EventPublisherActor extends TypedActor implements EventPublisher {
   @Inject
   @Named("decorateePublisher")
   private EventPublisher publisher;
-  @Inject(optional = true)
-  @Named("retrialAttempts")
-  private Integer retrialAttempts = new Integer(5);
   protected transient final Logger logger = LoggerFactory.getLogger(getClass());
 
   public boolean publishEvent(String eventContentType, String eventMessage) {
-    logger.info("Invoking the injected publisher, which is fault tolerant");
-    boolean publishEvent = false;
-    int iteration = -1;
-    boolean error = false;
-    EventPublicationException exception = null;
-    do {
-      try {
-        publisher.publishEvent(eventContentType, eventMessage);
-        iteration++;
-        error = false;
-      }
-      catch (EventPublicationException ex) {
-        exception = ex;
-        error = true;
-      }
+    logger.info("Invoking the injected publisher");
+    return publisher.publishEvent(eventContentType, eventMessage);
+  }
+
+  public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+    logger.info("Invoking the injected publisher for batch");
+    return publisher.publishEvents(events);
+  }
+
+  /**
+   * Being invoked through the typed actor the publication takes place in the actor, so the returned future is
+   * already complete. As failures are reported through the future instead of being thrown, failed attempts do not
+   * cause the supervisor to restart the actor. Use the publisher from {@link ActorFactory} for publishing without
+   * blocking the caller.
+   */
+  public Future<Boolean> publishEventAsync(String eventContentType, String eventMessage,
+                                           PublicationCallback callback) {
+    final PublicationFuture future = new PublicationFuture(callback, null);
+    try {
+      future.set(publishEvent(eventContentType, eventMessage));
     }
-    while (error && iteration < retrialAttempts.intValue());
-    if (error && exception != null) {
-      throw exception;
+    catch (RuntimeException ex) {
+      future.setException(ex);
     }
-    return publishEvent;
+    return future;
   }
 }
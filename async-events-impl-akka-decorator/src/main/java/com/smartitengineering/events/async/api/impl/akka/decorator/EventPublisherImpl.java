@@ -19,6 +19,12 @@
 package com.smartitengineering.events.async.api.impl.akka.decorator;
 
 import com.smartitengineering.events.async.api.EventPublisher;
+import com.smartitengineering.events.async.api.PublicationCallback;
+import com.smartitengineering.events.async.api.PublicationResult;
+import com.smartitengineering.events.async.api.PublishableEvent;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Future;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,4 +40,15 @@ public class EventPublisherImpl implements EventPublisher {
     logger.info("Passing to actor factory publisher");
     return ActorFactory.getActorRef().publishEvent(eventContentType, eventMessage);
   }
+
+  public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+    logger.info("Passing batch to actor factory publisher");
+    return ActorFactory.getActorRef().publishEvents(events);
+  }
+
+  public Future<Boolean> publishEventAsync(String eventContentType, String eventMessage,
+                                           PublicationCallback callback) {
+    logger.info("Passing to actor factory publisher asynchronously");
+    return ActorFactory.getActorRef().publishEventAsync(eventContentType, eventMessage, callback);
+  }
 }
@@ -18,28 +18,178 @@
  */
 package com.smartitengineering.events.async.api.impl.akka.decorator;
 
+import akka.actor.ActorRef;
 import akka.actor.UntypedActor;
+import akka.dispatch.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import scala.Option;
 
 /**
- *
+ * Untyped actor publishing the events it receives. Failed publications are retried as per the retry policy of the
+ * {@link ActorFactory} by sending the actor a retry message after the delay, so that the mailbox is not blocked
+ * while waiting to retry. Failures are passed on to the sender's future rather than thrown, so that an unhealthy
+ * publisher does not keep the actor restarting; when there is no future to fail, as in one way mode, the failure
+ * is logged instead.
  * @author imyousuf
  */
 public class EventPublisherUntypedActor extends UntypedActor {
 
+  private static final ScheduledExecutorService RETRY_SCHEDULER =
+                                                Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+    public Thread newThread(Runnable r) {
+      final Thread thread = new Thread(r, "publication-retry");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
   protected transient final Logger logger = LoggerFactory.getLogger(getClass());
+  private final ActorFactory factory;
+
+  /**
+   * Create an actor publishing through the default {@link ActorFactory}, as is required when the actor is registered
+   * as a remote service by its class.
+   */
+  public EventPublisherUntypedActor() {
+    this(null);
+  }
+
+  /**
+   * Create an actor publishing through the factory it belongs to.
+   * @param factory The owning factory, or null to use the default factory
+   */
+  public EventPublisherUntypedActor(ActorFactory factory) {
+    this.factory = factory;
+  }
+
+  protected ActorFactory getFactory() {
+    return factory == null ? ActorFactory.getDefaultFactory() : factory;
+  }
 
   @Override
   public void onReceive(Object o) throws Exception {
     if (o instanceof EventMessage) {
       EventMessage message = (EventMessage) o;
-      logger.info("Invoking from untyped actor to publish the event and passing its return-obj as unsafe message");
-      getContext().replyUnsafe(Boolean.toString(ActorFactory.getActorRef().publishEvent(message.getEventType(), message.
-          getMessage())));
+      logger.info("Invoking from untyped actor to publish the event and passing its return-obj as reply, if any");
+      publish(new RetryMessage(message, getContext().getSender(), getContext().getSenderFuture()), true);
+    }
+    else if (o instanceof RetryMessage) {
+      publish((RetryMessage) o, false);
     }
     else {
       throw new IllegalArgumentException("Unknown message!");
     }
   }
+
+  protected void publish(final RetryMessage retry, boolean firstAttempt) throws Exception {
+    final ActorFactory factory = getFactory();
+    final EventMessage message = retry.getMessage();
+    final Throwable error;
+    try {
+      final Boolean published = factory.attemptPublish(message.getEventType(), message.getMessage()).get();
+      if (firstAttempt) {
+        getContext().replySafe(Boolean.toString(published));
+      }
+      else {
+        retry.reply(Boolean.toString(published));
+      }
+      return;
+    }
+    catch (ExecutionException ex) {
+      error = ex.getCause();
+    }
+    final long delay = factory.getRetryDelay(error, retry.nextAttempt(), retry.getStartTime());
+    if (delay < 0) {
+      giveUp(retry, error);
+      return;
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("Scheduling retry of publication in " + delay + "ms");
+    }
+    final ActorRef self = getContext();
+    RETRY_SCHEDULER.schedule(new Runnable() {
+
+      public void run() {
+        try {
+          self.sendOneWay(retry);
+        }
+        catch (RuntimeException ex) {
+          logger.warn("Could not schedule retry of publication", ex);
+          giveUp(retry, ex);
+        }
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Pass the final failure of a publication on to the sender's future, or log it when there is none to notify.
+   */
+  protected void giveUp(RetryMessage retry, Throwable error) {
+    if (!retry.fail(error)) {
+      final EventMessage message = retry.getMessage();
+      logger.error("Giving up publication of " + message.getEventType() + " event after " + retry.getFailedAttempts() +
+          " failed attempt(s) with no sender to notify", error);
+    }
+  }
+
+  /**
+   * State of a publication being retried, including whom to reply to once it completes.
+   */
+  protected static class RetryMessage {
+
+    private final EventMessage message;
+    private final Option<ActorRef> sender;
+    private final Option<CompletableFuture<Object>> senderFuture;
+    private final long startTime = System.currentTimeMillis();
+    private int failedAttempts;
+
+    public RetryMessage(EventMessage message, Option<ActorRef> sender, Option<CompletableFuture<Object>> senderFuture) {
+      this.message = message;
+      this.sender = sender;
+      this.senderFuture = senderFuture;
+    }
+
+    public EventMessage getMessage() {
+      return message;
+    }
+
+    public long getStartTime() {
+      return startTime;
+    }
+
+    public int getFailedAttempts() {
+      return failedAttempts;
+    }
+
+    public int nextAttempt() {
+      return ++failedAttempts;
+    }
+
+    public void reply(Object reply) {
+      if (senderFuture.isDefined()) {
+        senderFuture.get().completeWithResult(reply);
+      }
+      else if (sender.isDefined()) {
+        sender.get().sendOneWay(reply);
+      }
+    }
+
+    /**
+     * Fail the sender's future, if any, rather than throwing so that the actor is not restarted for it.
+     * @return Whether the failure was passed on
+     */
+    public boolean fail(Throwable error) {
+      if (senderFuture.isDefined()) {
+        senderFuture.get().completeWithException(error);
+        return true;
+      }
+      return false;
+    }
+  }
 }
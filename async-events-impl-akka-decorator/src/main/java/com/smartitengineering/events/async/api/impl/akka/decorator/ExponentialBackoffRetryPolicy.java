@@ -0,0 +1,74 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.akka.decorator;
+
+import java.util.Random;
+
+/**
+ * Retries after a delay multiplied after every failure up to a maximum delay, till either the maximum retries are
+ * made or the next attempt would start after the maximum time elapsed since the first attempt. A fraction of each
+ * delay, the jitter, is randomized so that publishers failing together do not retry together.
+ * @author imyousuf
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+  private final long initialDelayMillis;
+  private final long maxDelayMillis;
+  private final double multiplier;
+  private final double jitter;
+  private final int maxRetries;
+  private final long maxElapsedMillis;
+  private final Random random = new Random();
+
+  /**
+   * @param jitter Fraction, between 0 and 1, of each delay to randomize
+   * @param maxElapsedMillis Maximum time since the first attempt to start a retry in, 0 or less for no limit
+   */
+  public ExponentialBackoffRetryPolicy(long initialDelayMillis, long maxDelayMillis, double multiplier, double jitter,
+                                       int maxRetries, long maxElapsedMillis) {
+    this.initialDelayMillis = Math.max(1, initialDelayMillis);
+    this.maxDelayMillis = Math.max(this.initialDelayMillis, maxDelayMillis);
+    this.multiplier = Math.max(1, multiplier);
+    this.jitter = Math.min(1, Math.max(0, jitter));
+    this.maxRetries = maxRetries;
+    this.maxElapsedMillis = maxElapsedMillis;
+  }
+
+  public long getRetryDelay(int failedAttempts, long elapsedMillis) {
+    if (failedAttempts > maxRetries) {
+      return -1;
+    }
+    final double backoff = initialDelayMillis * Math.pow(multiplier, Math.max(0, failedAttempts - 1));
+    final long ceiling = (long) Math.min(maxDelayMillis, backoff);
+    final long delay = ceiling - (long) (ceiling * jitter * nextRandomFraction());
+    if (maxElapsedMillis > 0 && elapsedMillis + delay > maxElapsedMillis) {
+      return -1;
+    }
+    return delay;
+  }
+
+  /**
+   * Random fraction, between 0 inclusive and 1 exclusive, of the jitter to take off the delay.
+   */
+  protected double nextRandomFraction() {
+    synchronized (random) {
+      return random.nextDouble();
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.akka.decorator;
+
+/**
+ * Retries after the same delay every time, till either the maximum retries are made or the next attempt would start
+ * after the maximum time elapsed since the first attempt.
+ * @author imyousuf
+ */
+public class FixedRetryPolicy implements RetryPolicy {
+
+  private final long delayMillis;
+  private final int maxRetries;
+  private final long maxElapsedMillis;
+
+  /**
+   * @param maxElapsedMillis Maximum time since the first attempt to start a retry in, 0 or less for no limit
+   */
+  public FixedRetryPolicy(long delayMillis, int maxRetries, long maxElapsedMillis) {
+    this.delayMillis = Math.max(0, delayMillis);
+    this.maxRetries = maxRetries;
+    this.maxElapsedMillis = maxElapsedMillis;
+  }
+
+  public long getRetryDelay(int failedAttempts, long elapsedMillis) {
+    if (failedAttempts > maxRetries) {
+      return -1;
+    }
+    if (maxElapsedMillis > 0 && elapsedMillis + delayMillis > maxElapsedMillis) {
+      return -1;
+    }
+    return delayMillis;
+  }
+}
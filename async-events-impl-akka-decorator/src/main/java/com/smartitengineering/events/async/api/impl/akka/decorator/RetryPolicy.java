@@ -0,0 +1,34 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.akka.decorator;
+
+/**
+ * Decides whether and when a failed publication is attempted again.
+ * @author imyousuf
+ */
+public interface RetryPolicy {
+
+  /**
+   * Compute the delay before the next attempt of a publication.
+   * @param failedAttempts Number of attempts failed so far, starting from 1
+   * @param elapsedMillis Time elapsed since the first attempt
+   * @return Delay in milliseconds before attempting again, or a negative value to give up
+   */
+  long getRetryDelay(int failedAttempts, long elapsedMillis);
+}
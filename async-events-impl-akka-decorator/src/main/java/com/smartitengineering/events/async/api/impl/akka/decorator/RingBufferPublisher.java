@@ -0,0 +1,397 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.akka.decorator;
+
+import com.smartitengineering.events.async.api.EventPublicationException;
+import com.smartitengineering.events.async.api.EventPublisher;
+import com.smartitengineering.events.async.api.PublicationCallback;
+import com.smartitengineering.events.async.api.PublicationFuture;
+import com.smartitengineering.events.async.api.PublicationResult;
+import com.smartitengineering.events.async.api.PublishableEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A publisher queueing publications in a bounded ring buffer from which a fixed number of workers publish them
+ * through the decorated publisher, so that no more publications than workers are outstanding with the actors at a
+ * time and memory held by queued publications is bounded by the capacity of the buffer. Slots of the buffer are
+ * allocated up front and reused; producers and workers claim slots by sequence numbers without locking. When the
+ * buffer is full a publication either waits for a slot, evicts the oldest publication queued, which fails, or is
+ * rejected right away, as configured.
+ * <p>
+ * Publications waiting on a full buffer and idle workers spin briefly, then yield and then sleep for short periods,
+ * trading a little latency when idle for not having to signal waiters on every publication.
+ * @author imyousuf
+ */
+public class RingBufferPublisher implements EventPublisher {
+
+  public enum FullPolicy {
+
+    BLOCK, DROP_OLDEST, FAIL_FAST;
+
+    /**
+     * Parse policies written as dropOldest, drop-oldest or DROP_OLDEST, defaulting to block.
+     */
+    public static FullPolicy parse(String policy) {
+      final String normalized = StringUtils.remove(StringUtils.remove(StringUtils.trimToEmpty(policy), '-'), '_');
+      for (FullPolicy value : values()) {
+        if (StringUtils.remove(value.name(), '_').equalsIgnoreCase(normalized)) {
+          return value;
+        }
+      }
+      return BLOCK;
+    }
+  }
+  private static final int SPIN_TRIES = 100;
+  private static final int YIELD_TRIES = 200;
+  private static final long SLEEP_NANOS = 100000;
+  private final EventPublisher publisher;
+  private final FullPolicy fullPolicy;
+  private final Executor callbackExecutor;
+  private final Slot[] slots;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+  private final Thread[] workers;
+  private volatile boolean running = true;
+  private volatile boolean terminated;
+  private final AtomicLong publishedCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private final AtomicLong queueWaitNanos = new AtomicLong();
+  private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+  private final AtomicLong producerWaitNanos = new AtomicLong();
+  protected transient final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /**
+   * @param publisher Publisher for the workers to publish through
+   * @param capacity Number of publications to queue at most, rounded up to a power of 2
+   * @param fullPolicy What to do with a publication when the buffer is full
+   * @param workerCount Number of workers publishing
+   * @param callbackExecutor Executor to notify callbacks on, null to notify on the workers
+   */
+  public RingBufferPublisher(EventPublisher publisher, int capacity, FullPolicy fullPolicy, int workerCount,
+                             Executor callbackExecutor) {
+    if (publisher == null) {
+      throw new IllegalArgumentException("Publisher can not be null!");
+    }
+    int size = 1;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    this.publisher = publisher;
+    this.fullPolicy = fullPolicy == null ? FullPolicy.BLOCK : fullPolicy;
+    this.callbackExecutor = callbackExecutor;
+    slots = new Slot[size];
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; ++i) {
+      slots[i] = new Slot();
+      sequences.set(i, i);
+    }
+    mask = size - 1;
+    workers = new Thread[Math.max(1, workerCount)];
+    for (int i = 0; i < workers.length; ++i) {
+      workers[i] = new Thread(new Runnable() {
+
+        public void run() {
+          work();
+        }
+      }, "publish-pipeline-worker-" + i);
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+
+  public boolean publishEvent(String eventContentType, String eventMessage) {
+    try {
+      return publishEventAsync(eventContentType, eventMessage, null).get().booleanValue();
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new EventPublicationException(ex);
+    }
+    catch (ExecutionException ex) {
+      throw ActorFactory.toRuntimeException(ex.getCause());
+    }
+  }
+
+  /**
+   * Queue each event of the batch as a publication of its own, so that batches are bound by the buffer and its full
+   * buffer policy too, and wait for them all. Events that could not be queued or published are reported as failed.
+   */
+  public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+    final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(events.size());
+    for (PublishableEvent event : events) {
+      try {
+        futures.add(publishEventAsync(event.getContentType(), event.getMessage(), null));
+      }
+      catch (EventPublicationException ex) {
+        final PublicationFuture rejected = new PublicationFuture();
+        rejected.setException(ex);
+        futures.add(rejected);
+      }
+    }
+    final List<PublicationResult> results = new ArrayList<PublicationResult>(events.size());
+    int i = 0;
+    for (PublishableEvent event : events) {
+      try {
+        results.add(new PublicationResult(event, futures.get(i++).get().booleanValue(), null));
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new EventPublicationException(ex);
+      }
+      catch (ExecutionException ex) {
+        results.add(new PublicationResult(event, false, ex.getCause()));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Queue the publication, waiting for a slot, evicting the oldest publication or failing with an
+   * {@link EventPublicationException} if the buffer is full, as per the full buffer policy. Publications are rejected
+   * once the publisher is shut down, including those waiting for a slot.
+   */
+  public Future<Boolean> publishEventAsync(String eventContentType, String eventMessage,
+                                           PublicationCallback callback) {
+    final PublicationFuture future = new PublicationFuture(callback, callbackExecutor);
+    long waitStart = 0;
+    int idleCount = 0;
+    while (true) {
+      if (!running) {
+        if (waitStart != 0) {
+          producerWaitNanos.addAndGet(System.nanoTime() - waitStart);
+        }
+        throw new EventPublicationException(new RejectedExecutionException("Publish pipeline shut down"));
+      }
+      final long position = tail.get();
+      final int index = (int) (position & mask);
+      final long available = sequences.get(index) - position;
+      if (available == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          final Slot slot = slots[index];
+          slot.contentType = eventContentType;
+          slot.message = eventMessage;
+          slot.future = future;
+          slot.queuedAt = System.nanoTime();
+          sequences.set(index, position + 1);
+          break;
+        }
+      }
+      else if (available < 0) {
+        if (fullPolicy == FullPolicy.FAIL_FAST) {
+          rejectedCount.incrementAndGet();
+          throw new EventPublicationException(new RejectedExecutionException("Publish pipeline full"));
+        }
+        if (fullPolicy == FullPolicy.DROP_OLDEST) {
+          final Slot dropped = new Slot();
+          if (poll(dropped)) {
+            droppedCount.incrementAndGet();
+            dropped.future.setException(new EventPublicationException(new RejectedExecutionException(
+                "Dropped from full publish pipeline")));
+          }
+          continue;
+        }
+        if (waitStart == 0) {
+          waitStart = System.nanoTime();
+        }
+        idle(idleCount++);
+        if (Thread.currentThread().isInterrupted()) {
+          producerWaitNanos.addAndGet(System.nanoTime() - waitStart);
+          throw new EventPublicationException(new InterruptedException());
+        }
+      }
+    }
+    if (waitStart != 0) {
+      producerWaitNanos.addAndGet(System.nanoTime() - waitStart);
+    }
+    if (terminated) {
+      failQueued();
+    }
+    return future;
+  }
+
+  /**
+   * Stop the workers once the publications queued are published. Publications queued by producers racing the
+   * shutdown after the workers stopped are failed.
+   */
+  public void shutdown() {
+    running = false;
+    for (Thread worker : workers) {
+      try {
+        worker.join();
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+    terminated = true;
+    failQueued();
+  }
+
+  public int getCapacity() {
+    return slots.length;
+  }
+
+  /**
+   * Retrieve the number of publications queued, i.e. not yet taken by a worker.
+   */
+  public int getDepth() {
+    return (int) Math.max(0, Math.min(slots.length, tail.get() - head.get()));
+  }
+
+  public long getPublishedCount() {
+    return publishedCount.get();
+  }
+
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  /**
+   * Retrieve the average time publications waited in the buffer before a worker took them.
+   */
+  public long getAverageQueueWaitNanos() {
+    final long count = publishedCount.get();
+    return count > 0 ? queueWaitNanos.get() / count : 0;
+  }
+
+  public long getMaxQueueWaitNanos() {
+    return maxQueueWaitNanos.get();
+  }
+
+  /**
+   * Retrieve the total time publications waited for a slot while the buffer was full.
+   */
+  public long getProducerWaitNanos() {
+    return producerWaitNanos.get();
+  }
+
+  protected void work() {
+    final Slot slot = new Slot();
+    int idleCount = 0;
+    while (true) {
+      if (!poll(slot)) {
+        if (!running) {
+          return;
+        }
+        idle(idleCount++);
+        continue;
+      }
+      idleCount = 0;
+      final long waited = System.nanoTime() - slot.queuedAt;
+      queueWaitNanos.addAndGet(waited);
+      long max = maxQueueWaitNanos.get();
+      while (waited > max && !maxQueueWaitNanos.compareAndSet(max, waited)) {
+        max = maxQueueWaitNanos.get();
+      }
+      publishedCount.incrementAndGet();
+      try {
+        slot.future.set(publisher.publishEvent(slot.contentType, slot.message));
+      }
+      catch (RuntimeException ex) {
+        slot.future.setException(ex);
+      }
+      slot.clear();
+    }
+  }
+
+  /**
+   * Fail the publications left in the buffer with no worker to publish them.
+   */
+  protected void failQueued() {
+    final Slot slot = new Slot();
+    while (poll(slot)) {
+      rejectedCount.incrementAndGet();
+      slot.future.setException(new EventPublicationException(new RejectedExecutionException(
+          "Publish pipeline shut down")));
+      slot.clear();
+    }
+  }
+
+  /**
+   * Take the oldest publication queued, copying it to the given slot.
+   * @return False if the buffer is empty
+   */
+  protected boolean poll(Slot target) {
+    while (true) {
+      final long position = head.get();
+      final int index = (int) (position & mask);
+      final long available = sequences.get(index) - (position + 1);
+      if (available == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          final Slot slot = slots[index];
+          target.contentType = slot.contentType;
+          target.message = slot.message;
+          target.future = slot.future;
+          target.queuedAt = slot.queuedAt;
+          slot.clear();
+          sequences.set(index, position + slots.length);
+          return true;
+        }
+      }
+      else if (available < 0) {
+        return false;
+      }
+    }
+  }
+
+  private static void idle(int idleCount) {
+    if (idleCount < SPIN_TRIES) {
+      return;
+    }
+    if (idleCount < YIELD_TRIES) {
+      Thread.yield();
+      return;
+    }
+    LockSupport.parkNanos(SLEEP_NANOS);
+  }
+
+  protected static class Slot {
+
+    private String contentType;
+    private String message;
+    private PublicationFuture future;
+    private long queuedAt;
+
+    private void clear() {
+      contentType = null;
+      message = null;
+      future = null;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.akka.decorator;
+
+import akka.dispatch.DefaultCompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import junit.framework.TestCase;
+
+/**
+ * Tests that the permit of the window of outstanding publications is released exactly once.
+ */
+public class ActorReplyFutureTest extends TestCase {
+
+  public void testPermitIsReleasedOnReply() throws Exception {
+    final Semaphore window = new Semaphore(1);
+    window.acquire();
+    final DefaultCompletableFuture<Object> reply = new DefaultCompletableFuture<Object>(10000);
+    final ActorReplyFuture future = new ActorReplyFuture(reply, null, null, window);
+    assertEquals(0, window.availablePermits());
+    reply.completeWithResult("true");
+    assertTrue(future.get());
+    assertEquals(1, window.availablePermits());
+    future.expire(new IllegalStateException());
+    future.releasePermit();
+    assertEquals(1, window.availablePermits());
+    assertTrue(future.get());
+  }
+
+  public void testPermitIsReleasedWhenReplyNeverArrives() throws Exception {
+    final Semaphore window = new Semaphore(1);
+    window.acquire();
+    final ActorReplyFuture future = new ActorReplyFuture(new DefaultCompletableFuture<Object>(50), null, null,
+                                                         window);
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (!future.isDone() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(future.isDone());
+    assertEquals(1, window.availablePermits());
+    try {
+      future.get();
+      fail("Publication without reply should fail");
+    }
+    catch (ExecutionException ex) {
+      //Expected
+    }
+    assertEquals(1, window.availablePermits());
+  }
+
+  public void testPermitIsReleasedOnceWhenAwaitingTimesOut() throws Exception {
+    final Semaphore window = new Semaphore(1);
+    window.acquire();
+    final ActorReplyFuture future = new ActorReplyFuture(new DefaultCompletableFuture<Object>(50), null, null,
+                                                         window);
+    try {
+      future.get();
+      fail("Publication without reply should fail");
+    }
+    catch (ExecutionException ex) {
+      //Expected
+    }
+    assertEquals(1, window.availablePermits());
+    Thread.sleep(300);
+    assertEquals(1, window.availablePermits());
+  }
+}
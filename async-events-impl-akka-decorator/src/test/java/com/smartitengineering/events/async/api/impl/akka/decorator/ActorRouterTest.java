@@ -0,0 +1,68 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.akka.decorator;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests selection of publisher actors by the router.
+ */
+public class ActorRouterTest extends TestCase {
+
+  public void testStrategyIsParsedFromConfiguration() {
+    assertEquals(ActorRouter.Strategy.ROUND_ROBIN, ActorRouter.Strategy.parse(null));
+    assertEquals(ActorRouter.Strategy.SMALLEST_MAILBOX, ActorRouter.Strategy.parse("smallestMailbox"));
+    assertEquals(ActorRouter.Strategy.CONSISTENT_HASH, ActorRouter.Strategy.parse("consistent-hash"));
+  }
+
+  public void testRoundRobinTakesTurns() {
+    final ActorRouter router = new ActorRouter(3, ActorRouter.Strategy.ROUND_ROBIN);
+    assertEquals(0, router.select("a"));
+    assertEquals(1, router.select("a"));
+    assertEquals(2, router.select("a"));
+    assertEquals(0, router.select("a"));
+  }
+
+  public void testSmallestMailboxPicksLeastOutstanding() {
+    final ActorRouter router = new ActorRouter(3, ActorRouter.Strategy.SMALLEST_MAILBOX);
+    router.sent(0);
+    router.sent(0);
+    router.sent(2);
+    assertEquals(1, router.select("a"));
+    router.sent(1);
+    router.sent(1);
+    router.completed(0);
+    router.completed(0);
+    assertEquals(0, router.select("a"));
+  }
+
+  public void testConsistentHashKeepsContentTypeOnOneActor() {
+    final ActorRouter router = new ActorRouter(4, ActorRouter.Strategy.CONSISTENT_HASH);
+    final int[] counts = new int[4];
+    for (int i = 0; i < 400; ++i) {
+      final String contentType = "application/type-" + i;
+      final int routee = router.select(contentType);
+      assertEquals(routee, router.select(contentType));
+      counts[routee]++;
+    }
+    for (int count : counts) {
+      assertTrue(count > 40);
+    }
+  }
+}
@@ -50,7 +50,20 @@ public class AppTest extends TestCase {
       }
     });
     EventPublisher publisher = new EventPublisherImpl();
-    publisher.publishEvent("a", "a");
+    assertTrue(publisher.publishEvent("a", "a"));
+    mockery.assertIsSatisfied();
+  }
+
+  public void testAsynchronousPublication() throws Exception {
+    mockery.checking(new Expectations() {
+
+      {
+        exactly(1).of(mock).publishEvent("b", "b");
+        will(returnValue(true));
+      }
+    });
+    EventPublisher publisher = new EventPublisherImpl();
+    assertTrue(publisher.publishEventAsync("b", "b", null).get());
     mockery.assertIsSatisfied();
   }
 
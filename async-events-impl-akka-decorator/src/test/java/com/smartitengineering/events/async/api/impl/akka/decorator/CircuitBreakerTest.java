@@ -0,0 +1,94 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.akka.decorator;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests transitions of the circuit breaker between its states.
+ */
+public class CircuitBreakerTest extends TestCase {
+
+  public void testOpensAfterConsecutiveFailures() {
+    final TestCircuitBreaker breaker = new TestCircuitBreaker(3, 1000, 1);
+    breaker.failed();
+    breaker.failed();
+    breaker.succeeded();
+    breaker.failed();
+    breaker.failed();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertTrue(breaker.allowRequest());
+    breaker.failed();
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.allowRequest());
+    assertFalse(breaker.allowRequest());
+    assertEquals(2, breaker.getRejectedRequests());
+  }
+
+  public void testHalfOpenTrialClosesOnSuccess() {
+    final TestCircuitBreaker breaker = new TestCircuitBreaker(1, 1000, 1);
+    breaker.failed();
+    breaker.now += 999;
+    assertFalse(breaker.allowRequest());
+    breaker.now += 1;
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    assertTrue(breaker.allowRequest());
+    assertFalse(breaker.allowRequest());
+    breaker.succeeded();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertEquals(0, breaker.getConsecutiveFailures());
+    assertTrue(breaker.allowRequest());
+  }
+
+  public void testHalfOpenTrialReopensOnFailure() {
+    final TestCircuitBreaker breaker = new TestCircuitBreaker(1, 1000, 1);
+    breaker.failed();
+    breaker.now += 1000;
+    assertTrue(breaker.allowRequest());
+    breaker.failed();
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    breaker.now += 500;
+    assertFalse(breaker.allowRequest());
+    breaker.now += 500;
+    assertTrue(breaker.allowRequest());
+  }
+
+  public void testNeverOpensWithoutThreshold() {
+    final TestCircuitBreaker breaker = new TestCircuitBreaker(0, 1000, 1);
+    for (int i = 0; i < 100; ++i) {
+      breaker.failed();
+    }
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertTrue(breaker.allowRequest());
+  }
+
+  private static class TestCircuitBreaker extends CircuitBreaker {
+
+    private long now = 1000;
+
+    public TestCircuitBreaker(int failureThreshold, long openTimeoutMillis, int halfOpenRequests) {
+      super(failureThreshold, openTimeoutMillis, halfOpenRequests);
+    }
+
+    @Override
+    protected long currentTimeMillis() {
+      return now;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.akka.decorator;
+
+import java.util.Properties;
+import junit.framework.TestCase;
+
+/**
+ * Tests the delays computed by the retry policies, including the jitter bounds and the maximum elapsed time cutoff.
+ */
+public class RetryPolicyTest extends TestCase {
+
+  public void testFixedDelayUntilMaxRetries() {
+    final FixedRetryPolicy policy = new FixedRetryPolicy(100, 3, 0);
+    assertEquals(100, policy.getRetryDelay(1, 0));
+    assertEquals(100, policy.getRetryDelay(2, 100));
+    assertEquals(100, policy.getRetryDelay(3, 200));
+    assertTrue(policy.getRetryDelay(4, 300) < 0);
+  }
+
+  public void testFixedDelayIsNotNegative() {
+    assertEquals(0, new FixedRetryPolicy(-10, 1, 0).getRetryDelay(1, 0));
+  }
+
+  public void testFixedDelayStopsAtMaxElapsed() {
+    final FixedRetryPolicy policy = new FixedRetryPolicy(100, 10, 500);
+    assertEquals(100, policy.getRetryDelay(1, 400));
+    assertTrue(policy.getRetryDelay(1, 401) < 0);
+    assertEquals(100, new FixedRetryPolicy(100, 10, 0).getRetryDelay(1, Long.MAX_VALUE / 2));
+  }
+
+  public void testMaxRetriesFallBackToRetrialAttempts() {
+    final Properties properties = new Properties();
+    properties.setProperty("retryPolicy", "fixed");
+    properties.setProperty("retrialAttempts", "2");
+    RetryPolicy policy = ActorFactory.getRetryPolicy(properties);
+    assertEquals(100, policy.getRetryDelay(2, 0));
+    assertTrue(policy.getRetryDelay(3, 0) < 0);
+    properties.setProperty("retryMaxRetries", "3");
+    policy = ActorFactory.getRetryPolicy(properties);
+    assertEquals(100, policy.getRetryDelay(3, 0));
+    assertTrue(policy.getRetryDelay(4, 0) < 0);
+    policy = ActorFactory.getRetryPolicy(new Properties());
+    assertTrue(policy.getRetryDelay(5, 0) >= 0);
+    assertTrue(policy.getRetryDelay(6, 0) < 0);
+  }
+
+  public void testBackoffDelaySequenceWithoutJitter() {
+    final ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(100, 1000, 2, 0, 6, 0);
+    final long[] expected = new long[]{100, 200, 400, 800, 1000, 1000};
+    for (int i = 0; i < expected.length; ++i) {
+      assertEquals(expected[i], policy.getRetryDelay(i + 1, 0));
+    }
+    assertTrue(policy.getRetryDelay(expected.length + 1, 0) < 0);
+  }
+
+  public void testBackoffJitterTakesOffUpToItsFraction() {
+    assertEquals(400, new FixedFractionPolicy(0, 0.5, 0).getRetryDelay(3, 0));
+    assertEquals(300, new FixedFractionPolicy(0.5, 0.5, 0).getRetryDelay(3, 0));
+    assertEquals(201, new FixedFractionPolicy(0.999, 0.5, 0).getRetryDelay(3, 0));
+    assertEquals(1, new FixedFractionPolicy(0.999, 1, 0).getRetryDelay(3, 0));
+  }
+
+  public void testBackoffJitterStaysWithinBounds() {
+    final ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(100, 1000, 2, 0.25, 10, 0);
+    for (int i = 0; i < 1000; ++i) {
+      final int attempt = i % 6 + 1;
+      final long ceiling = Math.min(1000, 100L << (attempt - 1));
+      final long delay = policy.getRetryDelay(attempt, 0);
+      assertTrue("Delay " + delay + " above " + ceiling, delay <= ceiling);
+      assertTrue("Delay " + delay + " below jitter bound", delay >= ceiling - ceiling / 4);
+    }
+  }
+
+  public void testBackoffStopsAtMaxElapsed() {
+    final FixedFractionPolicy policy = new FixedFractionPolicy(0, 0.5, 1000);
+    assertEquals(400, policy.getRetryDelay(3, 600));
+    assertTrue(policy.getRetryDelay(3, 601) < 0);
+    policy.fraction = 0.5;
+    assertEquals(300, policy.getRetryDelay(3, 700));
+    assertTrue(policy.getRetryDelay(1, 951) < 0);
+  }
+
+  public void testBackoffArgumentsAreClamped() {
+    final ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(0, 0, 0.5, 2, 3, 0);
+    assertEquals(1, policy.getRetryDelay(1, 0));
+    assertEquals(1, policy.getRetryDelay(3, 0));
+  }
+
+  /**
+   * Backoff of 100ms doubling up to 1000ms with a fixed random fraction for the jitter.
+   */
+  private static class FixedFractionPolicy extends ExponentialBackoffRetryPolicy {
+
+    private double fraction;
+
+    public FixedFractionPolicy(double fraction, double jitter, long maxElapsedMillis) {
+      super(100, 1000, 2, jitter, 10, maxElapsedMillis);
+      this.fraction = fraction;
+    }
+
+    @Override
+    protected double nextRandomFraction() {
+      return fraction;
+    }
+  }
+}
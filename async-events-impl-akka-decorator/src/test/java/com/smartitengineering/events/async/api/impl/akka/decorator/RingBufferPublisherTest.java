@@ -0,0 +1,244 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.akka.decorator;
+
+import com.smartitengineering.events.async.api.EventPublicationException;
+import com.smartitengineering.events.async.api.EventPublisher;
+import com.smartitengineering.events.async.api.PublicationCallback;
+import com.smartitengineering.events.async.api.PublicationResult;
+import com.smartitengineering.events.async.api.PublishableEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Tests queueing of publications in the ring buffer and its full buffer policies.
+ */
+public class RingBufferPublisherTest extends TestCase {
+
+  public void testFullPolicyIsParsedFromConfiguration() {
+    assertEquals(RingBufferPublisher.FullPolicy.BLOCK, RingBufferPublisher.FullPolicy.parse(null));
+    assertEquals(RingBufferPublisher.FullPolicy.DROP_OLDEST, RingBufferPublisher.FullPolicy.parse("dropOldest"));
+    assertEquals(RingBufferPublisher.FullPolicy.FAIL_FAST, RingBufferPublisher.FullPolicy.parse("fail-fast"));
+  }
+
+  public void testPublicationsArePublishedInOrder() throws Exception {
+    final GatedPublisher decoratee = new GatedPublisher();
+    decoratee.gate.countDown();
+    final RingBufferPublisher publisher = new RingBufferPublisher(decoratee, 6, RingBufferPublisher.FullPolicy.BLOCK,
+                                                                  1, null);
+    assertEquals(8, publisher.getCapacity());
+    final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+    for (int i = 0; i < 100; ++i) {
+      futures.add(publisher.publishEventAsync("text/plain", "Message " + i, null));
+    }
+    for (Future<Boolean> future : futures) {
+      assertTrue(future.get(5, TimeUnit.SECONDS));
+    }
+    assertTrue(publisher.publishEvent("text/plain", "Message 100"));
+    publisher.shutdown();
+    for (int i = 0; i <= 100; ++i) {
+      assertEquals("Message " + i, decoratee.messages.get(i));
+    }
+    assertEquals(101, publisher.getPublishedCount());
+    assertEquals(0, publisher.getDepth());
+    assertTrue(publisher.getMaxQueueWaitNanos() >= publisher.getAverageQueueWaitNanos());
+  }
+
+  public void testFailFastRejectsWhenFull() throws Exception {
+    final GatedPublisher decoratee = new GatedPublisher();
+    final RingBufferPublisher publisher = new RingBufferPublisher(decoratee, 2,
+                                                                  RingBufferPublisher.FullPolicy.FAIL_FAST, 1, null);
+    final List<Future<Boolean>> futures = fill(publisher, decoratee);
+    try {
+      publisher.publishEventAsync("text/plain", "Message 3", null);
+      fail("Should have been rejected");
+    }
+    catch (EventPublicationException ex) {
+    }
+    assertEquals(1, publisher.getRejectedCount());
+    assertEquals(2, publisher.getDepth());
+    decoratee.gate.countDown();
+    for (Future<Boolean> future : futures) {
+      assertTrue(future.get(5, TimeUnit.SECONDS));
+    }
+    publisher.shutdown();
+  }
+
+  public void testDropOldestFailsOldestQueued() throws Exception {
+    final GatedPublisher decoratee = new GatedPublisher();
+    final RingBufferPublisher publisher = new RingBufferPublisher(decoratee, 2,
+                                                                  RingBufferPublisher.FullPolicy.DROP_OLDEST, 1, null);
+    final List<Future<Boolean>> futures = fill(publisher, decoratee);
+    final Future<Boolean> last = publisher.publishEventAsync("text/plain", "Message 3", null);
+    assertEquals(1, publisher.getDroppedCount());
+    decoratee.gate.countDown();
+    assertTrue(futures.get(0).get(5, TimeUnit.SECONDS));
+    try {
+      futures.get(1).get(5, TimeUnit.SECONDS);
+      fail("Oldest queued publication should have been dropped");
+    }
+    catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof EventPublicationException);
+    }
+    assertTrue(futures.get(2).get(5, TimeUnit.SECONDS));
+    assertTrue(last.get(5, TimeUnit.SECONDS));
+    publisher.shutdown();
+    assertEquals(3, decoratee.messages.size());
+    assertFalse(decoratee.messages.contains("Message 1"));
+  }
+
+  public void testBlockWaitsForSlot() throws Exception {
+    final GatedPublisher decoratee = new GatedPublisher();
+    final RingBufferPublisher publisher = new RingBufferPublisher(decoratee, 2, RingBufferPublisher.FullPolicy.BLOCK,
+                                                                  1, null);
+    fill(publisher, decoratee);
+    final List<Future<Boolean>> blocked = Collections.synchronizedList(new ArrayList<Future<Boolean>>());
+    final Thread producer = new Thread(new Runnable() {
+
+      public void run() {
+        blocked.add(publisher.publishEventAsync("text/plain", "Message 3", null));
+      }
+    });
+    producer.start();
+    producer.join(200);
+    assertTrue(producer.isAlive());
+    decoratee.gate.countDown();
+    producer.join(5000);
+    assertFalse(producer.isAlive());
+    assertTrue(blocked.get(0).get(5, TimeUnit.SECONDS));
+    assertTrue(publisher.getProducerWaitNanos() > 0);
+    publisher.shutdown();
+  }
+
+  public void testShutdownRejectsProducerWaitingForSlot() throws Exception {
+    final GatedPublisher decoratee = new GatedPublisher();
+    final RingBufferPublisher publisher = new RingBufferPublisher(decoratee, 2, RingBufferPublisher.FullPolicy.BLOCK,
+                                                                  1, null);
+    final List<Future<Boolean>> futures = fill(publisher, decoratee);
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+    final Thread producer = new Thread(new Runnable() {
+
+      public void run() {
+        try {
+          publisher.publishEventAsync("text/plain", "Message 3", null);
+        }
+        catch (RuntimeException ex) {
+          errors.add(ex);
+        }
+      }
+    });
+    producer.start();
+    producer.join(200);
+    assertTrue(producer.isAlive());
+    final Thread shutdown = new Thread(new Runnable() {
+
+      public void run() {
+        publisher.shutdown();
+      }
+    });
+    shutdown.start();
+    producer.join(5000);
+    assertFalse(producer.isAlive());
+    assertTrue(errors.get(0) instanceof EventPublicationException);
+    decoratee.gate.countDown();
+    shutdown.join(5000);
+    assertFalse(shutdown.isAlive());
+    for (Future<Boolean> future : futures) {
+      assertTrue(future.get(5, TimeUnit.SECONDS));
+    }
+    assertFalse(decoratee.messages.contains("Message 3"));
+  }
+
+  public void testBatchIsQueuedThroughBuffer() throws Exception {
+    final GatedPublisher decoratee = new GatedPublisher();
+    final RingBufferPublisher publisher = new RingBufferPublisher(decoratee, 2,
+                                                                  RingBufferPublisher.FullPolicy.FAIL_FAST, 1, null);
+    final List<Future<Boolean>> futures = fill(publisher, decoratee);
+    final List<PublishableEvent> overflow = Collections.singletonList(new PublishableEvent("text/plain", "Message 3"));
+    final List<PublicationResult> rejected = publisher.publishEvents(overflow);
+    assertEquals(1, rejected.size());
+    assertFalse(rejected.get(0).isPublished());
+    assertTrue(rejected.get(0).getError() instanceof EventPublicationException);
+    decoratee.gate.countDown();
+    for (Future<Boolean> future : futures) {
+      assertTrue(future.get(5, TimeUnit.SECONDS));
+    }
+    final List<PublishableEvent> batch = new ArrayList<PublishableEvent>();
+    for (int i = 4; i < 6; ++i) {
+      batch.add(new PublishableEvent("text/plain", "Message " + i));
+    }
+    final List<PublicationResult> results = publisher.publishEvents(batch);
+    assertEquals(2, results.size());
+    for (int i = 0; i < results.size(); ++i) {
+      assertTrue(results.get(i).isPublished());
+      assertSame(batch.get(i), results.get(i).getEvent());
+    }
+    publisher.shutdown();
+    assertEquals(5, decoratee.messages.size());
+    assertEquals("Message 5", decoratee.messages.get(4));
+  }
+
+  /**
+   * Publish one event to occupy the worker and two more to fill a buffer of capacity 2.
+   */
+  private static List<Future<Boolean>> fill(RingBufferPublisher publisher, GatedPublisher decoratee) throws
+      InterruptedException {
+    final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+    futures.add(publisher.publishEventAsync("text/plain", "Message 0", null));
+    assertTrue(decoratee.entered.await(5, TimeUnit.SECONDS));
+    futures.add(publisher.publishEventAsync("text/plain", "Message 1", null));
+    futures.add(publisher.publishEventAsync("text/plain", "Message 2", null));
+    return futures;
+  }
+
+  private static class GatedPublisher implements EventPublisher {
+
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+
+    public boolean publishEvent(String eventContentType, String eventMessage) {
+      entered.countDown();
+      try {
+        gate.await();
+      }
+      catch (InterruptedException ex) {
+        throw new EventPublicationException(ex);
+      }
+      messages.add(eventMessage);
+      return true;
+    }
+
+    public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+      throw new UnsupportedOperationException();
+    }
+
+    public Future<Boolean> publishEventAsync(String eventContentType, String eventMessage,
+                                             PublicationCallback callback) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
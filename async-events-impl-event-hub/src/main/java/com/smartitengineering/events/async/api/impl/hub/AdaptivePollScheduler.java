@@ -0,0 +1,115 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules polls of a subscriber depending on what the previous poll found. As long as polls consume events the
+ * next poll is started right away, so a subscriber lagging behind the hub catches up without waiting. Once a poll
+ * finds no event, or ends early as a consumer failed, the subscriber backs off, doubling the interval from the minimum
+ * up to the maximum till events are consumed again. Polls never overlap as each is scheduled only after the previous one has completed.
+ * @author imyousuf
+ */
+public class AdaptivePollScheduler {
+
+  private final EventSubscriberImpl subscriber;
+  private final SharedPollScheduler scheduler;
+  private final long minIntervalMillis;
+  private final long maxIntervalMillis;
+  private HashedWheelTimer.Timeout timeout;
+  private boolean started;
+  private long idleIntervalMillis;
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  public AdaptivePollScheduler(EventSubscriberImpl subscriber, SharedPollScheduler scheduler, long minIntervalMillis,
+                               long maxIntervalMillis) {
+    if (subscriber == null || scheduler == null) {
+      throw new IllegalArgumentException("Subscriber and scheduler can not be null!");
+    }
+    this.subscriber = subscriber;
+    this.scheduler = scheduler;
+    this.minIntervalMillis = Math.max(0, minIntervalMillis);
+    this.maxIntervalMillis = Math.max(this.minIntervalMillis, maxIntervalMillis);
+  }
+
+  public synchronized void start() {
+    if (started) {
+      return;
+    }
+    started = true;
+    idleIntervalMillis = minIntervalMillis;
+    schedule(0);
+  }
+
+  public synchronized void stop() {
+    started = false;
+    if (timeout != null) {
+      timeout.cancel();
+      timeout = null;
+    }
+  }
+
+  public synchronized boolean isStarted() {
+    return started;
+  }
+
+  /**
+   * Compute the delay before the next poll from the number of events consumed by the previous one. A poll that ended
+   * early, as when a consumer failed, is backed off from just like one that found no event, so that a consumer
+   * failing persistently does not have the hub polled in a tight loop.
+   * @param endedEarly Whether the previous poll ended before consuming all events
+   */
+  protected synchronized long nextDelay(int eventsConsumed, boolean endedEarly) {
+    if (eventsConsumed > 0 && !endedEarly) {
+      idleIntervalMillis = minIntervalMillis;
+      return 0;
+    }
+    final long delay = idleIntervalMillis;
+    idleIntervalMillis = Math.min(maxIntervalMillis, Math.max(1, idleIntervalMillis) * 2);
+    return delay;
+  }
+
+  protected synchronized void schedule(long delayMillis) {
+    if (!started) {
+      return;
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("Next poll in " + delayMillis + "ms");
+    }
+    timeout = scheduler.schedule(new Runnable() {
+
+      @Override
+      public void run() {
+        int eventsConsumed = 0;
+        boolean endedEarly = true;
+        try {
+          subscriber.poll();
+          eventsConsumed = subscriber.getLastPollEventCount();
+          endedEarly = subscriber.hasLastPollEndedEarly();
+        }
+        catch (Exception ex) {
+          logger.warn("Could not execute poll", ex);
+        }
+        schedule(nextDelay(eventsConsumed, endedEarly));
+      }
+    }, delayMillis);
+  }
+}
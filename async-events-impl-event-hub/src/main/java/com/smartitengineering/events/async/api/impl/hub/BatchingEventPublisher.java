@@ -0,0 +1,270 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.smartitengineering.events.async.api.EventPublicationException;
+import com.smartitengineering.events.async.api.EventPublisher;
+import com.smartitengineering.events.async.api.PublicationCallback;
+import com.smartitengineering.events.async.api.PublicationFuture;
+import com.smartitengineering.events.async.api.PublicationResult;
+import com.smartitengineering.events.async.api.PublishableEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A publisher that coalesces single event publications into batches and hands them over to the decorated publisher.
+ * A batch is published once it reaches the configured size or once its oldest event has lingered for the configured
+ * duration, whichever happens first. Callers of {@link #publishEvent(java.lang.String, java.lang.String)} are
+ * blocked until the batch containing their event has been published, whereas
+ * {@link #publishEventAsync(java.lang.String, java.lang.String, com.smartitengineering.events.async.api.PublicationCallback)}
+ * returns as soon as the event is queued. The queue of pending events is bounded; when it is full publications either
+ * wait for room or are rejected with an {@link EventPublicationException}, as configured.
+ * @author imyousuf
+ */
+@Singleton
+public class BatchingEventPublisher implements EventPublisher {
+
+  private static final long IDLE_POLL_MILLIS = 100;
+  private final EventPublisher publisher;
+  @Inject(optional = true)
+  @Named("publishBatchSize")
+  private Integer batchSize = new Integer(100);
+  @Inject(optional = true)
+  @Named("publishBatchLingerMillis")
+  private Long lingerMillis = new Long(5);
+  @Inject(optional = true)
+  @Named("publicationCallbackExecutor")
+  private Executor callbackExecutor;
+  @Inject(optional = true)
+  @Named("publishQueueCapacity")
+  private Integer queueCapacity = new Integer(10000);
+  @Inject(optional = true)
+  @Named("publishQueueBlockWhenFull")
+  private Boolean blockWhenFull = Boolean.TRUE;
+  private BlockingQueue<PendingEvent> pendingEvents;
+  private volatile Thread flusher;
+  private volatile boolean flushing;
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  @Inject
+  public BatchingEventPublisher(@Named("batchedPublisher") EventPublisher publisher) {
+    this.publisher = publisher;
+  }
+
+  @Override
+  public boolean publishEvent(String eventContentType, String eventMessage) {
+    try {
+      return publishEventAsync(eventContentType, eventMessage, null).get().booleanValue();
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new EventPublicationException(ex);
+    }
+    catch (ExecutionException ex) {
+      if (ex.getCause() instanceof EventPublicationException) {
+        throw (EventPublicationException) ex.getCause();
+      }
+      throw new EventPublicationException(ex.getCause());
+    }
+  }
+
+  /**
+   * Queue the event to be published with the next batch, waiting for room or failing with an
+   * {@link EventPublicationException} if the queue is full, as configured.
+   */
+  @Override
+  public Future<Boolean> publishEventAsync(String eventContentType, String eventMessage,
+                                           PublicationCallback callback) {
+    final PendingEvent pendingEvent = new PendingEvent(new PublishableEvent(eventContentType, eventMessage),
+                                                       new PublicationFuture(callback, callbackExecutor));
+    final BlockingQueue<PendingEvent> queue = ensureFlusherStarted();
+    if (blockWhenFull.booleanValue()) {
+      try {
+        queue.put(pendingEvent);
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new EventPublicationException(ex);
+      }
+    }
+    else if (!queue.offer(pendingEvent)) {
+      throw new EventPublicationException(new RejectedExecutionException("Publication queue full"));
+    }
+    if (flusher == null) {
+      //Shut down while queueing, start flushing again so that the event is not left behind
+      ensureFlusherStarted();
+    }
+    return pendingEvent.future;
+  }
+
+  @Override
+  public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+    return publisher.publishEvents(events);
+  }
+
+  /**
+   * Stop the background flusher, waiting for the batch it is publishing, and then publish events that are still
+   * pending.
+   */
+  public synchronized void shutdown() {
+    if (flusher != null) {
+      flushing = false;
+      try {
+        flusher.join();
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      flusher = null;
+    }
+    if (pendingEvents != null) {
+      List<PendingEvent> remaining = new ArrayList<PendingEvent>();
+      pendingEvents.drainTo(remaining);
+      publishBatch(remaining);
+    }
+  }
+
+  public void setQueueCapacity(Integer queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+
+  public void setBlockWhenFull(Boolean blockWhenFull) {
+    this.blockWhenFull = blockWhenFull;
+  }
+
+  /**
+   * Start the flusher unless running, creating the queue of pending events with the configured capacity when first
+   * started.
+   * @return The queue of pending events
+   */
+  protected synchronized BlockingQueue<PendingEvent> ensureFlusherStarted() {
+    if (pendingEvents == null) {
+      pendingEvents = new ArrayBlockingQueue<PendingEvent>(Math.max(1, queueCapacity.intValue()));
+    }
+    if (flusher == null) {
+      flushing = true;
+      flusher = new DaemonThreadFactory("event-batch-flusher").newThread(new Runnable() {
+
+        @Override
+        public void run() {
+          flushContinuously();
+        }
+      });
+      flusher.start();
+    }
+    return pendingEvents;
+  }
+
+  /**
+   * Publish pending events in batches until shut down. Idle waits are bounded so that the flusher notices being shut
+   * down without being interrupted, which could abort the publication of a batch in progress.
+   */
+  protected void flushContinuously() {
+    final int maxBatchSize = Math.max(1, batchSize.intValue());
+    final List<PendingEvent> batch = new ArrayList<PendingEvent>(maxBatchSize);
+    final BlockingQueue<PendingEvent> queue = pendingEvents;
+    while (flushing) {
+      try {
+        final PendingEvent first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis.longValue());
+        while (batch.size() < maxBatchSize) {
+          queue.drainTo(batch, maxBatchSize - batch.size());
+          final long remaining = deadline - System.nanoTime();
+          if (batch.size() >= maxBatchSize || remaining <= 0) {
+            break;
+          }
+          final PendingEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        flushing = false;
+      }
+      publishBatch(batch);
+      batch.clear();
+    }
+  }
+
+  protected void publishBatch(List<PendingEvent> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("Flushing batch of " + batch.size() + " events");
+    }
+    final List<PublishableEvent> events = new ArrayList<PublishableEvent>(batch.size());
+    for (PendingEvent pendingEvent : batch) {
+      events.add(pendingEvent.event);
+    }
+    try {
+      final List<PublicationResult> results = publisher.publishEvents(events);
+      for (int i = 0; i < batch.size(); ++i) {
+        final PublicationResult result = i < results.size() ? results.get(i) : null;
+        final PublicationFuture future = batch.get(i).future;
+        if (result == null) {
+          future.set(Boolean.FALSE);
+        }
+        else if (result.getError() != null) {
+          future.setException(result.getError());
+        }
+        else {
+          future.set(result.isPublished());
+        }
+      }
+    }
+    catch (RuntimeException ex) {
+      logger.warn("Could not publish batch!", ex);
+      for (PendingEvent pendingEvent : batch) {
+        pendingEvent.future.setException(ex);
+      }
+    }
+  }
+
+  protected static class PendingEvent {
+
+    private final PublishableEvent event;
+    private final PublicationFuture future;
+
+    public PendingEvent(PublishableEvent event, PublicationFuture future) {
+      this.event = event;
+      this.future = future;
+    }
+  }
+}
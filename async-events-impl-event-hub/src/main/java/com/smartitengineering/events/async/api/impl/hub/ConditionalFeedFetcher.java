@@ -0,0 +1,178 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.util.rest.client.ClientFactory;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.core.MediaType;
+import org.apache.abdera.model.Feed;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads feed pages with conditional requests. The validators, i.e. <tt>ETag</tt> and <tt>Last-Modified</tt>, of
+ * the last response of each URI are remembered and sent back as <tt>If-None-Match</tt> and
+ * <tt>If-Modified-Since</tt> so that the hub can answer with <tt>304 Not Modified</tt> and no body when the page is
+ * unchanged. Validators of a page are only remembered once its events have been consumed, see
+ * {@link #remember(java.net.URI, ConditionalFeedFetcher.FetchedFeed)}, so that a page whose consumption failed is
+ * read again in full.
+ * @author imyousuf
+ */
+class ConditionalFeedFetcher {
+
+  private static final String ETAG = "ETag";
+  private static final String LAST_MODIFIED = "Last-Modified";
+  private static final String IF_NONE_MATCH = "If-None-Match";
+  private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+  private final ClientFactory clientFactory;
+  private final Map<String, Validators> validators;
+  private final AtomicLong conditionalRequests = new AtomicLong();
+  private final AtomicLong notModifiedResponses = new AtomicLong();
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  ConditionalFeedFetcher(ClientFactory clientFactory, final int capacity) {
+    this.clientFactory = clientFactory;
+    validators = new LinkedHashMap<String, Validators>(16, 0.75f, true) {
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Validators> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Read the feed at the URI unless it has not been modified since it was last read.
+   * @return The feed along with its validators, or null if the hub responded that it has not been modified
+   */
+  public FetchedFeed fetchIfModified(URI uri) {
+    final String key = uri.toASCIIString();
+    final Validators previous;
+    synchronized (validators) {
+      previous = validators.get(key);
+    }
+    WebResource.Builder request = clientFactory.getClient().resource(uri).accept(MediaType.APPLICATION_ATOM_XML_TYPE);
+    if (previous != null) {
+      conditionalRequests.incrementAndGet();
+      if (previous.etag != null) {
+        request = request.header(IF_NONE_MATCH, previous.etag);
+      }
+      if (previous.lastModified != null) {
+        request = request.header(IF_MODIFIED_SINCE, previous.lastModified);
+      }
+    }
+    final ClientResponse response = request.get(ClientResponse.class);
+    final int status = response.getStatus();
+    if (status == ClientResponse.Status.NOT_MODIFIED.getStatusCode()) {
+      response.close();
+      notModifiedResponses.incrementAndGet();
+      if (logger.isDebugEnabled()) {
+        logger.debug("Feed not modified " + key);
+      }
+      return null;
+    }
+    if (status != ClientResponse.Status.OK.getStatusCode()) {
+      response.close();
+      throw new IllegalStateException("Unexpected status " + status + " for " + key);
+    }
+    final Validators responseValidators = new Validators(response.getHeaders().getFirst(ETAG), response.getHeaders().
+        getFirst(LAST_MODIFIED));
+    return new FetchedFeed(response.getEntity(Feed.class), responseValidators);
+  }
+
+  /**
+   * Remember the validators of the feed read from the URI, to be sent with the next request for it. To be called
+   * only once all events of the feed have been consumed.
+   */
+  public void remember(URI uri, FetchedFeed fetchedFeed) {
+    final String key = uri.toASCIIString();
+    synchronized (validators) {
+      if (fetchedFeed.validators.isEmpty()) {
+        validators.remove(key);
+      }
+      else {
+        validators.put(key, fetchedFeed.validators);
+      }
+    }
+  }
+
+  /**
+   * Forget the validators of the URI so that it is read in full the next time.
+   */
+  public void forget(URI uri) {
+    synchronized (validators) {
+      validators.remove(uri.toASCIIString());
+    }
+  }
+
+  public long getConditionalRequestCount() {
+    return conditionalRequests.get();
+  }
+
+  public long getNotModifiedCount() {
+    return notModifiedResponses.get();
+  }
+
+  /**
+   * Ratio of conditional requests answered with <tt>304 Not Modified</tt>.
+   */
+  public double getHitRatio() {
+    final long requests = conditionalRequests.get();
+    return requests == 0 ? 0 : (double) notModifiedResponses.get() / requests;
+  }
+
+  /**
+   * A feed read with a conditional request, along with the validators of the response.
+   */
+  public static class FetchedFeed {
+
+    private final Feed feed;
+    private final Validators validators;
+
+    FetchedFeed(Feed feed, Validators validators) {
+      this.feed = feed;
+      this.validators = validators;
+    }
+
+    public Feed getFeed() {
+      return feed;
+    }
+  }
+
+  private static class Validators {
+
+    private final String etag;
+    private final String lastModified;
+
+    public Validators(String etag, String lastModified) {
+      this.etag = StringUtils.isBlank(etag) ? null : etag;
+      this.lastModified = StringUtils.isBlank(lastModified) ? null : lastModified;
+    }
+
+    public boolean isEmpty() {
+      return etag == null && lastModified == null;
+    }
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.BatchEventConsumer;
+import com.smartitengineering.events.async.api.EventConsumer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers events to a single consumer from a bounded queue in a dedicated worker thread, so that a slow consumer
+ * does not hold up the others. Events are delivered in the order they are dispatched and dispatching blocks while
+ * the queue is full. Once the consumer fails it is not handed any further event till the failure is cleared.
+ * @author imyousuf
+ */
+class ConsumerDispatcher {
+
+  private static final long IDLE_POLL_MILLIS = 100;
+  private final EventConsumer consumer;
+  private final BlockingQueue<Runnable> queue;
+  private final Thread worker;
+  private volatile DispatchedEvent failedEvent;
+  private volatile boolean running = true;
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  ConsumerDispatcher(EventConsumer consumer, int capacity, ThreadFactory threadFactory) {
+    this.consumer = consumer;
+    this.queue = new ArrayBlockingQueue<Runnable>(Math.max(1, capacity));
+    this.worker = threadFactory.newThread(new Runnable() {
+
+      @Override
+      public void run() {
+        work();
+      }
+    });
+    this.worker.start();
+  }
+
+  public EventConsumer getConsumer() {
+    return consumer;
+  }
+
+  public void startConsumption() throws InterruptedException {
+    queue.put(new Runnable() {
+
+      @Override
+      public void run() {
+        consumer.startConsumption();
+      }
+    });
+  }
+
+  public void consume(final DispatchedEvent event) throws InterruptedException {
+    queue.put(new Runnable() {
+
+      @Override
+      public void run() {
+        if (failedEvent != null) {
+          return;
+        }
+        try {
+          EventSubscriberImpl.consumeEvent(consumer, event.getEvent());
+          event.consumed();
+        }
+        catch (Exception ex) {
+          logger.warn("Consumer threw exception to halt subscription", ex);
+          failedEvent = event;
+        }
+      }
+    });
+  }
+
+  /**
+   * Dispatch a batch of events to be consumed in one call by a batch consumer. Should the consumer fail, the first
+   * event of the batch is considered as the failed event.
+   */
+  public void consumeBatch(final List<DispatchedEvent> batch) throws InterruptedException {
+    queue.put(new Runnable() {
+
+      @Override
+      public void run() {
+        if (failedEvent != null || batch.isEmpty()) {
+          return;
+        }
+        final List<HubEvent> events = new ArrayList<HubEvent>(batch.size());
+        for (DispatchedEvent event : batch) {
+          events.add(event.getEvent());
+        }
+        try {
+          ((BatchEventConsumer) consumer).consumeBatch(events);
+          for (DispatchedEvent event : batch) {
+            event.consumed();
+          }
+        }
+        catch (Exception ex) {
+          logger.warn("Consumer threw exception to halt subscription", ex);
+          failedEvent = batch.get(0);
+        }
+      }
+    });
+  }
+
+  public void endConsumption(final boolean prematureEnd) throws InterruptedException {
+    queue.put(new Runnable() {
+
+      @Override
+      public void run() {
+        consumer.endConsumption(prematureEnd);
+      }
+    });
+  }
+
+  /**
+   * Wait till all events dispatched so far have been handed to the consumer.
+   */
+  public void awaitIdle() throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(1);
+    queue.put(new Runnable() {
+
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    });
+    latch.await();
+  }
+
+  /**
+   * @return The event the consumer failed to consume or null if it has not failed
+   */
+  public DispatchedEvent getFailedEvent() {
+    return failedEvent;
+  }
+
+  public void clearFailure() {
+    failedEvent = null;
+  }
+
+  /**
+   * Stop the worker once the events already dispatched are delivered. Nothing is to be dispatched afterwards.
+   */
+  public void shutdown() {
+    running = false;
+  }
+
+  protected void work() {
+    while (true) {
+      final Runnable task;
+      try {
+        task = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (task == null) {
+        if (!running) {
+          return;
+        }
+        continue;
+      }
+      try {
+        task.run();
+      }
+      catch (RuntimeException ex) {
+        logger.warn("Could not dispatch to consumer", ex);
+      }
+    }
+  }
+
+  /**
+   * An event dispatched to all consumers along with the position to retry from should any of them fail to consume
+   * it.
+   */
+  static class DispatchedEvent {
+
+    private final HubEvent event;
+    private final String eventId;
+    private final long sequence;
+    private final String pageUri;
+    private final String previousEventId;
+    private final AtomicInteger pendingConsumers;
+    private final DuplicateEventFilter filter;
+
+    DispatchedEvent(HubEvent event, String eventId, long sequence, String pageUri, String previousEventId,
+                    int consumers, DuplicateEventFilter filter) {
+      this.event = event;
+      this.eventId = eventId;
+      this.sequence = sequence;
+      this.pageUri = pageUri;
+      this.previousEventId = previousEventId;
+      this.pendingConsumers = new AtomicInteger(consumers);
+      this.filter = filter;
+    }
+
+    public HubEvent getEvent() {
+      return event;
+    }
+
+    public long getSequence() {
+      return sequence;
+    }
+
+    public String getPageUri() {
+      return pageUri;
+    }
+
+    public String getPreviousEventId() {
+      return previousEventId;
+    }
+
+    /**
+     * Record the event as consumed once every consumer has consumed it.
+     */
+    void consumed() {
+      if (pendingConsumers.decrementAndGet() == 0 && filter != null) {
+        filter.record(eventId);
+      }
+    }
+  }
+}
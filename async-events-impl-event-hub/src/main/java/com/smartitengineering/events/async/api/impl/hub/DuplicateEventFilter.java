@@ -0,0 +1,149 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded filter remembering the ids of the most recently consumed events in order to suppress duplicate
+ * deliveries. Ids are reduced to 64 bit hashes kept in a primitive open addressing hash table, so the memory used is
+ * fixed by the capacity, at most 40 bytes per id, regardless of the length of the ids. Once the capacity is reached
+ * the oldest id is forgotten. The chance of a hash collision, i.e. a new event being treated as duplicate, is
+ * negligible for any practical capacity.
+ * @author imyousuf
+ */
+public class DuplicateEventFilter {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final long EMPTY = 0L;
+  private final long[] table;
+  private final int mask;
+  private final long[] insertionOrder;
+  private int insertionIndex;
+  private int size;
+  private final AtomicLong suppressedCount = new AtomicLong(0);
+
+  public DuplicateEventFilter(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive!");
+    }
+    int tableSize = Integer.highestOneBit(capacity) << 2;
+    table = new long[tableSize];
+    mask = tableSize - 1;
+    insertionOrder = new long[capacity];
+  }
+
+  /**
+   * Checks whether the event has already been recorded as consumed. Duplicates are counted as suppressed.
+   */
+  public synchronized boolean isDuplicate(String eventId) {
+    if (eventId == null) {
+      return false;
+    }
+    final boolean duplicate = indexOf(hash(eventId)) >= 0;
+    if (duplicate) {
+      suppressedCount.incrementAndGet();
+    }
+    return duplicate;
+  }
+
+  /**
+   * Record the event as consumed, forgetting the oldest recorded event if the filter is full.
+   */
+  public synchronized void record(String eventId) {
+    if (eventId == null) {
+      return;
+    }
+    final long hash = hash(eventId);
+    if (indexOf(hash) >= 0) {
+      return;
+    }
+    if (size == insertionOrder.length) {
+      remove(insertionOrder[insertionIndex]);
+      size--;
+    }
+    insertionOrder[insertionIndex] = hash;
+    insertionIndex = (insertionIndex + 1) % insertionOrder.length;
+    int index = home(hash);
+    while (table[index] != EMPTY) {
+      index = (index + 1) & mask;
+    }
+    table[index] = hash;
+    size++;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public long getSuppressedCount() {
+    return suppressedCount.get();
+  }
+
+  protected int indexOf(long hash) {
+    int index = home(hash);
+    while (table[index] != EMPTY) {
+      if (table[index] == hash) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Remove using backward shift deletion so that no tombstones are required.
+   */
+  protected void remove(long hash) {
+    int hole = indexOf(hash);
+    if (hole < 0) {
+      return;
+    }
+    int index = hole;
+    while (true) {
+      index = (index + 1) & mask;
+      final long current = table[index];
+      if (current == EMPTY) {
+        break;
+      }
+      final int currentHome = home(current);
+      final boolean inPlace = hole <= index ? (hole < currentHome && currentHome <= index)
+                              : (hole < currentHome || currentHome <= index);
+      if (!inPlace) {
+        table[hole] = current;
+        hole = index;
+      }
+    }
+    table[hole] = EMPTY;
+  }
+
+  protected int home(long hash) {
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  protected static long hash(String eventId) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < eventId.length(); ++i) {
+      hash ^= eventId.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    return hash == EMPTY ? 1L : hash;
+  }
+}
@@ -23,10 +23,25 @@ import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import com.smartitengineering.events.async.api.EventPublicationException;
 import com.smartitengineering.events.async.api.EventPublisher;
+import com.smartitengineering.events.async.api.PublicationCallback;
+import com.smartitengineering.events.async.api.PublicationFuture;
+import com.smartitengineering.events.async.api.PublicationResult;
+import com.smartitengineering.events.async.api.PublishableEvent;
 import com.smartitengineering.util.rest.client.jersey.cache.CacheableClient;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
@@ -46,6 +61,15 @@ public class EventPublisherImpl implements EventPublisher {
   @Inject(optional = true)
   @Named("pubClient")
   private Client cacheableClient;
+  @Inject(optional = true)
+  @Named("publishConcurrency")
+  private Integer publishConcurrency = new Integer(4);
+  @Inject(optional = true)
+  @Named("publishExecutorService")
+  private ExecutorService publishExecutorService;
+  @Inject(optional = true)
+  @Named("publicationCallbackExecutor")
+  private Executor callbackExecutor;
   private WebResource channelHubResource;
   protected final transient Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -58,12 +82,97 @@ public class EventPublisherImpl implements EventPublisher {
     }
   }
 
+  protected synchronized WebResource getChannelHubResource() {
+    if (channelHubResource == null) {
+      channelHubResource = getClient().resource(eventHubChannelHubUri);
+    }
+    return channelHubResource;
+  }
+
+  /**
+   * The executor used to post events of a batch and asynchronous publications concurrently. Posts block a pool
+   * thread till the hub responds, so the pool size, <tt>publishConcurrency</tt> unless an executor is injected, is
+   * the limit of posts in flight; it is to be sized for the publication rate times the latency of the hub. As
+   * responses are closed after each post the underlying connections are kept alive and reused.
+   */
+  protected synchronized ExecutorService getPublishExecutorService() {
+    if (publishExecutorService == null) {
+      publishExecutorService = Executors.newFixedThreadPool(Math.max(1, publishConcurrency.intValue()),
+                                                            new DaemonThreadFactory("event-publisher"));
+    }
+    return publishExecutorService;
+  }
+
   @Override
   public boolean publishEvent(String eventContentType, String eventMessage) {
     logger.info("Publishing event");
-    if (channelHubResource == null) {
-      channelHubResource = getClient().resource(eventHubChannelHubUri);
+    return postEvent(getChannelHubResource(), eventContentType, eventMessage);
+  }
+
+  @Override
+  public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+    if (events == null || events.isEmpty()) {
+      return Collections.emptyList();
+    }
+    if (logger.isInfoEnabled()) {
+      logger.info("Publishing batch of " + events.size() + " events");
+    }
+    final WebResource resource = getChannelHubResource();
+    final ExecutorService executorService = getPublishExecutorService();
+    final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(events.size());
+    for (final PublishableEvent event : events) {
+      futures.add(executorService.submit(new Callable<Boolean>() {
+
+        @Override
+        public Boolean call() throws Exception {
+          return postEvent(resource, event.getContentType(), event.getMessage());
+        }
+      }));
+    }
+    final List<PublicationResult> results = new ArrayList<PublicationResult>(events.size());
+    final Iterator<PublishableEvent> eventIterator = events.iterator();
+    for (Future<Boolean> future : futures) {
+      final PublishableEvent event = eventIterator.next();
+      try {
+        results.add(new PublicationResult(event, future.get().booleanValue(), null));
+      }
+      catch (ExecutionException ex) {
+        results.add(new PublicationResult(event, false, ex.getCause()));
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        results.add(new PublicationResult(event, false, ex));
+      }
     }
+    return results;
+  }
+
+  /**
+   * Post the event on a thread of the publish executor. The caller is not blocked but the post is, so no more
+   * asynchronous publications are in flight than the executor has threads; the rest wait in its queue.
+   */
+  @Override
+  public Future<Boolean> publishEventAsync(final String eventContentType, final String eventMessage,
+                                           PublicationCallback callback) {
+    logger.info("Publishing event asynchronously");
+    final WebResource resource = getChannelHubResource();
+    final PublicationFuture future = new PublicationFuture(callback, callbackExecutor);
+    getPublishExecutorService().execute(new Runnable() {
+
+      @Override
+      public void run() {
+        try {
+          future.set(postEvent(resource, eventContentType, eventMessage));
+        }
+        catch (RuntimeException ex) {
+          future.setException(ex);
+        }
+      }
+    });
+    return future;
+  }
+
+  protected boolean postEvent(WebResource resource, String eventContentType, String eventMessage) {
     if (logger.isDebugEnabled()) {
       logger.debug("Publishing message " + eventContentType + " of type " + eventContentType);
     }
@@ -71,9 +180,8 @@ public class EventPublisherImpl implements EventPublisher {
     WebApplicationException webApplicationException = null;
     int status;
     try {
-      response = channelHubResource.accept(MediaType.MEDIA_TYPE_WILDCARD).header(HttpHeaders.CONTENT_TYPE,
-                                                                                 eventContentType).post(
-          ClientResponse.class, eventMessage);
+      response = resource.accept(MediaType.MEDIA_TYPE_WILDCARD).header(HttpHeaders.CONTENT_TYPE, eventContentType).
+          post(ClientResponse.class, eventMessage);
       status = response.getStatus();
       response.close();
       return status >= 200 && status < 400;
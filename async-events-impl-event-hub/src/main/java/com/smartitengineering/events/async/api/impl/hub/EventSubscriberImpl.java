@@ -22,8 +22,10 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.internal.Nullable;
 import com.google.inject.name.Named;
+import com.smartitengineering.events.async.api.BatchEventConsumer;
 import com.smartitengineering.events.async.api.EventConsumer;
 import com.smartitengineering.events.async.api.EventSubscriber;
+import com.smartitengineering.events.async.api.StreamEventConsumer;
 import com.smartitengineering.events.async.api.SubscriptionPreconditionChecker;
 import com.smartitengineering.events.async.api.UriStorer;
 import com.smartitengineering.util.rest.atom.AbstractFeedClientResource;
@@ -39,11 +41,23 @@ import com.smartitengineering.util.rest.client.ResourceLink;
 import com.sun.jersey.api.client.UniformInterfaceException;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.atom.abdera.impl.provider.entity.FeedProvider;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.ws.rs.core.MediaType;
@@ -52,14 +66,10 @@ import org.apache.abdera.model.Feed;
 import org.apache.abdera.model.Link;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.jaxrs.JacksonJsonProvider;
-import org.quartz.CronTrigger;
-import org.quartz.JobDetail;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.quartz.JobExecutionContext;
-import org.quartz.Scheduler;
 import org.quartz.Trigger;
 import org.quartz.TriggerListener;
-import org.quartz.impl.StdSchedulerFactory;
-import org.quartz.jobs.NoOpJob;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,6 +80,13 @@ import org.slf4j.LoggerFactory;
 @Singleton
 public class EventSubscriberImpl implements EventSubscriber {
 
+  private static final ObjectMapper EVENT_MAPPER = new ObjectMapper();
+  private static final int CONDITIONAL_GET_CAPACITY = 64;
+  /**
+   * Marker for a page that has not been modified since it was last consumed.
+   */
+  protected static final ConditionalFeedFetcher.FetchedFeed NOT_MODIFIED = new ConditionalFeedFetcher.FetchedFeed(
+      null, null);
   private final List<EventConsumer> consumers = Collections.synchronizedList(new ArrayList<EventConsumer>());
   private final String cronExpression;
   private final String eventAtomFeedUri;
@@ -81,6 +98,21 @@ public class EventSubscriberImpl implements EventSubscriber {
   private final UriStorer storer;
   @Inject(optional = true)
   private PollNameConfig pollNameConfig;
+  @Inject(optional = true)
+  private SubscriptionConfig subscriptionConfig;
+  private ExecutorService fetchExecutorService;
+  private DuplicateEventFilter duplicateEventFilter;
+  private final Map<EventConsumer, ConsumerDispatcher> dispatchers = new HashMap<EventConsumer, ConsumerDispatcher>();
+  private final DaemonThreadFactory dispatcherThreadFactory = new DaemonThreadFactory("event-consumer");
+  private long dispatchSequence;
+  private volatile int lastPollEventCount;
+  private volatile boolean backlog;
+  private volatile boolean lastPollEndedEarly;
+  private ConditionalFeedFetcher conditionalFeedFetcher;
+  private SegmentedFileCache eventCache;
+  private boolean eventCacheUnavailable;
+  private AdaptivePollScheduler adaptivePollScheduler;
+  private SharedPollScheduler.PeriodicPoll periodicPoll;
   private AtomicInteger integer = new AtomicInteger(0);
   protected final transient Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -126,8 +158,12 @@ public class EventSubscriberImpl implements EventSubscriber {
       logger.warn("Aborting poll as pre-condition for polling not met!");
     }
     integer.set(0);
+    lastPollEndedEarly = false;
+    clearDispatchFailures();
     ChannelEventsResource resource;
     boolean traverseOlder = false;
+    String resumeAfterEventId = null;
+    ConditionalFeedFetcher.FetchedFeed fetchedFeed = null;
     final String nextUri = storer.getNextUri();
     if (StringUtils.isBlank(nextUri)) {
       if (logger.isDebugEnabled()) {
@@ -141,14 +177,34 @@ public class EventSubscriberImpl implements EventSubscriber {
       if (logger.isDebugEnabled()) {
         logger.debug("URI being polled is " + nextUri);
       }
-      resource = new ChannelEventsResource(ClientUtil.createResourceLink("events", URI.create(nextUri),
-                                                                         MediaType.APPLICATION_ATOM_XML), factory);
+      final URI pageUri = URI.create(nextUri);
+      resumeAfterEventId = storer.getLastConsumedEventId();
+      if (StringUtils.isBlank(resumeAfterEventId)) {
+        fetchedFeed = fetchIfModified(pageUri);
+        if (fetchedFeed == NOT_MODIFIED) {
+          lastPollEventCount = 0;
+          backlog = false;
+          return;
+        }
+      }
+      resource = new ChannelEventsResource(ClientUtil.createResourceLink("events", pageUri,
+                                                                         MediaType.APPLICATION_ATOM_XML), factory,
+                                           fetchedFeed == null);
     }
-    boolean prematureEnd = processFeed(resource, traverseOlder);
-    if (integer.get() > 0) {
-      for (final EventConsumer consumer : consumers) {
-        consumer.endConsumption(!prematureEnd);
+    boolean prematureEnd = processFeed(resource, fetchedFeed == null ? null : fetchedFeed.getFeed(), traverseOlder,
+                                       resumeAfterEventId);
+    if (fetchedFeed != null) {
+      if (prematureEnd) {
+        getConditionalFeedFetcher().remember(resource.getUri(), fetchedFeed);
       }
+      else {
+        getConditionalFeedFetcher().forget(resource.getUri());
+      }
+    }
+    lastPollEventCount = integer.get();
+    lastPollEndedEarly = !prematureEnd;
+    if (integer.get() > 0) {
+      endConsumption(!prematureEnd);
       if (logger.isDebugEnabled()) {
         logger.debug("" + integer.get() + " Events processed");
       }
@@ -165,96 +221,784 @@ public class EventSubscriberImpl implements EventSubscriber {
     return cronExpression;
   }
 
-  private boolean processFeed(ChannelEventsResource resource, boolean traverseOlder) {
-    if (logger.isDebugEnabled()) {
-      logger.debug("RESOURCE being processed is " + resource.getUri().toASCIIString());
-    }
-    final Feed lastReadStateOfEntity = resource.getLastReadStateOfEntity();
-    final List<Entry> entries = lastReadStateOfEntity == null ? Collections.<Entry>emptyList() : lastReadStateOfEntity.
-        getEntries();
-    if (traverseOlder) {
-      if (entries != null && !entries.isEmpty()) {
-        final ChannelEventsResource next = resource.next();
-        if (next != null) {
-          boolean processOldEvents = processFeed(next, traverseOlder);
-          if (!processOldEvents) {
-            logger.warn("Error processing older events thus returning");
-            return processOldEvents;
-          }
+  /**
+   * Number of events consumed by the last completed poll.
+   */
+  public int getLastPollEventCount() {
+    return lastPollEventCount;
+  }
+
+  /**
+   * Whether the last poll ended before consuming all events it found, as when a consumer or fetching an event failed.
+   * Events counted by {@link #getLastPollEventCount()} for such a poll are retried by the next poll.
+   */
+  public boolean hasLastPollEndedEarly() {
+    return lastPollEndedEarly;
+  }
+
+  /**
+   * Whether the last poll stopped at the configured page limit while newer pages were still to be processed.
+   */
+  public boolean hasBacklog() {
+    return backlog;
+  }
+
+  /**
+   * Read the page at the URI with a conditional request, if enabled. The page is to be processed unless it has not
+   * been modified since it was last consumed in full, in which case {@link #NOT_MODIFIED} is returned. Pages with no
+   * entries are also reported as not modified as there is nothing to consume. Validators of a page read are only
+   * remembered once its events have been consumed, so that a page whose consumption failed is read in full again.
+   * @return The page read, {@link #NOT_MODIFIED} or null if the page is to be read unconditionally
+   */
+  protected ConditionalFeedFetcher.FetchedFeed fetchIfModified(URI pageUri) {
+    if (!getSubscriptionConfig().isConditionalGet()) {
+      return null;
+    }
+    try {
+      final ConditionalFeedFetcher.FetchedFeed fetchedFeed = getConditionalFeedFetcher().fetchIfModified(pageUri);
+      if (fetchedFeed == null) {
+        return NOT_MODIFIED;
+      }
+      if (getEntries(fetchedFeed.getFeed()).isEmpty()) {
+        getConditionalFeedFetcher().remember(pageUri, fetchedFeed);
+        return NOT_MODIFIED;
+      }
+      return fetchedFeed;
+    }
+    catch (Exception ex) {
+      logger.warn("Could not make conditional request, polling unconditionally", ex);
+      return null;
+    }
+  }
+
+  /**
+   * Ratio of conditional requests for the cursor page answered with <tt>304 Not Modified</tt>.
+   */
+  public double getConditionalGetHitRatio() {
+    return getConditionalFeedFetcher().getHitRatio();
+  }
+
+  public long getConditionalGetRequestCount() {
+    return getConditionalFeedFetcher().getConditionalRequestCount();
+  }
+
+  public long getConditionalGetNotModifiedCount() {
+    return getConditionalFeedFetcher().getNotModifiedCount();
+  }
+
+  protected synchronized ConditionalFeedFetcher getConditionalFeedFetcher() {
+    if (conditionalFeedFetcher == null) {
+      conditionalFeedFetcher = new ConditionalFeedFetcher(factory, CONDITIONAL_GET_CAPACITY);
+    }
+    return conditionalFeedFetcher;
+  }
+
+  /**
+   * Process the feed starting from the resource, page by page from older to newer events. If older events are to
+   * be traversed it first seeks the oldest page. Only the page being processed is held in memory.
+   * @param firstFeed The first page if already read, null to read it from the resource
+   * @param resumeAfterEventId Id of the last event consumed from the first page, null to consume the whole page
+   * @return True if all pages were processed, false if processing has to be retried from the stored URI
+   */
+  private boolean processFeed(ChannelEventsResource resource, Feed firstFeed, boolean traverseOlder,
+                              String resumeAfterEventId) {
+    ChannelEventsResource page = traverseOlder ? seekOldestPage(resource) : resource;
+    Feed readFeed = traverseOlder ? null : firstFeed;
+    String skipUptoEventId = resumeAfterEventId;
+    final int maxPages = getSubscriptionConfig().getMaxPagesPerPoll();
+    int pages = 0;
+    backlog = false;
+    while (page != null) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("RESOURCE being processed is " + page.getUri().toASCIIString());
+      }
+      final Feed feed = readFeed != null ? readFeed : page.getLastReadStateOfEntity();
+      readFeed = null;
+      final List<Entry> entries = getEntries(feed);
+      if (entries.isEmpty()) {
+        if (!awaitDispatch()) {
+          return false;
+        }
+        storer.storeNextUri(page.getUri().toASCIIString());
+        return true;
+      }
+      if (!processPage(page, entries, skipUptoEventId)) {
+        return false;
+      }
+      skipUptoEventId = null;
+      final Link newer = feed.getLink(Link.REL_PREVIOUS);
+      if (maxPages > 0 && ++pages >= maxPages && newer != null && newer.getHref() != null) {
+        if (!awaitDispatch()) {
+          return false;
         }
+        final String newerUri = page.getUri().resolve(newer.getHref().toASCIIString()).toASCIIString();
+        if (logger.isDebugEnabled()) {
+          logger.debug("Page limit reached, next poll resumes from " + newerUri);
+        }
+        storer.storeNextUri(newerUri);
+        backlog = true;
+        return true;
       }
+      page = getLinkedPage(page, feed, Link.REL_PREVIOUS);
     }
-    if (entries == null || entries.isEmpty()) {
-      storer.storeNextUri(resource.getUri().toASCIIString());
-      return true;
+    return awaitDispatch();
+  }
+
+  /**
+   * Seek the page with the oldest events. If the feed links to its last page it is used directly, else older pages
+   * are followed till a page without entries is found.
+   */
+  protected ChannelEventsResource seekOldestPage(ChannelEventsResource head) {
+    final Feed headFeed = head.getLastReadStateOfEntity();
+    if (getEntries(headFeed).isEmpty()) {
+      return head;
     }
-    List<HubEvent> events = new ArrayList<HubEvent>();
-    for (Entry entry : entries) {
-      Link altLink = entry.getAlternateLink();
-      final HubEvent event = new EventResource(resource, AtomClientUtil.convertFromAtomLinkToResourceLink(altLink),
-                                               factory).getLastReadStateOfEntity();
-      events.add(event);
+    final ChannelEventsResource last = getLinkedPage(head, headFeed, Link.REL_LAST);
+    if (last != null && !getEntries(last.getLastReadStateOfEntity()).isEmpty()) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("Jumping to oldest page " + last.getUri().toASCIIString());
+      }
+      return last;
+    }
+    ChannelEventsResource oldest = head;
+    ChannelEventsResource older = getLinkedPage(head, headFeed, Link.REL_NEXT);
+    while (older != null) {
+      final Feed olderFeed = older.getLastReadStateOfEntity();
+      if (getEntries(olderFeed).isEmpty()) {
+        break;
+      }
+      oldest = older;
+      older = getLinkedPage(older, olderFeed, Link.REL_NEXT);
+    }
+    return oldest;
+  }
+
+  /**
+   * Process the events of a single page. In case of failure the page is checkpointed along with the id of the last
+   * event consumed by all consumers so that the next poll resumes right after it.
+   * @param resumeAfterEventId Id of the event after which to start consuming, null to consume all events of page
+   * @return True if all events were consumed, false if the page is to be retried
+   */
+  protected boolean processPage(ChannelEventsResource resource, List<Entry> entries, String resumeAfterEventId) {
+    final List<HubEvent> fetchedEvents;
+    try {
+      fetchedEvents = fetchEvents(resource, entries);
+    }
+    catch (Exception ex) {
+      logger.warn("Could not fetch events of the feed", ex);
+      if (awaitDispatch()) {
+        retryPage(resource, resumeAfterEventId);
+      }
+      return false;
     }
     //Reverse it to get the older event first
-    Collections.reverse(events);
+    Collections.reverse(fetchedEvents);
+    final List<HubEvent> events = filterDuplicates(fetchedEvents.subList(getResumeIndex(fetchedEvents,
+                                                                                         resumeAfterEventId),
+                                                                         fetchedEvents.size()));
     if (events.size() > 0 && integer.get() == 0) {
-      for (final EventConsumer consumer : consumers) {
-        consumer.startConsumption();
-      }
+      startConsumption();
     }
     integer.addAndGet(events.size());
-    for (HubEvent event : events) {
-      for (final EventConsumer consumer : consumers) {
+    if (isDispatchingAsynchronously()) {
+      return dispatchEvents(resource, events, resumeAfterEventId);
+    }
+    final List<EventConsumer> currentConsumers = getCurrentConsumers();
+    final boolean batching = hasBatchConsumer(currentConsumers);
+    final int batchSize = batching ? getConsumerBatchSize(events.size()) : 1;
+    final String pageUri = resource.getUri().toASCIIString();
+    String lastConsumedEventId = resumeAfterEventId;
+    for (int from = 0; from < events.size(); from += batchSize) {
+      final List<HubEvent> batch = events.subList(from, Math.min(events.size(), from + batchSize));
+      for (final EventConsumer consumer : currentConsumers) {
         try {
-          consumer.consume(event.getContentType(), event.getContentAsString());
+          consume(consumer, batch);
         }
         catch (Exception ex) {
           logger.warn("Consumer threw exception to halt subscription", ex);
-          final String resourceUri = resource.getUri().toASCIIString();
-          if (logger.isInfoEnabled()) {
-            logger.info(new StringBuilder("Will retry this resource again ").append(resourceUri).toString());
-          }
-          storer.storeNextUri(resourceUri);
+          retryPage(resource, lastConsumedEventId);
           return false;
         }
       }
+      for (HubEvent event : batch) {
+        lastConsumedEventId = getEventId(event);
+        if (duplicateEventFilter != null) {
+          duplicateEventFilter.record(lastConsumedEventId);
+        }
+      }
+      if (batching) {
+        storer.storeCheckpoint(pageUri, lastConsumedEventId);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Hand the events to the consumer, in one call if it consumes batches.
+   */
+  protected void consume(EventConsumer consumer, List<HubEvent> events) {
+    if (consumer instanceof BatchEventConsumer) {
+      ((BatchEventConsumer) consumer).consumeBatch(events);
+    }
+    else {
+      for (HubEvent event : events) {
+        consumeEvent(consumer, event);
+      }
     }
-    final ChannelEventsResource previous = resource.previous();
-    if (previous != null) {
-      return processFeed(previous, false);
+  }
+
+  /**
+   * Hand a single event to the consumer, as a stream of bytes if it consumes streams.
+   */
+  protected static void consumeEvent(EventConsumer consumer, HubEvent event) {
+    if (consumer instanceof StreamEventConsumer) {
+      ((StreamEventConsumer) consumer).consumeStream(event.getContentType(), event.getContentAsStream());
     }
     else {
+      consumer.consume(event.getContentType(), event.getContentAsString());
+    }
+  }
+
+  protected boolean hasBatchConsumer(Collection<EventConsumer> currentConsumers) {
+    for (EventConsumer consumer : currentConsumers) {
+      if (consumer instanceof BatchEventConsumer) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  protected int getConsumerBatchSize(int pageSize) {
+    final int batchSize = getSubscriptionConfig().getConsumerBatchSize();
+    return Math.max(1, batchSize > 0 ? batchSize : pageSize);
+  }
+
+  protected List<EventConsumer> getCurrentConsumers() {
+    synchronized (consumers) {
+      return new ArrayList<EventConsumer>(consumers);
+    }
+  }
+
+  /**
+   * Drop events already consumed, if duplicate suppression is enabled. Events are recorded as consumed only once
+   * all consumers have consumed them, so that events of a page being retried are not suppressed.
+   */
+  protected List<HubEvent> filterDuplicates(List<HubEvent> events) {
+    final DuplicateEventFilter filter = getDuplicateEventFilter();
+    if (filter == null) {
+      return events;
+    }
+    final List<HubEvent> newEvents = new ArrayList<HubEvent>(events.size());
+    for (HubEvent event : events) {
+      if (filter.isDuplicate(getEventId(event))) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("Suppressing duplicate event " + getEventId(event));
+        }
+      }
+      else {
+        newEvents.add(event);
+      }
+    }
+    return newEvents;
+  }
+
+  protected synchronized DuplicateEventFilter getDuplicateEventFilter() {
+    final int capacity = getSubscriptionConfig().getDuplicateSuppressionCapacity();
+    if (duplicateEventFilter == null && capacity > 0) {
+      duplicateEventFilter = new DuplicateEventFilter(capacity);
+    }
+    return duplicateEventFilter;
+  }
+
+  /**
+   * @return Number of duplicate events dropped before reaching consumers
+   */
+  public long getSuppressedDuplicateCount() {
+    final DuplicateEventFilter filter = duplicateEventFilter;
+    return filter == null ? 0 : filter.getSuppressedCount();
+  }
+
+  /**
+   * Hand the events over to the dispatch queues of the consumers, blocking while any of the queues is full. Stops
+   * dispatching once any consumer has failed.
+   * @return True if all events were dispatched, false if the feed is to be retried
+   */
+  protected boolean dispatchEvents(ChannelEventsResource resource, List<HubEvent> events, String resumeAfterEventId) {
+    final List<ConsumerDispatcher> currentDispatchers = getDispatchers();
+    final boolean batching = hasBatchConsumer(getCurrentConsumers());
+    final int batchSize = batching ? getConsumerBatchSize(events.size()) : 1;
+    final String pageUri = resource.getUri().toASCIIString();
+    String previousEventId = resumeAfterEventId;
+    try {
+      for (int from = 0; from < events.size(); from += batchSize) {
+        for (ConsumerDispatcher dispatcher : currentDispatchers) {
+          if (dispatcher.getFailedEvent() != null) {
+            awaitDispatch();
+            return false;
+          }
+        }
+        final List<ConsumerDispatcher.DispatchedEvent> batch = new ArrayList<ConsumerDispatcher.DispatchedEvent>();
+        for (HubEvent event : events.subList(from, Math.min(events.size(), from + batchSize))) {
+          final String eventId = getEventId(event);
+          batch.add(new ConsumerDispatcher.DispatchedEvent(event, eventId, dispatchSequence++, pageUri,
+                                                           previousEventId, currentDispatchers.size(),
+                                                           duplicateEventFilter));
+          previousEventId = eventId;
+        }
+        for (ConsumerDispatcher dispatcher : currentDispatchers) {
+          if (dispatcher.getConsumer() instanceof BatchEventConsumer) {
+            dispatcher.consumeBatch(batch);
+          }
+          else {
+            for (ConsumerDispatcher.DispatchedEvent dispatchedEvent : batch) {
+              dispatcher.consume(dispatchedEvent);
+            }
+          }
+        }
+      }
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      logger.warn("Interrupted while dispatching events", ex);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Wait for consumers to consume all events dispatched to them. If any of them failed the feed is checkpointed
+   * to be retried from the earliest event that was not consumed.
+   * @return True if all dispatched events were consumed
+   */
+  protected boolean awaitDispatch() {
+    if (!isDispatchingAsynchronously()) {
       return true;
     }
+    ConsumerDispatcher.DispatchedEvent earliestFailure = null;
+    try {
+      for (ConsumerDispatcher dispatcher : getDispatchers()) {
+        dispatcher.awaitIdle();
+        final ConsumerDispatcher.DispatchedEvent failedEvent = dispatcher.getFailedEvent();
+        if (failedEvent != null && (earliestFailure == null || failedEvent.getSequence() < earliestFailure.
+                                    getSequence())) {
+          earliestFailure = failedEvent;
+        }
+      }
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      logger.warn("Interrupted while waiting for consumers", ex);
+      return false;
+    }
+    if (earliestFailure != null) {
+      if (logger.isInfoEnabled()) {
+        logger.info(new StringBuilder("Will retry this resource again ").append(earliestFailure.getPageUri()).
+            append(" after event ").append(earliestFailure.getPreviousEventId()).toString());
+      }
+      storer.storeCheckpoint(earliestFailure.getPageUri(), earliestFailure.getPreviousEventId());
+      return false;
+    }
+    return true;
   }
 
+  protected void startConsumption() {
+    if (isDispatchingAsynchronously()) {
+      try {
+        for (ConsumerDispatcher dispatcher : getDispatchers()) {
+          dispatcher.startConsumption();
+        }
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        logger.warn("Interrupted while starting consumption", ex);
+      }
+    }
+    else {
+      for (final EventConsumer consumer : consumers) {
+        consumer.startConsumption();
+      }
+    }
+  }
+
+  protected void endConsumption(boolean prematureEnd) {
+    if (isDispatchingAsynchronously()) {
+      try {
+        for (ConsumerDispatcher dispatcher : getDispatchers()) {
+          dispatcher.endConsumption(prematureEnd);
+        }
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        logger.warn("Interrupted while ending consumption", ex);
+      }
+    }
+    else {
+      for (final EventConsumer consumer : consumers) {
+        consumer.endConsumption(prematureEnd);
+      }
+    }
+  }
+
+  protected boolean isDispatchingAsynchronously() {
+    return getSubscriptionConfig().getConsumerQueueCapacity() > 0;
+  }
+
+  /**
+   * Retrieve the dispatchers of the current consumers, creating them for new consumers and shutting down those of
+   * removed consumers.
+   */
+  protected List<ConsumerDispatcher> getDispatchers() {
+    final List<EventConsumer> currentConsumers = getCurrentConsumers();
+    final List<ConsumerDispatcher> currentDispatchers = new ArrayList<ConsumerDispatcher>(currentConsumers.size());
+    synchronized (dispatchers) {
+      final Iterator<Map.Entry<EventConsumer, ConsumerDispatcher>> iterator = dispatchers.entrySet().iterator();
+      while (iterator.hasNext()) {
+        final Map.Entry<EventConsumer, ConsumerDispatcher> dispatcherEntry = iterator.next();
+        if (!currentConsumers.contains(dispatcherEntry.getKey())) {
+          dispatcherEntry.getValue().shutdown();
+          iterator.remove();
+        }
+      }
+      for (EventConsumer consumer : currentConsumers) {
+        ConsumerDispatcher dispatcher = dispatchers.get(consumer);
+        if (dispatcher == null) {
+          dispatcher = new ConsumerDispatcher(consumer, getSubscriptionConfig().getConsumerQueueCapacity(),
+                                              dispatcherThreadFactory);
+          dispatchers.put(consumer, dispatcher);
+        }
+        currentDispatchers.add(dispatcher);
+      }
+    }
+    return currentDispatchers;
+  }
+
+  /**
+   * Stop the worker threads of the consumers once they have delivered the events already dispatched to them.
+   */
+  public void shutdownDispatchers() {
+    synchronized (dispatchers) {
+      for (ConsumerDispatcher dispatcher : dispatchers.values()) {
+        dispatcher.shutdown();
+      }
+      dispatchers.clear();
+    }
+  }
+
+  protected void clearDispatchFailures() {
+    synchronized (dispatchers) {
+      for (ConsumerDispatcher dispatcher : dispatchers.values()) {
+        dispatcher.clearFailure();
+      }
+    }
+  }
+
+  protected void retryPage(ChannelEventsResource resource, String lastConsumedEventId) {
+    final String resourceUri = resource.getUri().toASCIIString();
+    if (logger.isInfoEnabled()) {
+      logger.info(new StringBuilder("Will retry this resource again ").append(resourceUri).append(
+          " after event ").append(lastConsumedEventId).toString());
+    }
+    storer.storeCheckpoint(resourceUri, lastConsumedEventId);
+  }
+
+  /**
+   * Find the index of the first event to consume, i.e. the one after the event last consumed. If the last consumed
+   * event is not in the page all events are consumed.
+   */
+  protected int getResumeIndex(List<HubEvent> events, String resumeAfterEventId) {
+    if (StringUtils.isBlank(resumeAfterEventId)) {
+      return 0;
+    }
+    for (int i = 0; i < events.size(); ++i) {
+      if (resumeAfterEventId.equals(getEventId(events.get(i)))) {
+        return i + 1;
+      }
+    }
+    logger.warn("Last consumed event " + resumeAfterEventId + " not found in page, consuming all of its events");
+    return 0;
+  }
+
+  protected String getEventId(HubEvent event) {
+    return StringUtils.isNotBlank(event.getUniqueId()) ? event.getUniqueId() : event.getId();
+  }
+
+  protected List<Entry> getEntries(Feed feed) {
+    final List<Entry> entries = feed == null ? null : feed.getEntries();
+    return entries == null ? Collections.<Entry>emptyList() : entries;
+  }
+
+  /**
+   * Retrieve the page linked from the feed, resolving relative links against the URI of the page the feed was read
+   * from. The page does not refer to the resource it was linked from so that pages already processed can be garbage
+   * collected.
+   * @return The linked page or null if the feed has no such link
+   */
+  protected ChannelEventsResource getLinkedPage(ChannelEventsResource page, Feed feed, String rel) {
+    final Link link = feed == null ? null : feed.getLink(rel);
+    if (link == null || link.getHref() == null) {
+      return null;
+    }
+    final URI linkedUri = page.getUri().resolve(link.getHref().toASCIIString());
+    return new ChannelEventsResource(ClientUtil.createResourceLink(rel, linkedUri, MediaType.APPLICATION_ATOM_XML),
+                                     factory);
+  }
+
+  /**
+   * Fetch the events of the entries of a feed page. Entries are fetched concurrently, bounded by the configured
+   * parallelism, and the events are returned in the order of the entries. When inline event content is enabled
+   * events embedded in the entries are decoded from the entries and only the rest are fetched.
+   */
+  protected List<HubEvent> fetchEvents(final Resource referrer, List<Entry> entries) throws Exception {
+    final int size = entries.size();
+    final List<HubEvent> events = new ArrayList<HubEvent>(Collections.<HubEvent>nCopies(size, null));
+    final List<ResourceLink> links = new ArrayList<ResourceLink>(Collections.<ResourceLink>nCopies(size, null));
+    final boolean inlineContent = getSubscriptionConfig().isInlineEventContent();
+    int linksToFetch = 0;
+    for (int i = 0; i < size; ++i) {
+      final Entry entry = entries.get(i);
+      final HubEvent inlineEvent = inlineContent ? decodeInlineEvent(entry) : null;
+      if (inlineEvent != null) {
+        events.set(i, inlineEvent);
+      }
+      else {
+        Link altLink = entry.getAlternateLink();
+        final HubEvent cachedEvent = getCachedEvent(referrer, altLink);
+        if (cachedEvent != null) {
+          events.set(i, cachedEvent);
+          continue;
+        }
+        links.set(i, AtomClientUtil.convertFromAtomLinkToResourceLink(altLink));
+        linksToFetch++;
+      }
+    }
+    if (linksToFetch == 0) {
+      return events;
+    }
+    final ExecutorService executorService = getFetchExecutorService();
+    if (executorService == null || linksToFetch < 2) {
+      for (int i = 0; i < size; ++i) {
+        if (links.get(i) != null) {
+          events.set(i, fetchEvent(referrer, links.get(i)));
+        }
+      }
+      return events;
+    }
+    final List<Future<HubEvent>> futures = new ArrayList<Future<HubEvent>>(Collections.<Future<HubEvent>>nCopies(
+        size, null));
+    for (int i = 0; i < size; ++i) {
+      final ResourceLink link = links.get(i);
+      if (link != null) {
+        futures.set(i, executorService.submit(new Callable<HubEvent>() {
+
+          @Override
+          public HubEvent call() throws Exception {
+            return fetchEvent(referrer, link);
+          }
+        }));
+      }
+    }
+    try {
+      for (int i = 0; i < size; ++i) {
+        if (futures.get(i) != null) {
+          events.set(i, futures.get(i).get());
+        }
+      }
+    }
+    catch (ExecutionException ex) {
+      for (Future<HubEvent> future : futures) {
+        if (future != null) {
+          future.cancel(true);
+        }
+      }
+      if (ex.getCause() instanceof Exception) {
+        throw (Exception) ex.getCause();
+      }
+      throw ex;
+    }
+    return events;
+  }
+
+  /**
+   * Decode the event from the content of the entry if the hub embedded it there.
+   * @return The event or null if the entry has no content or its content is not an event
+   */
+  protected HubEvent decodeInlineEvent(Entry entry) {
+    final String content = entry.getContent();
+    if (StringUtils.isBlank(content)) {
+      return null;
+    }
+    try {
+      return EVENT_MAPPER.readValue(content, HubEvent.class);
+    }
+    catch (Exception ex) {
+      logger.warn("Could not decode event from entry content, will fetch it instead", ex);
+      return null;
+    }
+  }
+
+  /**
+   * Fetch the event from the hub, caching it locally if an event cache is configured.
+   */
+  protected HubEvent fetchEvent(Resource referrer, ResourceLink link) {
+    final HubEvent event = new EventResource(referrer, link, factory).getLastReadStateOfEntity();
+    final SegmentedFileCache cache = getEventCache();
+    if (cache != null && event != null) {
+      try {
+        final Map<String, Object> cached = new LinkedHashMap<String, Object>();
+        cached.put("id", event.getId());
+        cached.put("uniqueId", event.getUniqueId());
+        cached.put("content-type", event.getContentType());
+        cached.put("content-as-string", event.getContentAsString());
+        cached.put("created-at", event.getCreationDate());
+        cache.put(getEventCacheKey(referrer, link.getUri()), EVENT_MAPPER.writeValueAsString(cached).getBytes(
+            HubEvent.UTF_8));
+      }
+      catch (Exception ex) {
+        logger.warn("Could not cache event " + link.getUri(), ex);
+      }
+    }
+    return event;
+  }
+
+  /**
+   * Retrieve the event of the link from the local event cache, if configured. Events never change once published,
+   * so a cached event is never stale.
+   * @param referrer The page linking to the event
+   */
+  protected HubEvent getCachedEvent(Resource referrer, Link link) {
+    final SegmentedFileCache cache = getEventCache();
+    if (cache == null || link == null || link.getHref() == null) {
+      return null;
+    }
+    final byte[] cached = cache.get(getEventCacheKey(referrer,
+                                                     AtomClientUtil.convertFromAtomLinkToResourceLink(link).getUri()));
+    if (cached == null) {
+      return null;
+    }
+    try {
+      return EVENT_MAPPER.readValue(new ByteArrayInputStream(cached), HubEvent.class);
+    }
+    catch (Exception ex) {
+      logger.warn("Could not decode cached event, will fetch it instead", ex);
+      return null;
+    }
+  }
+
+  /**
+   * Retrieve the key an event is cached by, its absolute URI, so that an event linked relatively is cached once
+   * whichever page links to it.
+   * @param referrer The page linking to the event
+   */
+  protected String getEventCacheKey(Resource referrer, URI eventUri) {
+    return referrer.getUri().resolve(eventUri).toASCIIString();
+  }
+
+  /**
+   * Retrieve the cache of events, null if no cache directory is configured or the cache could not be opened.
+   * Subscribers configured with the same directory share the cache, which is retrieved again once closed.
+   */
+  protected synchronized SegmentedFileCache getEventCache() {
+    final SubscriptionConfig currentConfig = getSubscriptionConfig();
+    if (eventCache != null && eventCache.isClosed()) {
+      eventCache = null;
+    }
+    if (eventCache == null && !eventCacheUnavailable &&
+        StringUtils.isNotBlank(currentConfig.getEventCacheDirectory())) {
+      try {
+        eventCache = SegmentedFileCache.getCache(new File(currentConfig.getEventCacheDirectory()), currentConfig.
+            getEventCacheMaxBytes(), currentConfig.getEventCacheSegmentBytes());
+      }
+      catch (IOException ex) {
+        logger.warn("Could not open event cache, events will not be cached", ex);
+        eventCacheUnavailable = true;
+      }
+    }
+    return eventCache;
+  }
+
+  protected synchronized ExecutorService getFetchExecutorService() {
+    final int parallelism = getSubscriptionConfig().getEntryFetchParallelism();
+    if (fetchExecutorService == null && parallelism > 1) {
+      fetchExecutorService = Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory("event-fetcher"));
+    }
+    return fetchExecutorService;
+  }
+
+  /**
+   * Use the executor service to fetch event entries instead of creating one, e.g. to share it between subscribers.
+   */
+  public synchronized void setFetchExecutorService(ExecutorService fetchExecutorService) {
+    this.fetchExecutorService = fetchExecutorService;
+  }
+
+  public SubscriptionConfig getSubscriptionConfig() {
+    if (subscriptionConfig == null) {
+      subscriptionConfig = new SubscriptionConfig();
+    }
+    return subscriptionConfig;
+  }
+
+  public void setSubscriptionConfig(SubscriptionConfig subscriptionConfig) {
+    this.subscriptionConfig = subscriptionConfig;
+  }
+
+  /**
+   * Start polling, on the cron expression with Quartz unless adaptive polling or the shared scheduler is configured.
+   */
   @Inject
   public void initCronJob() throws Exception {
-    String pollName, pollJobName, pollTriggerName, pollListenerName;
-    if (pollNameConfig != null) {
-      pollName = pollNameConfig.getPollName();
-      pollJobName = pollNameConfig.getPollJobName();
-      pollTriggerName = pollNameConfig.getPollTriggerName();
-      pollListenerName = pollNameConfig.getPollListenerName();
+    final SubscriptionConfig subscriptionConfig = getSubscriptionConfig();
+    if (subscriptionConfig.isAdaptivePolling()) {
+      startAdaptivePolling();
+    }
+    else if (subscriptionConfig.isSharedScheduler()) {
+      startSharedPolling();
     }
     else {
-      logger.warn("No poll name configuration provided");
-      pollName = "poll";
-      pollJobName = "pollJob";
-      pollTriggerName = "pollTrigger";
-      pollListenerName = "pollListener";
-    }
-    logger.info(new StringBuilder("Starting Job with Poll Name ").append(pollName).append(", Poll JOB Name ").append(
-        pollJobName).append(", Poll Trigger Name ").append(pollTriggerName).append(" and Poll Listener Name ").append(
-        pollListenerName).toString());
-    Scheduler scheduler = StdSchedulerFactory.getDefaultScheduler();
-    final CronPollListener cronPollListener = new CronPollListener();
-    scheduler.addTriggerListener(cronPollListener);
-    JobDetail detail = new JobDetail(pollJobName, pollName, NoOpJob.class);
-    Trigger trigger = new CronTrigger(pollTriggerName, pollName, cronExpression);
-    trigger.addTriggerListener(pollListenerName);
-    scheduler.start();
-    scheduler.scheduleJob(detail, trigger);
+      new QuartzPollScheduler(this, pollNameConfig).start();
+    }
+  }
+
+
+  /**
+   * Poll with an {@link AdaptivePollScheduler} instead of the cron expression.
+   */
+  public synchronized void startAdaptivePolling() {
+    if (adaptivePollScheduler == null) {
+      final SubscriptionConfig subscriptionConfig = getSubscriptionConfig();
+      logger.info(new StringBuilder("Starting adaptive polling with interval between ").append(
+          subscriptionConfig.getPollMinIntervalMillis()).append("ms and ").append(
+          subscriptionConfig.getPollMaxIntervalMillis()).append("ms").toString());
+      adaptivePollScheduler = new AdaptivePollScheduler(this, SharedPollScheduler.getDefault(subscriptionConfig),
+                                                        subscriptionConfig.getPollMinIntervalMillis(),
+                                                        subscriptionConfig.getPollMaxIntervalMillis());
+    }
+    adaptivePollScheduler.start();
+  }
+
+  /**
+   * Poll every configured interval with the {@link SharedPollScheduler} instead of the cron expression.
+   */
+  public synchronized void startSharedPolling() {
+    if (periodicPoll == null) {
+      final SubscriptionConfig subscriptionConfig = getSubscriptionConfig();
+      logger.info("Starting polling every " + subscriptionConfig.getPollIntervalMillis() + "ms with shared scheduler");
+      periodicPoll = SharedPollScheduler.getDefault(subscriptionConfig).schedulePoll(this, subscriptionConfig.
+          getPollIntervalMillis());
+    }
+  }
+
+  /**
+   * Stop polls scheduled by {@link #startAdaptivePolling()} or {@link #startSharedPolling()}.
+   */
+  public synchronized void stopPolling() {
+    if (adaptivePollScheduler != null) {
+      adaptivePollScheduler.stop();
+    }
+    if (periodicPoll != null) {
+      periodicPoll.cancel();
+      periodicPoll = null;
+    }
   }
 
   @Override
@@ -351,16 +1095,24 @@ public class EventSubscriberImpl implements EventSubscriber {
     }
   }
 
-  private static class ChannelEventsResource extends AbstractFeedClientResource<ChannelEventsResource> {
+  protected static class ChannelEventsResource extends AbstractFeedClientResource<ChannelEventsResource> {
 
     public ChannelEventsResource(ResourceLink resouceLink, ClientFactory factory) throws IllegalArgumentException,
                                                                                          UniformInterfaceException {
-      this(null, resouceLink, factory);
+      this(null, resouceLink, factory, true);
     }
 
-    private ChannelEventsResource(Resource referrer, ResourceLink resouceLink, ClientFactory factory) throws
+    /**
+     * @param invokeGet Whether to read the page right away, false if it has already been read otherwise
+     */
+    public ChannelEventsResource(ResourceLink resouceLink, ClientFactory factory, boolean invokeGet) throws
         IllegalArgumentException, UniformInterfaceException {
-      super(referrer, resouceLink, true, factory);
+      this(null, resouceLink, factory, invokeGet);
+    }
+
+    private ChannelEventsResource(Resource referrer, ResourceLink resouceLink, ClientFactory factory,
+                                  boolean invokeGet) throws IllegalArgumentException, UniformInterfaceException {
+      super(referrer, resouceLink, invokeGet, factory);
     }
 
     @Override
@@ -369,7 +1121,7 @@ public class EventSubscriberImpl implements EventSubscriber {
 
     @Override
     protected ChannelEventsResource instantiatePageableResource(ResourceLink link) {
-      return new ChannelEventsResource(this, link, getClientFactory());
+      return new ChannelEventsResource(this, link, getClientFactory(), true);
     }
   }
 
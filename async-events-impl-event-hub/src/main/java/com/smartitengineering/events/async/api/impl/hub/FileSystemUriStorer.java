@@ -41,6 +41,7 @@ public class FileSystemUriStorer implements UriStorer {
 
   private final File uriStorage;
   private String nextUri;
+  private String lastConsumedEventId;
   protected final transient Logger logger = LoggerFactory.getLogger(getClass());
   private final Semaphore writingInProgressMutex = new Semaphore(1);
   private final Semaphore setNextUriMutex = new Semaphore(1);
@@ -66,18 +67,30 @@ public class FileSystemUriStorer implements UriStorer {
 
   @Override
   public final void storeNextUri(String uri) {
+    storeCheckpoint(uri, null);
+  }
+
+  /**
+   * Stores the URI in the first line of the file and the id of the last consumed event, if any, in the second.
+   */
+  @Override
+  public final void storeCheckpoint(String uri, String lastConsumedEventId) {
     try {
       writingInProgressMutex.acquire();
       logger.info("New URI being stored");
       if (logger.isDebugEnabled()) {
-        logger.debug("URI being stored is " + uri);
+        logger.debug("URI being stored is " + uri + " with last consumed event " + lastConsumedEventId);
       }
       BufferedWriter writer = new BufferedWriter(new FileWriter(uriStorage, false));
       writer.write(uri);
       writer.newLine();
+      if (StringUtils.isNotBlank(lastConsumedEventId)) {
+        writer.write(lastConsumedEventId);
+        writer.newLine();
+      }
       writer.flush();
       writer.close();
-      setNextUri(uri);
+      setCheckpoint(uri, lastConsumedEventId);
     }
     catch (Exception ex) {
       logger.error("Could not write to file!", ex);
@@ -96,10 +109,19 @@ public class FileSystemUriStorer implements UriStorer {
     return StringUtils.isBlank(nextUri) ? null : nextUri;
   }
 
+  @Override
+  public String getLastConsumedEventId() {
+    if (StringUtils.isBlank(nextUri)) {
+      readLineFromFile();
+    }
+    return StringUtils.isBlank(lastConsumedEventId) ? null : lastConsumedEventId;
+  }
+
   protected final void readLineFromFile() {
     try {
       BufferedReader reader = new BufferedReader(new FileReader(uriStorage));
-      setNextUri(reader.readLine());
+      final String uri = reader.readLine();
+      setCheckpoint(uri, reader.readLine());
       reader.close();
     }
     catch (Exception ex) {
@@ -107,10 +129,11 @@ public class FileSystemUriStorer implements UriStorer {
     }
   }
 
-  protected final void setNextUri(String nextUri) {
+  protected final void setCheckpoint(String nextUri, String lastConsumedEventId) {
     try {
       setNextUriMutex.acquire();
       this.nextUri = nextUri;
+      this.lastConsumedEventId = lastConsumedEventId;
     }
     catch (Exception ex) {
       logger.warn("Could not acquire lock!", ex);
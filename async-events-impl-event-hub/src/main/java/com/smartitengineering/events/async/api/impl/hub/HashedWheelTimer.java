@@ -0,0 +1,193 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A timer keeping timeouts in the buckets of a wheel that a single daemon thread advances one bucket per tick.
+ * Adding and cancelling a timeout is constant time irrespective of the number of timeouts, so it suits a large
+ * number of coarse grained timeouts such as polls of many subscriptions. Timeouts expire at the end of the tick in
+ * which they are due, i.e. never early but up to a tick late. Tasks are run in the timer thread and thus should
+ * only hand work over to another thread.
+ * @author imyousuf
+ */
+public class HashedWheelTimer {
+
+  private final String name;
+  private final long tickNanos;
+  private final List<Timeout>[] wheel;
+  private final int mask;
+  private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<Timeout>();
+  private Thread worker;
+  private volatile boolean stopped;
+  private long startTime;
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  @SuppressWarnings("unchecked")
+  public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+    if (tickDuration <= 0 || ticksPerWheel <= 0) {
+      throw new IllegalArgumentException("Tick duration and ticks per wheel must be positive!");
+    }
+    this.name = name;
+    this.tickNanos = unit.toNanos(tickDuration);
+    final int wheelSize = Integer.highestOneBit(ticksPerWheel) < ticksPerWheel ? Integer.highestOneBit(
+        ticksPerWheel) << 1 : ticksPerWheel;
+    this.wheel = new List[wheelSize];
+    for (int i = 0; i < wheelSize; ++i) {
+      wheel[i] = new ArrayList<Timeout>();
+    }
+    this.mask = wheelSize - 1;
+  }
+
+  /**
+   * Schedule the task to be run once after the delay.
+   */
+  public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+    if (task == null) {
+      throw new IllegalArgumentException("Task can not be null!");
+    }
+    if (stopped) {
+      throw new IllegalStateException("Timer " + name + " has been stopped!");
+    }
+    start();
+    final Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(Math.max(0, delay)));
+    newTimeouts.add(timeout);
+    return timeout;
+  }
+
+  /**
+   * Stop the timer thread, discarding timeouts that have not yet expired.
+   */
+  public synchronized void stop() {
+    stopped = true;
+    if (worker != null) {
+      worker.interrupt();
+      worker = null;
+    }
+  }
+
+  protected synchronized void start() {
+    if (worker == null && !stopped) {
+      startTime = System.nanoTime();
+      worker = new DaemonThreadFactory(name).newThread(new Runnable() {
+
+        @Override
+        public void run() {
+          tickContinuously();
+        }
+      });
+      worker.start();
+    }
+  }
+
+  protected void tickContinuously() {
+    final long start;
+    synchronized (this) {
+      start = startTime;
+    }
+    long tick = 0;
+    while (!stopped) {
+      final long deadline = start + (tick + 1) * tickNanos;
+      long sleepNanos = deadline - System.nanoTime();
+      while (sleepNanos > 0 && !stopped) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        }
+        catch (InterruptedException ex) {
+          if (stopped) {
+            return;
+          }
+        }
+        sleepNanos = deadline - System.nanoTime();
+      }
+      transferNewTimeouts(start, tick);
+      expireTimeouts(wheel[(int) (tick & mask)]);
+      tick++;
+    }
+  }
+
+  protected void transferNewTimeouts(long start, long currentTick) {
+    Timeout timeout = newTimeouts.poll();
+    while (timeout != null) {
+      if (!timeout.isCancelled()) {
+        final long dueTick = Math.max((timeout.deadline - start) / tickNanos, currentTick);
+        timeout.remainingRounds = (dueTick - currentTick) / wheel.length;
+        wheel[(int) (dueTick & mask)].add(timeout);
+      }
+      timeout = newTimeouts.poll();
+    }
+  }
+
+  protected void expireTimeouts(List<Timeout> bucket) {
+    for (Iterator<Timeout> iterator = bucket.iterator(); iterator.hasNext();) {
+      final Timeout timeout = iterator.next();
+      if (timeout.isCancelled()) {
+        iterator.remove();
+      }
+      else if (timeout.remainingRounds <= 0) {
+        iterator.remove();
+        timeout.expire();
+      }
+      else {
+        timeout.remainingRounds--;
+      }
+    }
+  }
+
+  public class Timeout {
+
+    private final Runnable task;
+    private final long deadline;
+    private long remainingRounds;
+    private volatile boolean cancelled;
+
+    protected Timeout(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * Cancel the timeout, its task will not be run if it has not already been.
+     */
+    public void cancel() {
+      cancelled = true;
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    protected void expire() {
+      try {
+        task.run();
+      }
+      catch (RuntimeException ex) {
+        logger.warn("Timer task threw exception", ex);
+      }
+    }
+  }
+}
@@ -18,14 +18,32 @@
  */
 package com.smartitengineering.events.async.api.impl.hub;
 
+import com.smartitengineering.events.async.api.ConsumableEvent;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonProcessingException;
 import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.DeserializationContext;
+import org.codehaus.jackson.map.JsonDeserializer;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.codehaus.jackson.map.annotate.JsonDeserialize;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
 
 /**
- *
+ * An event as read from the hub. The content of the event is kept as UTF-8 encoded bytes, encoded straight from the
+ * characters buffered by the JSON parser of the HTTP response, and is only converted to a string if asked for.
  * @author imyousuf
  */
-public class HubEvent {
+public class HubEvent implements ConsumableEvent {
 
+  static final Charset UTF_8 = Charset.forName("UTF-8");
   @JsonProperty("id")
   private String id;
   @JsonProperty("uniqueId")
@@ -33,18 +51,39 @@ public class HubEvent {
   @JsonProperty("content-type")
   private String contentType;
   @JsonProperty("content-as-string")
-  private String contentAsString;
+  @JsonDeserialize(using = ContentDeserializer.class)
+  @JsonSerialize(using = ContentSerializer.class)
+  private byte[] content;
+  private transient String contentAsString;
   @JsonProperty("created-at")
   private String creationDate;
 
+  @Override
   public String getContentAsString() {
+    if (contentAsString == null && content != null) {
+      contentAsString = new String(content, UTF_8);
+    }
     return contentAsString;
   }
 
   public void setContentAsString(String contentAsString) {
     this.contentAsString = contentAsString;
+    this.content = contentAsString == null ? null : contentAsString.getBytes(UTF_8);
+  }
+
+  @Override
+  public InputStream getContentAsStream() {
+    return content == null ? null : new ByteArrayInputStream(content);
   }
 
+  /**
+   * @return Read only view of the UTF-8 encoded content, shared and thus not copied
+   */
+  public ByteBuffer getContentAsByteBuffer() {
+    return content == null ? null : ByteBuffer.wrap(content).asReadOnlyBuffer();
+  }
+
+  @Override
   public String getContentType() {
     return contentType;
   }
@@ -53,6 +92,7 @@ public class HubEvent {
     this.contentType = contentType;
   }
 
+  @Override
   public String getCreationDate() {
     return creationDate;
   }
@@ -61,6 +101,7 @@ public class HubEvent {
     this.creationDate = creationDate;
   }
 
+  @Override
   public String getId() {
     return id;
   }
@@ -69,6 +110,7 @@ public class HubEvent {
     this.id = id;
   }
 
+  @Override
   public String getUniqueId() {
     return uniqueId;
   }
@@ -76,4 +118,36 @@ public class HubEvent {
   public void setUniqueId(String uniqueId) {
     this.uniqueId = uniqueId;
   }
+
+  /**
+   * Encodes the content characters buffered by the parser to UTF-8 without materializing them as a string.
+   */
+  public static class ContentDeserializer extends JsonDeserializer<byte[]> {
+
+    @Override
+    public byte[] deserialize(JsonParser parser, DeserializationContext context) throws IOException,
+                                                                                      JsonProcessingException {
+      return encode(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    /**
+     * Encode the characters as UTF-8 straight from the parser's buffer, replacing malformed characters as
+     * {@link String#getBytes(java.nio.charset.Charset)} does.
+     */
+    protected static byte[] encode(char[] chars, int offset, int length) {
+      final ByteBuffer buffer = UTF_8.encode(CharBuffer.wrap(chars, offset, length));
+      final byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+    }
+  }
+
+  public static class ContentSerializer extends JsonSerializer<byte[]> {
+
+    @Override
+    public void serialize(byte[] value, JsonGenerator generator, SerializerProvider provider) throws IOException,
+                                                                                                 JsonProcessingException {
+      generator.writeString(new String(value, UTF_8));
+    }
+  }
 }
@@ -0,0 +1,379 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.smartitengineering.events.async.api.UriStorer;
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A URI storer appending each checkpoint as a fixed size, checksummed record to a journal file instead of rewriting
+ * a file. On start up the last record with a valid checksum is recovered, so a torn write at a crash only loses the
+ * record being written. How often the journal is forced to disk is configurable - after every N records, every T
+ * milliseconds or never, i.e. left to the OS. Once the journal holds the configured maximum number of records it is
+ * compacted to a new journal holding the last record only, which atomically replaces the old one.
+ * <p>
+ * Layout of the journal is a header of {@value #HEADER_SIZE} bytes with the magic number, version and record size,
+ * followed by records each containing a marker, sequence number, lengths and UTF-8 bytes of URI and event id,
+ * padding and finally a CRC32 of the record.
+ * @author imyousuf
+ */
+@Singleton
+public class JournalUriStorer implements UriStorer, Flushable, Closeable {
+
+  public static final int HEADER_SIZE = 16;
+  private static final int MAGIC = 0x534a524e;
+  private static final int VERSION = 1;
+  private static final int RECORD_MARKER = 0x52454344;
+  private static final int RECORD_OVERHEAD = 4 + 8 + 2 + 2 + 4;
+
+  public enum SyncPolicy {
+
+    RECORDS, INTERVAL, NEVER
+  }
+  private final File journal;
+  @Inject(optional = true)
+  @Named("uriJournalRecordSize")
+  private Integer recordSize = new Integer(1024);
+  @Inject(optional = true)
+  @Named("uriJournalMaxRecords")
+  private Integer maxRecords = new Integer(4096);
+  @Inject(optional = true)
+  @Named("uriJournalSyncPolicy")
+  private String syncPolicy = SyncPolicy.RECORDS.name();
+  @Inject(optional = true)
+  @Named("uriJournalSyncEveryRecords")
+  private Integer syncEveryRecords = new Integer(1);
+  @Inject(optional = true)
+  @Named("uriJournalSyncIntervalMillis")
+  private Long syncIntervalMillis = new Long(1000);
+  private RandomAccessFile file;
+  private FileChannel channel;
+  private int journalRecordSize;
+  private long recordCount;
+  private long sequence;
+  private int unsyncedRecords;
+  private ScheduledExecutorService syncScheduler;
+  private volatile String nextUri;
+  private volatile String lastConsumedEventId;
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  @Inject
+  public JournalUriStorer(@Named("pathToFolderOfUriStorer") String pathToFolder,
+                          @Named("fileNameOfUriStorer") String fileName) {
+    File folder = new File(pathToFolder);
+    if (!folder.exists()) {
+      boolean mkdirs = folder.mkdirs();
+      if (!mkdirs) {
+        throw new IllegalArgumentException("pathToFolderOfUriStorer does not exist and could not be created!");
+      }
+    }
+    journal = new File(folder, fileName);
+  }
+
+  @Override
+  public void storeNextUri(String uri) {
+    storeCheckpoint(uri, null);
+  }
+
+  @Override
+  public synchronized void storeCheckpoint(String uri, String lastConsumedEventId) {
+    try {
+      open();
+      if (logger.isDebugEnabled()) {
+        logger.debug("URI being journaled is " + uri + " with last consumed event " + lastConsumedEventId);
+      }
+      if (recordCount >= Math.max(2, maxRecords.intValue())) {
+        compact();
+      }
+      final ByteBuffer record = encode(sequence + 1, uri, lastConsumedEventId, journalRecordSize);
+      channel.write(record, HEADER_SIZE + recordCount * journalRecordSize);
+      sequence++;
+      recordCount++;
+      unsyncedRecords++;
+      if (getSyncPolicy() == SyncPolicy.RECORDS && unsyncedRecords >= Math.max(1, syncEveryRecords.intValue())) {
+        sync();
+      }
+      this.nextUri = uri;
+      this.lastConsumedEventId = lastConsumedEventId;
+    }
+    catch (IOException ex) {
+      logger.error("Could not write to journal!", ex);
+      throw new RuntimeException(ex);
+    }
+  }
+
+  @Override
+  public String getNextUri() {
+    openQuietly();
+    return StringUtils.isBlank(nextUri) ? null : nextUri;
+  }
+
+  @Override
+  public String getLastConsumedEventId() {
+    openQuietly();
+    return StringUtils.isBlank(lastConsumedEventId) ? null : lastConsumedEventId;
+  }
+
+  /**
+   * Force records written so far to the disk.
+   */
+  @Override
+  public synchronized void flush() throws IOException {
+    if (channel != null) {
+      sync();
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (syncScheduler != null) {
+      syncScheduler.shutdown();
+      syncScheduler = null;
+    }
+    if (channel != null) {
+      sync();
+      channel.close();
+      file.close();
+      channel = null;
+      file = null;
+    }
+  }
+
+  public void setRecordSize(int recordSize) {
+    this.recordSize = recordSize;
+  }
+
+  public void setMaxRecords(int maxRecords) {
+    this.maxRecords = maxRecords;
+  }
+
+  public void setSyncPolicy(SyncPolicy syncPolicy) {
+    this.syncPolicy = syncPolicy.name();
+  }
+
+  public void setSyncEveryRecords(int syncEveryRecords) {
+    this.syncEveryRecords = syncEveryRecords;
+  }
+
+  public void setSyncIntervalMillis(long syncIntervalMillis) {
+    this.syncIntervalMillis = syncIntervalMillis;
+  }
+
+  public SyncPolicy getSyncPolicy() {
+    return SyncPolicy.valueOf(StringUtils.upperCase(StringUtils.trim(syncPolicy)));
+  }
+
+  protected void openQuietly() {
+    try {
+      synchronized (this) {
+        open();
+      }
+    }
+    catch (IOException ex) {
+      logger.warn("Could not open journal!", ex);
+    }
+  }
+
+  /**
+   * Open the journal, recovering the last valid record if it exists or creating it otherwise.
+   */
+  protected void open() throws IOException {
+    if (channel != null) {
+      if (channel.isOpen()) {
+        return;
+      }
+      //The channel is closed when a thread is interrupted while using it, so reopen the journal
+      logger.warn("Journal channel was closed, reopening it");
+      try {
+        file.close();
+      }
+      catch (IOException ex) {
+        logger.debug("Could not close journal file", ex);
+      }
+      channel = null;
+      file = null;
+    }
+    file = new RandomAccessFile(journal, "rw");
+    channel = file.getChannel();
+    if (channel.size() < HEADER_SIZE) {
+      journalRecordSize = Math.max(RECORD_OVERHEAD + 64, recordSize.intValue());
+      writeHeader(channel, journalRecordSize);
+      channel.force(true);
+      recordCount = 0;
+      sequence = 0;
+    }
+    else {
+      recover();
+    }
+    if (getSyncPolicy() == SyncPolicy.INTERVAL) {
+      startSyncScheduler();
+    }
+  }
+
+  protected void recover() throws IOException {
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    channel.read(header, 0);
+    header.flip();
+    if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+      throw new IOException("Not a URI journal " + journal.getAbsolutePath());
+    }
+    journalRecordSize = header.getInt();
+    final long records = (channel.size() - HEADER_SIZE) / journalRecordSize;
+    final ByteBuffer record = ByteBuffer.allocate(journalRecordSize);
+    for (long index = records - 1; index >= 0; --index) {
+      record.clear();
+      channel.read(record, HEADER_SIZE + index * journalRecordSize);
+      record.flip();
+      if (decode(record)) {
+        recordCount = index + 1;
+        //Drop records that were torn
+        channel.truncate(HEADER_SIZE + recordCount * journalRecordSize);
+        if (logger.isInfoEnabled()) {
+          logger.info("Recovered checkpoint " + sequence + " from " + journal.getAbsolutePath());
+        }
+        return;
+      }
+      logger.warn("Skipping invalid journal record " + index);
+    }
+    recordCount = 0;
+    channel.truncate(HEADER_SIZE);
+  }
+
+  /**
+   * Replace the journal with one containing only the latest record.
+   */
+  protected void compact() throws IOException {
+    if (logger.isInfoEnabled()) {
+      logger.info("Compacting journal " + journal.getAbsolutePath());
+    }
+    final File compacted = new File(journal.getParentFile(), journal.getName() + ".compact");
+    RandomAccessFile compactedFile = new RandomAccessFile(compacted, "rw");
+    try {
+      final FileChannel compactedChannel = compactedFile.getChannel();
+      compactedChannel.truncate(0);
+      writeHeader(compactedChannel, journalRecordSize);
+      compactedChannel.write(encode(sequence, nextUri, lastConsumedEventId, journalRecordSize), HEADER_SIZE);
+      compactedChannel.force(true);
+    }
+    finally {
+      compactedFile.close();
+    }
+    channel.close();
+    file.close();
+    if (!compacted.renameTo(journal)) {
+      if (!journal.delete() || !compacted.renameTo(journal)) {
+        throw new IOException("Could not replace journal with compacted journal " + compacted.getAbsolutePath());
+      }
+    }
+    file = new RandomAccessFile(journal, "rw");
+    channel = file.getChannel();
+    recordCount = 1;
+    unsyncedRecords = 0;
+  }
+
+  protected void sync() throws IOException {
+    if (unsyncedRecords > 0) {
+      channel.force(false);
+      unsyncedRecords = 0;
+    }
+  }
+
+  protected void startSyncScheduler() {
+    final long interval = Math.max(1, syncIntervalMillis.longValue());
+    syncScheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("uri-journal-sync"));
+    syncScheduler.scheduleWithFixedDelay(new Runnable() {
+
+      @Override
+      public void run() {
+        try {
+          flush();
+        }
+        catch (Exception ex) {
+          logger.warn("Could not sync journal!", ex);
+        }
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  protected static void writeHeader(FileChannel channel, int recordSize) throws IOException {
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).putInt(recordSize).putInt(0);
+    header.flip();
+    channel.write(header, 0);
+  }
+
+  protected static ByteBuffer encode(long sequence, String uri, String eventId, int recordSize) {
+    final byte[] uriBytes = uri == null ? new byte[0] : uri.getBytes(HubEvent.UTF_8);
+    final byte[] idBytes = eventId == null ? new byte[0] : eventId.getBytes(HubEvent.UTF_8);
+    if (uriBytes.length + idBytes.length + RECORD_OVERHEAD > recordSize) {
+      throw new IllegalArgumentException("Checkpoint does not fit in a journal record of " + recordSize + " bytes");
+    }
+    final ByteBuffer record = ByteBuffer.allocate(recordSize);
+    record.putInt(RECORD_MARKER).putLong(sequence).putShort((short) uriBytes.length).putShort(
+        (short) idBytes.length).put(uriBytes).put(idBytes);
+    final CRC32 crc = new CRC32();
+    crc.update(record.array(), 0, recordSize - 4);
+    record.putInt(recordSize - 4, (int) crc.getValue());
+    record.clear();
+    return record;
+  }
+
+  /**
+   * Decode the record into the current checkpoint if its checksum is valid.
+   */
+  protected boolean decode(ByteBuffer record) {
+    if (record.remaining() < journalRecordSize) {
+      return false;
+    }
+    final CRC32 crc = new CRC32();
+    crc.update(record.array(), 0, journalRecordSize - 4);
+    if ((int) crc.getValue() != record.getInt(journalRecordSize - 4) || record.getInt() != RECORD_MARKER) {
+      return false;
+    }
+    final long recordSequence = record.getLong();
+    final int uriLength = record.getShort() & 0xffff;
+    final int idLength = record.getShort() & 0xffff;
+    if (uriLength + idLength + RECORD_OVERHEAD > journalRecordSize) {
+      return false;
+    }
+    final byte[] uriBytes = new byte[uriLength];
+    final byte[] idBytes = new byte[idLength];
+    record.get(uriBytes).get(idBytes);
+    sequence = recordSequence;
+    nextUri = new String(uriBytes, HubEvent.UTF_8);
+    lastConsumedEventId = idLength == 0 ? null : new String(idBytes, HubEvent.UTF_8);
+    return true;
+  }
+}
@@ -0,0 +1,307 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.smartitengineering.events.async.api.EventConsumer;
+import com.smartitengineering.events.async.api.SubscriptionPreconditionChecker;
+import com.smartitengineering.util.rest.client.ConnectionConfig;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A subscriber following many channels of the hub. Each channel is polled by its own {@link EventSubscriberImpl}
+ * sharing the connection configuration, subscription configuration and event fetching threads, with its cursor kept
+ * in a {@link MultiChannelUriStorer} shared by all channels. A poll polls all channels concurrently on a bounded
+ * pool. With {@link SubscriptionConfig#getMaxPagesPerPoll() a page limit} configured, a channel that still has
+ * newer pages after its turn is put back at the end of the queue, so that channels with backlog take turns instead
+ * of one of them holding up the others. Consumers are registered either for a single channel or for all channels.
+ * <p>
+ * Channels are added with {@link #addChannel(java.lang.String, java.lang.String)} or configured as whitespace or
+ * comma separated <code>channel=feedUri</code> pairs bound to <code>subscribeChannelFeedUris</code>.
+ * @author imyousuf
+ */
+@Singleton
+public class MultiChannelEventSubscriber {
+
+  private final ConnectionConfig config;
+  private final MultiChannelUriStorer storer;
+  private final Map<String, EventSubscriberImpl> channels = new LinkedHashMap<String, EventSubscriberImpl>();
+  private final List<EventConsumer> consumers = new ArrayList<EventConsumer>();
+  @Inject(optional = true)
+  private SubscriptionPreconditionChecker checker;
+  @Inject(optional = true)
+  private SubscriptionConfig subscriptionConfig;
+  @Inject(optional = true)
+  @Named("subscribeChannelFeedUris")
+  private String channelFeedUris;
+  @Inject(optional = true)
+  @Named("subscribeChannelParallelism")
+  private Integer channelParallelism = new Integer(8);
+  private ExecutorService channelExecutorService;
+  private ExecutorService fetchExecutorService;
+  private SharedPollScheduler.PeriodicPoll periodicPoll;
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  @Inject
+  public MultiChannelEventSubscriber(ConnectionConfig config, MultiChannelUriStorer storer) {
+    this.config = config;
+    this.storer = storer;
+  }
+
+  /**
+   * Add channels configured and start polling them every configured poll interval with the
+   * {@link SharedPollScheduler}.
+   */
+  @Inject
+  public void initPolling() throws Exception {
+    if (StringUtils.isNotBlank(channelFeedUris)) {
+      for (String channelFeedUri : channelFeedUris.trim().split("[,\\s]+")) {
+        final int separator = channelFeedUri.indexOf('=');
+        if (separator <= 0) {
+          throw new IllegalArgumentException("Channel feed URI not in channel=feedUri format " + channelFeedUri);
+        }
+        addChannel(channelFeedUri.substring(0, separator), channelFeedUri.substring(separator + 1));
+      }
+    }
+    startPolling();
+  }
+
+  public synchronized void startPolling() {
+    if (periodicPoll == null) {
+      final SubscriptionConfig currentConfig = getSubscriptionConfig();
+      logger.info("Starting polling of channels every " + currentConfig.getPollIntervalMillis() + "ms");
+      periodicPoll = SharedPollScheduler.getDefault(currentConfig).schedulePoll(new Runnable() {
+
+        @Override
+        public void run() {
+          poll();
+        }
+      }, currentConfig.getPollIntervalMillis());
+    }
+  }
+
+  public synchronized void stopPolling() {
+    if (periodicPoll != null) {
+      periodicPoll.cancel();
+      periodicPoll = null;
+    }
+  }
+
+  /**
+   * Follow the channel whose events are available at the feed URI. Consumers registered for all channels are added
+   * to the channel.
+   */
+  public synchronized void addChannel(String channel, String feedUri) throws Exception {
+    if (StringUtils.isBlank(channel) || StringUtils.isBlank(feedUri)) {
+      throw new IllegalArgumentException("Channel and its feed URI can not be blank!");
+    }
+    if (channels.containsKey(channel)) {
+      throw new IllegalArgumentException("Channel " + channel + " is already being followed!");
+    }
+    final EventSubscriberImpl subscriber = new EventSubscriberImpl(null, feedUri, config,
+                                                                   storer.getChannelStorer(channel), consumers);
+    subscriber.setSubscriptionConfig(getSubscriptionConfig());
+    subscriber.setFetchExecutorService(getFetchExecutorService());
+    channels.put(channel, subscriber);
+  }
+
+  /**
+   * Stop following the channel. Its cursor is closed, so a poll of the channel still in progress does not move it
+   * any further, and the dispatcher threads of its consumers are stopped once they have delivered the events
+   * already dispatched. The cursor is kept, so the channel resumes from it if followed again.
+   */
+  public synchronized void removeChannel(String channel) {
+    final EventSubscriberImpl subscriber = channels.remove(channel);
+    if (subscriber == null) {
+      return;
+    }
+    storer.closeChannelStorer(channel);
+    subscriber.removeAllConsumers();
+    subscriber.shutdownDispatchers();
+  }
+
+  public synchronized Collection<String> getChannels() {
+    return Collections.unmodifiableCollection(new ArrayList<String>(channels.keySet()));
+  }
+
+  /**
+   * Add the consumer to be delivered events of all channels.
+   */
+  public synchronized void addConsumer(EventConsumer consumer) {
+    consumers.add(consumer);
+    for (EventSubscriberImpl subscriber : channels.values()) {
+      subscriber.addConsumer(consumer);
+    }
+  }
+
+  /**
+   * Add the consumer to be delivered events of the channel only.
+   */
+  public synchronized void addConsumer(String channel, EventConsumer consumer) {
+    getChannelSubscriber(channel).addConsumer(consumer);
+  }
+
+  /**
+   * Remove the consumer from all channels.
+   */
+  public synchronized void removeConsumer(EventConsumer consumer) {
+    consumers.remove(consumer);
+    for (EventSubscriberImpl subscriber : channels.values()) {
+      subscriber.removeConsumer(consumer);
+    }
+  }
+
+  public synchronized void removeConsumer(String channel, EventConsumer consumer) {
+    getChannelSubscriber(channel).removeConsumer(consumer);
+  }
+
+  public synchronized Collection<EventConsumer> getConsumers(String channel) {
+    return getChannelSubscriber(channel).getConsumers();
+  }
+
+  /**
+   * Poll all channels, taking turns among channels with backlog till all of them have caught up.
+   */
+  public void poll() {
+    if (checker != null && !checker.isPreconditionMet()) {
+      logger.warn("Aborting poll as pre-condition for polling not met!");
+      return;
+    }
+    final LinkedList<EventSubscriberImpl> pending;
+    synchronized (this) {
+      pending = new LinkedList<EventSubscriberImpl>(channels.values());
+    }
+    final int parallelism = Math.max(1, channelParallelism.intValue());
+    final CompletionService<EventSubscriberImpl> completionService =
+        new ExecutorCompletionService<EventSubscriberImpl>(getChannelExecutorService());
+    int inProgress = 0;
+    int turns = 0;
+    try {
+      while (!pending.isEmpty() || inProgress > 0) {
+        while (!pending.isEmpty() && inProgress < parallelism) {
+          completionService.submit(new ChannelPoll(pending.removeFirst()));
+          inProgress++;
+          turns++;
+        }
+        final Future<EventSubscriberImpl> polled = completionService.take();
+        inProgress--;
+        final EventSubscriberImpl subscriber = getPolledSubscriber(polled);
+        if (subscriber != null && subscriber.hasBacklog()) {
+          pending.addLast(subscriber);
+        }
+      }
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      logger.warn("Poll of channels interrupted", ex);
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("Channels polled " + turns + " times");
+    }
+  }
+
+  public SubscriptionConfig getSubscriptionConfig() {
+    if (subscriptionConfig == null) {
+      subscriptionConfig = new SubscriptionConfig();
+    }
+    return subscriptionConfig;
+  }
+
+  public void setSubscriptionConfig(SubscriptionConfig subscriptionConfig) {
+    this.subscriptionConfig = subscriptionConfig;
+  }
+
+  public SubscriptionPreconditionChecker getPreconditionChecker() {
+    return checker;
+  }
+
+  public MultiChannelUriStorer getNextUriStorer() {
+    return storer;
+  }
+
+  protected EventSubscriberImpl getChannelSubscriber(String channel) {
+    final EventSubscriberImpl subscriber = channels.get(channel);
+    if (subscriber == null) {
+      throw new IllegalArgumentException("Channel " + channel + " is not being followed!");
+    }
+    return subscriber;
+  }
+
+  protected EventSubscriberImpl getPolledSubscriber(Future<EventSubscriberImpl> polled) {
+    try {
+      return polled.get();
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    catch (ExecutionException ex) {
+      logger.warn("Could not poll channel", ex.getCause());
+    }
+    return null;
+  }
+
+  protected synchronized ExecutorService getChannelExecutorService() {
+    if (channelExecutorService == null) {
+      channelExecutorService = Executors.newFixedThreadPool(Math.max(1, channelParallelism.intValue()),
+                                                            new DaemonThreadFactory("channel-poller"));
+    }
+    return channelExecutorService;
+  }
+
+  protected synchronized ExecutorService getFetchExecutorService() {
+    final int parallelism = getSubscriptionConfig().getEntryFetchParallelism();
+    if (fetchExecutorService == null && parallelism > 1) {
+      fetchExecutorService = Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory("event-fetcher"));
+    }
+    return fetchExecutorService;
+  }
+
+  protected static class ChannelPoll implements Callable<EventSubscriberImpl> {
+
+    private final EventSubscriberImpl subscriber;
+
+    public ChannelPoll(EventSubscriberImpl subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public EventSubscriberImpl call() throws Exception {
+      subscriber.poll();
+      return subscriber;
+    }
+  }
+}
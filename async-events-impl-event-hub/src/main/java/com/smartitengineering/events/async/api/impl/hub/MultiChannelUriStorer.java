@@ -0,0 +1,250 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.smartitengineering.events.async.api.UriStorer;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the cursors of many channels in a folder, one file per channel. Each channel is given a {@link UriStorer}
+ * view of its own cursor through {@link #getChannelStorer(java.lang.String)}, which locks and rewrites only the file
+ * of its channel, so channels checkpoint independently of each other. A file is rewritten to a temporary file which
+ * then replaces it, so a crash while writing leaves the previous cursor intact.
+ * @author imyousuf
+ */
+@Singleton
+public class MultiChannelUriStorer {
+
+  private static final String CURSOR_SUFFIX = ".cursor";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final String URI_KEY = "uri";
+  private static final String EVENT_KEY = "lastConsumedEventId";
+  private final File cursorFolder;
+  private final ConcurrentMap<String, ChannelUriStorer> storers = new ConcurrentHashMap<String, ChannelUriStorer>();
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  /**
+   * @param fileName Name of the folder, within the given folder, to keep a cursor file per channel in
+   */
+  @Inject
+  public MultiChannelUriStorer(@Named("pathToFolderOfUriStorer") String pathToFolder,
+                               @Named("fileNameOfUriStorer") String fileName) {
+    cursorFolder = new File(pathToFolder, fileName);
+    if (!cursorFolder.isDirectory()) {
+      boolean mkdirs = cursorFolder.mkdirs();
+      if (!mkdirs) {
+        throw new IllegalArgumentException("Folder for cursors of channels does not exist and could not be created!");
+      }
+    }
+  }
+
+  /**
+   * Retrieve the storer of the cursor of the channel.
+   */
+  public UriStorer getChannelStorer(String channel) {
+    if (StringUtils.isBlank(channel)) {
+      throw new IllegalArgumentException("Channel can not be blank!");
+    }
+    ChannelUriStorer storer = storers.get(channel);
+    if (storer == null) {
+      storer = new ChannelUriStorer(channel);
+      final ChannelUriStorer existing = storers.putIfAbsent(channel, storer);
+      if (existing != null) {
+        storer = existing;
+      }
+    }
+    return storer;
+  }
+
+  /**
+   * Close the storer of the cursor of the channel, if open. Checkpoints stored through it afterwards are ignored;
+   * the cursor stored so far is kept and read again by the next storer retrieved for the channel.
+   */
+  public void closeChannelStorer(String channel) {
+    final ChannelUriStorer storer = storers.remove(channel);
+    if (storer != null) {
+      storer.close();
+    }
+  }
+
+  /**
+   * Retrieve the channels having a cursor stored.
+   */
+  public Set<String> getChannels() {
+    final Set<String> channels = new HashSet<String>();
+    final String[] names = cursorFolder.list();
+    if (names != null) {
+      for (String name : names) {
+        if (name.endsWith(CURSOR_SUFFIX)) {
+          channels.add(decode(name.substring(0, name.length() - CURSOR_SUFFIX.length())));
+        }
+      }
+    }
+    return Collections.unmodifiableSet(channels);
+  }
+
+  protected File getCursorFile(String channel) {
+    return new File(cursorFolder, encode(channel) + CURSOR_SUFFIX);
+  }
+
+  protected void writeToFile(File cursorFile, Properties cursor) throws IOException {
+    final File temp = new File(cursorFolder, cursorFile.getName() + TEMP_SUFFIX);
+    final FileOutputStream stream = new FileOutputStream(temp);
+    try {
+      cursor.store(stream, null);
+      stream.flush();
+      stream.getFD().sync();
+    }
+    finally {
+      stream.close();
+    }
+    if (!temp.renameTo(cursorFile)) {
+      if (!cursorFile.delete() || !temp.renameTo(cursorFile)) {
+        throw new IOException("Could not replace " + cursorFile.getAbsolutePath());
+      }
+    }
+  }
+
+  protected Properties readFromFile(File cursorFile) {
+    final Properties cursor = new Properties();
+    if (!cursorFile.exists()) {
+      return cursor;
+    }
+    try {
+      InputStream stream = new FileInputStream(cursorFile);
+      try {
+        cursor.load(stream);
+      }
+      finally {
+        stream.close();
+      }
+    }
+    catch (Exception ex) {
+      logger.warn("Could not read file!", ex);
+    }
+    return cursor;
+  }
+
+  /**
+   * Encode the channel to a file name, so that channels with characters not allowed in file names can be stored.
+   */
+  private static String encode(String channel) {
+    try {
+      return URLEncoder.encode(channel, "UTF-8");
+    }
+    catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static String decode(String name) {
+    try {
+      return URLDecoder.decode(name, "UTF-8");
+    }
+    catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  protected class ChannelUriStorer implements UriStorer {
+
+    private final String channel;
+    private final File cursorFile;
+    private final Properties cursor;
+    private boolean closed;
+
+    public ChannelUriStorer(String channel) {
+      this.channel = channel;
+      this.cursorFile = getCursorFile(channel);
+      this.cursor = readFromFile(cursorFile);
+    }
+
+    @Override
+    public void storeNextUri(String uri) {
+      storeCheckpoint(uri, null);
+    }
+
+    @Override
+    public synchronized void storeCheckpoint(String uri, String lastConsumedEventId) {
+      if (closed) {
+        logger.warn("Ignoring checkpoint of closed channel " + channel);
+        return;
+      }
+      if (logger.isDebugEnabled()) {
+        logger.debug("URI being stored for " + channel + " is " + uri + " with last consumed event " +
+            lastConsumedEventId);
+      }
+      cursor.setProperty(URI_KEY, uri == null ? "" : uri);
+      if (StringUtils.isNotBlank(lastConsumedEventId)) {
+        cursor.setProperty(EVENT_KEY, lastConsumedEventId);
+      }
+      else {
+        cursor.remove(EVENT_KEY);
+      }
+      try {
+        writeToFile(cursorFile, cursor);
+      }
+      catch (IOException ex) {
+        logger.error("Could not write to file!", ex);
+        throw new RuntimeException(ex);
+      }
+    }
+
+    @Override
+    public synchronized String getNextUri() {
+      return getProperty(URI_KEY);
+    }
+
+    @Override
+    public synchronized String getLastConsumedEventId() {
+      return getProperty(EVENT_KEY);
+    }
+
+    /**
+     * Close the storer, waiting for a checkpoint being stored.
+     */
+    public synchronized void close() {
+      closed = true;
+    }
+
+    private String getProperty(String key) {
+      final String value = cursor.getProperty(key);
+      return StringUtils.isBlank(value) ? null : value;
+    }
+  }
+}
@@ -0,0 +1,703 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.smartitengineering.events.async.api.EventPublicationException;
+import com.smartitengineering.events.async.api.EventPublisher;
+import com.smartitengineering.events.async.api.PublicationCallback;
+import com.smartitengineering.events.async.api.PublicationFuture;
+import com.smartitengineering.events.async.api.PublicationResult;
+import com.smartitengineering.events.async.api.PublishableEvent;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A publisher that appends events to a local outbox and acknowledges callers once the events are on disk, leaving
+ * their publication to the decorated publisher to a background drainer. Publishing thus neither waits for nor fails
+ * with the hub; events appended while the hub is unavailable are published, in order and at least once, once it is
+ * available again.
+ * <p>
+ * The outbox is a log of segment files, each holding length prefixed, checksummed records of events. The drainer
+ * reads events in batches from its checkpoint, i.e. the segment and offset of the first event not yet published,
+ * publishes them one after the other and advances the checkpoint past the events published. Publication stops at
+ * the first event failing, which is retried after a delay. An event that keeps being rejected is moved to a dead
+ * letter file after a bounded number of attempts.
+ * Segments are deleted once drained. On start up a torn record at the end of the last segment is truncated.
+ * @author imyousuf
+ */
+@Singleton
+public class OutboxEventPublisher implements EventPublisher {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String CHECKPOINT_FILE = "checkpoint";
+  private static final String DEAD_LETTER_FILE = "dead-letters";
+  private static final int RECORD_HEADER_SIZE = 4 + 4;
+  private final EventPublisher publisher;
+  private final File folder;
+  @Inject(optional = true)
+  @Named("outboxSegmentBytes")
+  private Long segmentBytes = new Long(16 * 1024 * 1024);
+  @Inject(optional = true)
+  @Named("outboxDrainBatchSize")
+  private Integer drainBatchSize = new Integer(100);
+  @Inject(optional = true)
+  @Named("outboxDrainRetryMillis")
+  private Long drainRetryMillis = new Long(1000);
+  @Inject(optional = true)
+  @Named("outboxMaxAttempts")
+  private Integer maxAttempts = new Integer(5);
+  @Inject(optional = true)
+  @Named("outboxSyncOnAppend")
+  private Boolean syncOnAppend = Boolean.TRUE;
+  @Inject(optional = true)
+  @Named("publicationCallbackExecutor")
+  private Executor callbackExecutor;
+  private final Object drainLock = new Object();
+  private final Object drainSignal = new Object();
+  private final Object lifecycleLock = new Object();
+  private boolean opened;
+  private long writeSegment;
+  private long writeOffset;
+  private FileChannel writeChannel;
+  private long readSegment;
+  private long readOffset;
+  private FileChannel readChannel;
+  private int failedAttempts;
+  private final AtomicLong deadLettered = new AtomicLong();
+  private Thread drainer;
+  private volatile boolean appended;
+  private volatile boolean shutDown;
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  @Inject
+  public OutboxEventPublisher(@Named("outboxedPublisher") EventPublisher publisher,
+                              @Named("pathToFolderOfOutbox") String pathToFolder) {
+    this.publisher = publisher;
+    folder = new File(pathToFolder);
+    if (!folder.exists()) {
+      boolean mkdirs = folder.mkdirs();
+      if (!mkdirs) {
+        throw new IllegalArgumentException("pathToFolderOfOutbox does not exist and could not be created!");
+      }
+    }
+  }
+
+  @Override
+  public boolean publishEvent(String eventContentType, String eventMessage) {
+    append(Collections.singletonList(new PublishableEvent(eventContentType, eventMessage)));
+    return true;
+  }
+
+  @Override
+  public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+    final List<PublicationResult> results = new ArrayList<PublicationResult>(events.size());
+    try {
+      append(events);
+      for (PublishableEvent event : events) {
+        results.add(new PublicationResult(event, true, null));
+      }
+    }
+    catch (EventPublicationException ex) {
+      for (PublishableEvent event : events) {
+        results.add(new PublicationResult(event, false, ex));
+      }
+    }
+    return results;
+  }
+
+  @Override
+  public Future<Boolean> publishEventAsync(String eventContentType, String eventMessage,
+                                           PublicationCallback callback) {
+    final PublicationFuture future = new PublicationFuture(callback, callbackExecutor);
+    try {
+      publishEvent(eventContentType, eventMessage);
+      future.set(Boolean.TRUE);
+    }
+    catch (EventPublicationException ex) {
+      future.setException(ex);
+    }
+    return future;
+  }
+
+  public void setSegmentBytes(long segmentBytes) {
+    this.segmentBytes = segmentBytes;
+  }
+
+  public void setDrainBatchSize(int drainBatchSize) {
+    this.drainBatchSize = drainBatchSize;
+  }
+
+  public void setDrainRetryMillis(long drainRetryMillis) {
+    this.drainRetryMillis = drainRetryMillis;
+  }
+
+  public void setMaxAttempts(int maxAttempts) {
+    this.maxAttempts = maxAttempts;
+  }
+
+  public void setSyncOnAppend(boolean syncOnAppend) {
+    this.syncOnAppend = syncOnAppend;
+  }
+
+  /**
+   * Open the outbox and start draining it, so that events left in it by a previous run are published without waiting
+   * for a new event to be published. Called by Guice once the configuration is injected; when created otherwise it
+   * is to be called once configured. Appending events starts the drainer too if not already started.
+   */
+  @Inject
+  public void start() {
+    synchronized (lifecycleLock) {
+      shutDown = false;
+      try {
+        open();
+      }
+      catch (IOException ex) {
+        logger.error("Could not open outbox!", ex);
+        throw new EventPublicationException(ex);
+      }
+      ensureDrainerStarted();
+      synchronized (drainSignal) {
+        appended = true;
+        drainSignal.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Stop the background drainer, waiting for the batch it is publishing, and close the outbox; events not yet
+   * drained stay in the outbox to be drained once started again. Events can not be published till then. The drainer
+   * is woken up rather than interrupted, as interrupting a thread reading a file channel closes the channel.
+   */
+  public void shutdown() {
+    synchronized (lifecycleLock) {
+      final Thread stoppedDrainer;
+      synchronized (this) {
+        shutDown = true;
+        stoppedDrainer = drainer;
+        drainer = null;
+      }
+      synchronized (drainSignal) {
+        drainSignal.notifyAll();
+      }
+      if (stoppedDrainer != null) {
+        try {
+          stoppedDrainer.join();
+        }
+        catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      synchronized (drainLock) {
+        closeQuietly(readChannel);
+        readChannel = null;
+      }
+      synchronized (this) {
+        closeQuietly(writeChannel);
+        writeChannel = null;
+        opened = false;
+      }
+    }
+  }
+
+  protected synchronized void append(Collection<PublishableEvent> events) {
+    try {
+      open();
+      for (PublishableEvent event : events) {
+        final ByteBuffer record = encode(event);
+        if (writeOffset > 0 && writeOffset + record.remaining() > segmentBytes.longValue()) {
+          roll();
+        }
+        while (record.hasRemaining()) {
+          writeOffset += writeChannel.write(record, writeOffset);
+        }
+      }
+      if (syncOnAppend.booleanValue()) {
+        writeChannel.force(false);
+      }
+    }
+    catch (IOException ex) {
+      logger.error("Could not append events to outbox!", ex);
+      throw new EventPublicationException(ex);
+    }
+    ensureDrainerStarted();
+    synchronized (drainSignal) {
+      appended = true;
+      drainSignal.notifyAll();
+    }
+  }
+
+  protected synchronized void ensureDrainerStarted() {
+    if (drainer == null && !shutDown) {
+      drainer = new DaemonThreadFactory("outbox-drainer").newThread(new Runnable() {
+
+        @Override
+        public void run() {
+          drainContinuously();
+        }
+      });
+      drainer.start();
+    }
+  }
+
+  protected void drainContinuously() {
+    while (!shutDown) {
+      int drained;
+      try {
+        drained = drain();
+      }
+      catch (RuntimeException ex) {
+        if (shutDown) {
+          return;
+        }
+        logger.warn("Could not drain outbox!", ex);
+        drained = -1;
+      }
+      try {
+        if (drained < 0) {
+          final long retryAt = System.currentTimeMillis() + drainRetryMillis.longValue();
+          synchronized (drainSignal) {
+            long delay;
+            while (!shutDown && (delay = retryAt - System.currentTimeMillis()) > 0) {
+              drainSignal.wait(delay);
+            }
+          }
+        }
+        else if (drained == 0) {
+          synchronized (drainSignal) {
+            if (!appended && !shutDown) {
+              drainSignal.wait(drainRetryMillis.longValue());
+            }
+            appended = false;
+          }
+        }
+      }
+      catch (InterruptedException ex) {
+        logger.debug("Drainer interrupted while waiting", ex);
+      }
+    }
+  }
+
+  /**
+   * Publish the next batch of events from the outbox and advance the checkpoint past those published.
+   * @return Number of events published or dead lettered, or -1 if an event of the batch is to be retried; 0 once
+   *         shut down
+   */
+  protected int drain() {
+    if (shutDown) {
+      return 0;
+    }
+    final long[] end;
+    try {
+      end = getWritePosition();
+    }
+    catch (IOException ex) {
+      throw new EventPublicationException(ex);
+    }
+    synchronized (drainLock) {
+      if (shutDown) {
+        return 0;
+      }
+      try {
+        final List<PublishableEvent> events = new ArrayList<PublishableEvent>();
+        final List<Long> nextOffsets = new ArrayList<Long>();
+        while (events.isEmpty()) {
+          if (readChannel == null) {
+            readChannel = new RandomAccessFile(getSegmentFile(readSegment), "r").getChannel();
+          }
+          final long limit = readSegment == end[0] ? end[1] : readChannel.size();
+          long offset = readOffset;
+          while (events.size() < Math.max(1, drainBatchSize.intValue())) {
+            final Record record = read(readChannel, offset, limit);
+            if (record == null) {
+              break;
+            }
+            events.add(record.event);
+            offset = record.nextOffset;
+            nextOffsets.add(offset);
+          }
+          if (!events.isEmpty() || readSegment >= end[0]) {
+            break;
+          }
+          if (offset < limit) {
+            logger.warn("Skipping corrupt records at " + offset + " of outbox segment " + readSegment);
+          }
+          closeQuietly(readChannel);
+          readChannel = null;
+          final File drainedSegment = getSegmentFile(readSegment);
+          readSegment++;
+          readOffset = 0;
+          storeCheckpoint();
+          if (!drainedSegment.delete()) {
+            logger.warn("Could not delete drained outbox segment " + drainedSegment.getAbsolutePath());
+          }
+        }
+        if (events.isEmpty()) {
+          return 0;
+        }
+        final int published = publish(events);
+        if (published > 0) {
+          readOffset = nextOffsets.get(published - 1);
+          storeCheckpoint();
+        }
+        if (logger.isDebugEnabled()) {
+          logger.debug("Drained " + published + " of " + events.size() + " events from outbox");
+        }
+        return published < events.size() ? -1 : published;
+      }
+      catch (IOException ex) {
+        throw new EventPublicationException(ex);
+      }
+    }
+  }
+
+  /**
+   * Publish the events one after the other, stopping at the first that fails so that none is published ahead of an
+   * earlier one. Batches are not handed to {@link EventPublisher#publishEvents(java.util.Collection)} as publishers
+   * may publish them concurrently, e.g. the hub publisher does.
+   * <p>
+   * An event failing transiently, see {@link #isTransient(java.lang.Throwable)}, is retried till it is published. An
+   * event rejected by the publisher, or failing with any other error, is retried up to the maximum attempts and then
+   * moved to the dead letter file so that it does not hold back the events after it.
+   * @return Number of events from the start of the list that were published or dead lettered
+   */
+  protected int publish(List<PublishableEvent> events) {
+    int done = 0;
+    for (PublishableEvent event : events) {
+      RuntimeException error = null;
+      try {
+        if (publisher.publishEvent(event.getContentType(), event.getMessage())) {
+          failedAttempts = 0;
+          done++;
+          continue;
+        }
+      }
+      catch (RuntimeException ex) {
+        error = ex;
+      }
+      if (error != null && isTransient(error)) {
+        logger.warn("Could not publish event from outbox, will retry it!", error);
+        break;
+      }
+      if (++failedAttempts < maxAttempts.intValue()) {
+        logger.warn("Event from outbox failed to be published " + failedAttempts + " times, will retry it", error);
+        break;
+      }
+      try {
+        deadLetter(event, error);
+      }
+      catch (IOException ex) {
+        logger.error("Could not move event from outbox to dead letters!", ex);
+        break;
+      }
+      failedAttempts = 0;
+      done++;
+    }
+    return done;
+  }
+
+  /**
+   * Whether the error is expected to go away on its own, i.e. it is an {@link EventPublicationException}, as thrown
+   * when the hub fails, or is caused by an I/O error, as when the hub can not be reached.
+   */
+  protected boolean isTransient(Throwable error) {
+    if (error instanceof EventPublicationException) {
+      return true;
+    }
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof IOException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Append the event to the dead letter file of the outbox, in the format of the segments, so that it can be
+   * inspected and published again manually.
+   */
+  protected void deadLetter(PublishableEvent event, Throwable error) throws IOException {
+    final FileChannel channel = new RandomAccessFile(new File(folder, DEAD_LETTER_FILE), "rw").getChannel();
+    try {
+      final ByteBuffer record = encode(event);
+      long offset = channel.size();
+      while (record.hasRemaining()) {
+        offset += channel.write(record, offset);
+      }
+      channel.force(false);
+    }
+    finally {
+      closeQuietly(channel);
+    }
+    deadLettered.incrementAndGet();
+    logger.error(new StringBuilder("Gave up publishing event of type ").append(event.getContentType()).append(
+        " from outbox after ").append(failedAttempts).append(" attempts, moved it to ").append(DEAD_LETTER_FILE).
+        toString(), error);
+  }
+
+  /**
+   * Number of events moved to the dead letter file since the outbox was created.
+   */
+  public long getDeadLetteredCount() {
+    return deadLettered.get();
+  }
+
+  protected synchronized long[] getWritePosition() throws IOException {
+    open();
+    return new long[]{writeSegment, writeOffset};
+  }
+
+  /**
+   * Open the outbox, if not already, recovering the checkpoint and the end of the last segment. The drainer's
+   * position is initialized here too; as the drainer always reads the write position first, it sees it initialized.
+   * Once shut down the outbox is not opened again till started.
+   */
+  protected synchronized void open() throws IOException {
+    if (shutDown) {
+      throw new IOException("Outbox is shut down");
+    }
+    if (opened) {
+      return;
+    }
+    final List<Long> segments = getSegments();
+    final long[] checkpoint = readCheckpoint();
+    readSegment = checkpoint[0];
+    readOffset = checkpoint[1];
+    if (!segments.isEmpty() && segments.get(0).longValue() > readSegment) {
+      readSegment = segments.get(0).longValue();
+      readOffset = 0;
+    }
+    readChannel = null;
+    for (Long segment : segments) {
+      if (segment.longValue() < readSegment && !getSegmentFile(segment.longValue()).delete()) {
+        logger.warn("Could not delete drained outbox segment " + segment);
+      }
+    }
+    writeSegment = segments.isEmpty() ? readSegment : Math.max(readSegment, segments.get(segments.size() - 1).
+        longValue());
+    writeChannel = new RandomAccessFile(getSegmentFile(writeSegment), "rw").getChannel();
+    final long size = writeChannel.size();
+    long offset = 0;
+    Record record;
+    while ((record = read(writeChannel, offset, size)) != null) {
+      offset = record.nextOffset;
+    }
+    if (offset < size) {
+      logger.warn("Truncating torn records of outbox segment " + writeSegment + " at " + offset);
+      writeChannel.truncate(offset);
+      writeChannel.force(true);
+    }
+    writeOffset = offset;
+    opened = true;
+  }
+
+  protected void roll() throws IOException {
+    writeChannel.force(false);
+    closeQuietly(writeChannel);
+    writeSegment++;
+    writeOffset = 0;
+    writeChannel = new RandomAccessFile(getSegmentFile(writeSegment), "rw").getChannel();
+    if (logger.isDebugEnabled()) {
+      logger.debug("Rolled outbox to segment " + writeSegment);
+    }
+  }
+
+  protected List<Long> getSegments() {
+    final List<Long> segments = new ArrayList<Long>();
+    final String[] names = folder.list();
+    if (names != null) {
+      for (String name : names) {
+        if (name.endsWith(SEGMENT_SUFFIX)) {
+          final long segment = NumberUtils.toLong(StringUtils.removeEnd(name, SEGMENT_SUFFIX), -1);
+          if (segment >= 0) {
+            segments.add(segment);
+          }
+        }
+      }
+    }
+    Collections.sort(segments);
+    return segments;
+  }
+
+  protected File getSegmentFile(long segment) {
+    return new File(folder, StringUtils.leftPad(String.valueOf(segment), 20, '0') + SEGMENT_SUFFIX);
+  }
+
+  protected long[] readCheckpoint() throws IOException {
+    final File file = new File(folder, CHECKPOINT_FILE);
+    if (!file.exists()) {
+      return new long[]{0, 0};
+    }
+    final RandomAccessFile stream = new RandomAccessFile(file, "r");
+    final byte[] bytes;
+    try {
+      bytes = new byte[(int) stream.length()];
+      stream.readFully(bytes);
+    }
+    finally {
+      stream.close();
+    }
+    final String[] checkpoint = StringUtils.split(new String(bytes, UTF_8));
+    if (checkpoint == null || checkpoint.length < 2) {
+      return new long[]{0, 0};
+    }
+    return new long[]{NumberUtils.toLong(checkpoint[0]), NumberUtils.toLong(checkpoint[1])};
+  }
+
+  protected void storeCheckpoint() throws IOException {
+    final File checkpoint = new File(folder, CHECKPOINT_FILE);
+    final File temp = new File(folder, CHECKPOINT_FILE + ".tmp");
+    final FileOutputStream stream = new FileOutputStream(temp);
+    try {
+      stream.write((readSegment + " " + readOffset).getBytes(UTF_8.name()));
+      stream.flush();
+      stream.getFD().sync();
+    }
+    finally {
+      stream.close();
+    }
+    if (!temp.renameTo(checkpoint)) {
+      if (!checkpoint.delete() || !temp.renameTo(checkpoint)) {
+        throw new IOException("Could not replace " + checkpoint.getAbsolutePath());
+      }
+    }
+  }
+
+  /**
+   * Encode an event as a record of the length and CRC32 of its payload followed by the payload, i.e. the lengths
+   * and UTF-8 bytes of its content type and message, a length of -1 denoting null.
+   */
+  protected static ByteBuffer encode(PublishableEvent event) {
+    final byte[] contentType = event.getContentType() == null ? null : event.getContentType().getBytes(UTF_8);
+    final byte[] message = event.getMessage() == null ? null : event.getMessage().getBytes(UTF_8);
+    final int payloadSize = 4 + (contentType == null ? 0 : contentType.length) + 4 + (message == null ? 0
+                                                                                       : message.length);
+    final ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + payloadSize);
+    buffer.putInt(payloadSize);
+    buffer.putInt(0);
+    putBytes(buffer, contentType);
+    putBytes(buffer, message);
+    final CRC32 crc = new CRC32();
+    crc.update(buffer.array(), RECORD_HEADER_SIZE, payloadSize);
+    buffer.putInt(4, (int) crc.getValue());
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Read the record at the offset, if it is complete within the limit and its checksum matches.
+   */
+  protected static Record read(FileChannel channel, long offset, long limit) throws IOException {
+    if (offset + RECORD_HEADER_SIZE > limit) {
+      return null;
+    }
+    final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    readFully(channel, header, offset);
+    final int payloadSize = header.getInt(0);
+    if (payloadSize < 8 || offset + RECORD_HEADER_SIZE + payloadSize > limit) {
+      return null;
+    }
+    final ByteBuffer payload = ByteBuffer.allocate(payloadSize);
+    readFully(channel, payload, offset + RECORD_HEADER_SIZE);
+    final CRC32 crc = new CRC32();
+    crc.update(payload.array(), 0, payloadSize);
+    if ((int) crc.getValue() != header.getInt(4)) {
+      return null;
+    }
+    payload.flip();
+    try {
+      final String contentType = getString(payload);
+      final String message = getString(payload);
+      return new Record(new PublishableEvent(contentType, message), offset + RECORD_HEADER_SIZE + payloadSize);
+    }
+    catch (RuntimeException ex) {
+      return null;
+    }
+  }
+
+  private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+    if (bytes == null) {
+      buffer.putInt(-1);
+    }
+    else {
+      buffer.putInt(bytes.length);
+      buffer.put(bytes);
+    }
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    final int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of outbox segment");
+      }
+    }
+  }
+
+  private void closeQuietly(FileChannel channel) {
+    if (channel != null) {
+      try {
+        channel.close();
+      }
+      catch (IOException ex) {
+        logger.warn("Could not close outbox segment", ex);
+      }
+    }
+  }
+
+  protected static class Record {
+
+    private final PublishableEvent event;
+    private final long nextOffset;
+
+    public Record(PublishableEvent event, long nextOffset) {
+      this.event = event;
+      this.nextOffset = nextOffset;
+    }
+  }
+}
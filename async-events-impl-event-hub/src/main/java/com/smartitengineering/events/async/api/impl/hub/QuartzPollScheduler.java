@@ -0,0 +1,73 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import org.quartz.CronTrigger;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.jobs.NoOpJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules polls of a subscriber on its cron expression with the default Quartz scheduler, using the subscriber's
+ * {@link EventSubscriberImpl.CronPollListener} to keep its polls from overlapping.
+ * @author imyousuf
+ */
+class QuartzPollScheduler {
+
+  private final EventSubscriberImpl subscriber;
+  private final EventSubscriberImpl.PollNameConfig pollNameConfig;
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  QuartzPollScheduler(EventSubscriberImpl subscriber, EventSubscriberImpl.PollNameConfig pollNameConfig) {
+    this.subscriber = subscriber;
+    this.pollNameConfig = pollNameConfig;
+  }
+
+  public void start() throws Exception {
+    String pollName, pollJobName, pollTriggerName, pollListenerName;
+    if (pollNameConfig != null) {
+      pollName = pollNameConfig.getPollName();
+      pollJobName = pollNameConfig.getPollJobName();
+      pollTriggerName = pollNameConfig.getPollTriggerName();
+      pollListenerName = pollNameConfig.getPollListenerName();
+    }
+    else {
+      logger.warn("No poll name configuration provided");
+      pollName = "poll";
+      pollJobName = "pollJob";
+      pollTriggerName = "pollTrigger";
+      pollListenerName = "pollListener";
+    }
+    logger.info(new StringBuilder("Starting Job with Poll Name ").append(pollName).append(", Poll JOB Name ").append(
+        pollJobName).append(", Poll Trigger Name ").append(pollTriggerName).append(" and Poll Listener Name ").append(
+        pollListenerName).toString());
+    Scheduler scheduler = StdSchedulerFactory.getDefaultScheduler();
+    final EventSubscriberImpl.CronPollListener cronPollListener = subscriber.new CronPollListener();
+    scheduler.addTriggerListener(cronPollListener);
+    JobDetail detail = new JobDetail(pollJobName, pollName, NoOpJob.class);
+    Trigger trigger = new CronTrigger(pollTriggerName, pollName, subscriber.getCronExpressionForPollSubscription());
+    trigger.addTriggerListener(pollListenerName);
+    scheduler.start();
+    scheduler.scheduleJob(detail, trigger);
+  }
+}
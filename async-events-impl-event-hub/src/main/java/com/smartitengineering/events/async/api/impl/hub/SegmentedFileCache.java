@@ -0,0 +1,401 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An on-disk cache of immutable values keyed by string, e.g. resource URIs. Values are appended to segment files;
+ * once the active segment reaches the segment size a new one is started, and once the segments exceed the maximum
+ * size the oldest segment is deleted along with the entries it holds. Entries read from an older segment are copied
+ * to the active one, so frequently used entries survive deletion of segments and the cache behaves close to a LRU
+ * cache bounded in size. The index is rebuilt from the segments when the cache is opened, so cached values are
+ * reused across restarts.
+ * <p>
+ * Each record is made of key length, value length, CRC32 of the key and value, key and value. Only the header and
+ * key of records are read to rebuild the index; a record extending past the end of its segment, e.g. one torn by a
+ * crash, ends the scan of its segment. Values are checked against the checksum when read, a record failing it being
+ * dropped from the index.
+ * @author imyousuf
+ */
+public class SegmentedFileCache {
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".cache";
+  private static final int RECORD_HEADER_SIZE = 12;
+  private static final Map<File, SegmentedFileCache> CACHES = new HashMap<File, SegmentedFileCache>();
+  private final File directory;
+  private final long maxBytes;
+  private final long segmentBytes;
+  private final LinkedList<Segment> segments = new LinkedList<Segment>();
+  private final Map<String, Location> index = new LinkedHashMap<String, Location>(1024, 0.75f, true);
+  private long hits;
+  private long misses;
+  private boolean closed;
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  public SegmentedFileCache(File directory, long maxBytes, long segmentBytes) throws IOException {
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("Cache directory does not exist and could not be created!");
+    }
+    this.directory = directory;
+    this.segmentBytes = Math.max(1024, segmentBytes);
+    this.maxBytes = Math.max(this.segmentBytes * 2, maxBytes);
+    open();
+  }
+
+  /**
+   * Retrieve the cache stored in the directory, opening it if it is not yet open in this JVM.
+   */
+  public static SegmentedFileCache getCache(File directory, long maxBytes, long segmentBytes) throws IOException {
+    synchronized (CACHES) {
+      final File key = directory.getCanonicalFile();
+      SegmentedFileCache cache = CACHES.get(key);
+      if (cache == null) {
+        cache = new SegmentedFileCache(key, maxBytes, segmentBytes);
+        CACHES.put(key, cache);
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * Retrieve the value cached against the key.
+   * @return The value or null if it is not cached
+   */
+  public synchronized byte[] get(String key) {
+    if (closed) {
+      return null;
+    }
+    final Location location = index.get(key);
+    if (location == null) {
+      misses++;
+      return null;
+    }
+    try {
+      final byte[] value = read(location, key);
+      if (value == null) {
+        removeLocation(key);
+        misses++;
+        return null;
+      }
+      hits++;
+      if (location.segment != segments.getLast()) {
+        put(key, value);
+      }
+      return value;
+    }
+    catch (IOException ex) {
+      logger.warn("Could not read cache entry " + key, ex);
+      removeLocation(key);
+      misses++;
+      return null;
+    }
+  }
+
+  /**
+   * Cache the value against the key, replacing any value cached against it.
+   */
+  public synchronized void put(String key, byte[] value) {
+    if (closed) {
+      return;
+    }
+    final byte[] keyBytes = key.getBytes(HubEvent.UTF_8);
+    final int recordSize = RECORD_HEADER_SIZE + keyBytes.length + value.length;
+    try {
+      Segment active = segments.getLast();
+      if (active.size > 0 && active.size + recordSize > segmentBytes) {
+        active = newSegment(active.number + 1);
+      }
+      final ByteBuffer record = ByteBuffer.allocate(recordSize);
+      record.putInt(keyBytes.length).putInt(value.length).putInt(checksum(keyBytes, value)).put(keyBytes).put(value);
+      record.flip();
+      final long position = active.size;
+      while (record.hasRemaining()) {
+        active.channel.write(record, position + record.position());
+      }
+      active.size += recordSize;
+      removeLocation(key);
+      index.put(key, new Location(active, position, keyBytes.length, value.length));
+      active.entries++;
+      evictSegments();
+    }
+    catch (IOException ex) {
+      logger.warn("Could not cache entry " + key, ex);
+    }
+  }
+
+  public synchronized int size() {
+    return index.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  public synchronized boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Close the segments of the cache. A closed cache neither caches nor returns values; if it was retrieved with
+   * {@link #getCache(java.io.File, long, long)} the cache is opened anew on retrieving it again.
+   */
+  public void close() throws IOException {
+    synchronized (CACHES) {
+      if (CACHES.get(directory) == this) {
+        CACHES.remove(directory);
+      }
+    }
+    synchronized (this) {
+      closed = true;
+      for (Segment segment : segments) {
+        segment.file.close();
+      }
+      segments.clear();
+      index.clear();
+    }
+  }
+
+  protected void open() throws IOException {
+    final File[] files = directory.listFiles(new FilenameFilter() {
+
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+      }
+    });
+    final List<Long> numbers = new ArrayList<Long>();
+    for (File file : files == null ? new File[0] : files) {
+      final String name = file.getName();
+      try {
+        numbers.add(Long.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+      }
+      catch (NumberFormatException ex) {
+        logger.warn("Ignoring unknown file in cache directory " + name);
+      }
+    }
+    Collections.sort(numbers);
+    for (Long number : numbers) {
+      scan(openSegment(number.longValue()));
+    }
+    if (segments.isEmpty()) {
+      newSegment(0);
+    }
+    evictSegments();
+  }
+
+  /**
+   * Index the records of the segment by reading their headers and keys, truncating it after the last complete
+   * record. Values are not read, their checksum being verified when they are retrieved.
+   */
+  protected void scan(Segment segment) throws IOException {
+    final long length = segment.channel.size();
+    final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    long position = 0;
+    while (position + RECORD_HEADER_SIZE <= length) {
+      header.clear();
+      if (!readFully(segment.channel, header, position)) {
+        break;
+      }
+      header.flip();
+      final int keyLength = header.getInt();
+      final int valueLength = header.getInt();
+      if (keyLength <= 0 || valueLength < 0 || position + RECORD_HEADER_SIZE + keyLength + valueLength > length) {
+        break;
+      }
+      final ByteBuffer keyBuffer = ByteBuffer.allocate(keyLength);
+      if (!readFully(segment.channel, keyBuffer, position + RECORD_HEADER_SIZE)) {
+        break;
+      }
+      final String key = new String(keyBuffer.array(), HubEvent.UTF_8);
+      removeLocation(key);
+      index.put(key, new Location(segment, position, keyLength, valueLength));
+      segment.entries++;
+      position += RECORD_HEADER_SIZE + keyLength + valueLength;
+    }
+    if (position < length) {
+      logger.warn("Truncating invalid records of cache segment " + segment.number);
+      segment.channel.truncate(position);
+    }
+    segment.size = position;
+  }
+
+  protected void evictSegments() throws IOException {
+    long total = 0;
+    for (Segment segment : segments) {
+      total += segment.size;
+    }
+    while (total > maxBytes && segments.size() > 1) {
+      final Segment oldest = segments.removeFirst();
+      total -= oldest.size;
+      for (Iterator<Location> iterator = index.values().iterator(); iterator.hasNext();) {
+        if (iterator.next().segment == oldest) {
+          iterator.remove();
+        }
+      }
+      deleteSegment(oldest);
+    }
+    //Drop older segments none of whose entries are live any more
+    for (Iterator<Segment> iterator = segments.iterator(); iterator.hasNext();) {
+      final Segment segment = iterator.next();
+      if (segment.entries <= 0 && segment != segments.getLast()) {
+        iterator.remove();
+        deleteSegment(segment);
+      }
+    }
+  }
+
+  protected Segment newSegment(long number) throws IOException {
+    final Segment segment = openSegment(number);
+    segment.channel.truncate(0);
+    return segment;
+  }
+
+  protected Segment openSegment(long number) throws IOException {
+    final File file = getSegmentFile(number);
+    final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    final Segment segment = new Segment(number, randomAccessFile);
+    segments.addLast(segment);
+    return segment;
+  }
+
+  protected void deleteSegment(Segment segment) throws IOException {
+    if (logger.isDebugEnabled()) {
+      logger.debug("Deleting cache segment " + segment.number);
+    }
+    segment.file.close();
+    if (!getSegmentFile(segment.number).delete()) {
+      logger.warn("Could not delete cache segment " + segment.number);
+    }
+  }
+
+  protected File getSegmentFile(long number) {
+    return new File(directory, new StringBuilder(SEGMENT_PREFIX).append(number).append(SEGMENT_SUFFIX).toString());
+  }
+
+  protected void removeLocation(String key) {
+    final Location previous = index.remove(key);
+    if (previous != null) {
+      previous.segment.entries--;
+    }
+  }
+
+  protected byte[] read(Location location, String key) throws IOException {
+    final byte[][] record = readRecord(location);
+    if (record == null || !Arrays.equals(record[0], key.getBytes(HubEvent.UTF_8))) {
+      return null;
+    }
+    return record[1];
+  }
+
+  /**
+   * Read the key and value of the record if its checksum is valid.
+   */
+  protected byte[][] readRecord(Location location) throws IOException {
+    final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + location.keyLength + location.valueLength);
+    if (!readFully(location.segment.channel, record, location.position)) {
+      return null;
+    }
+    record.flip();
+    if (record.getInt() != location.keyLength || record.getInt() != location.valueLength) {
+      return null;
+    }
+    final int checksum = record.getInt();
+    final byte[] key = new byte[location.keyLength];
+    final byte[] value = new byte[location.valueLength];
+    record.get(key).get(value);
+    if (checksum != checksum(key, value)) {
+      return null;
+    }
+    return new byte[][]{key, value};
+  }
+
+  /**
+   * Read from the position till the buffer is full.
+   * @return False if the end of the channel was reached first
+   */
+  protected static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    final int start = buffer.position();
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position() - start) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  protected static int checksum(byte[] key, byte[] value) {
+    final CRC32 crc = new CRC32();
+    crc.update(key);
+    crc.update(value);
+    return (int) crc.getValue();
+  }
+
+  protected static class Segment {
+
+    private final long number;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private long size;
+    private int entries;
+
+    public Segment(long number, RandomAccessFile file) {
+      this.number = number;
+      this.file = file;
+      this.channel = file.getChannel();
+    }
+  }
+
+  protected static class Location {
+
+    private final Segment segment;
+    private final long position;
+    private final int keyLength;
+    private final int valueLength;
+
+    public Location(Segment segment, long position, int keyLength, int valueLength) {
+      this.segment = segment;
+      this.position = position;
+      this.keyLength = keyLength;
+      this.valueLength = valueLength;
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A scheduler shared by any number of subscriptions, timing polls with a single {@link HashedWheelTimer} thread and
+ * running them on a bounded pool of worker threads. Unlike a Quartz scheduler it has no job store or listeners
+ * per subscription, so scheduling thousands of subscriptions in a JVM only costs a timeout each.
+ * @author imyousuf
+ */
+public class SharedPollScheduler {
+
+  private static SharedPollScheduler defaultScheduler;
+  private final HashedWheelTimer timer;
+  private final ThreadPoolExecutor workers;
+  private final long retryDelayMillis;
+  private final Random random = new Random();
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  /**
+   * @param workerThreads Number of threads polls are run in
+   * @param queueCapacity Number of due polls that may wait for a worker thread
+   * @param tickMillis Resolution of the timer
+   */
+  public SharedPollScheduler(int workerThreads, int queueCapacity, long tickMillis) {
+    final int threads = Math.max(1, workerThreads);
+    this.timer = new HashedWheelTimer("poll-timer", Math.max(1, tickMillis), TimeUnit.MILLISECONDS, 512);
+    this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                                          new ArrayBlockingQueue<Runnable>(Math.max(1, queueCapacity)),
+                                          new DaemonThreadFactory("poll-worker"));
+    this.retryDelayMillis = Math.max(100, tickMillis);
+  }
+
+  /**
+   * Retrieve the scheduler shared by all subscriptions of the JVM, creating it from the configuration of the first
+   * subscription asking for it.
+   */
+  public static synchronized SharedPollScheduler getDefault(SubscriptionConfig config) {
+    if (defaultScheduler == null) {
+      defaultScheduler = new SharedPollScheduler(config.getSchedulerWorkerThreads(),
+                                                 config.getSchedulerQueueCapacity(),
+                                                 config.getSchedulerTickMillis());
+    }
+    return defaultScheduler;
+  }
+
+  /**
+   * Poll the subscriber periodically. The first poll is made after a random fraction of the interval so that
+   * subscriptions scheduled together do not poll together. A poll that is due while the previous poll of the
+   * subscriber is still running is skipped, as is one that finds all workers busy and their queue full.
+   * @return Handle to cancel the polls with
+   */
+  public PeriodicPoll schedulePoll(final EventSubscriberImpl subscriber, long intervalMillis) {
+    return schedulePoll(new Runnable() {
+
+      @Override
+      public void run() {
+        subscriber.poll();
+      }
+    }, intervalMillis);
+  }
+
+  /**
+   * Run the poll task periodically with the same guarantees as
+   * {@link #schedulePoll(com.smartitengineering.events.async.api.impl.hub.EventSubscriberImpl, long)}.
+   */
+  public PeriodicPoll schedulePoll(Runnable pollTask, long intervalMillis) {
+    final long interval = Math.max(1, intervalMillis);
+    final long initialDelay = getInitialDelay(interval);
+    final PeriodicPoll poll = new PeriodicPoll(pollTask, interval, System.nanoTime() + TimeUnit.MILLISECONDS.
+        toNanos(initialDelay));
+    poll.scheduleNext();
+    return poll;
+  }
+
+  /**
+   * Retrieve the delay before the first poll of a subscription, a random fraction of its interval.
+   */
+  protected long getInitialDelay(long intervalMillis) {
+    synchronized (random) {
+      return (long) (random.nextDouble() * intervalMillis);
+    }
+  }
+
+  /**
+   * Run the task in a worker thread after the delay. If the workers can not accept the task it is retried later.
+   * @return Handle to cancel the task with, null if the task was handed to the workers right away
+   */
+  public HashedWheelTimer.Timeout schedule(final Runnable task, long delayMillis) {
+    final Runnable handOver = new Runnable() {
+
+      @Override
+      public void run() {
+        try {
+          workers.execute(task);
+        }
+        catch (RejectedExecutionException ex) {
+          if (!workers.isShutdown()) {
+            logger.warn("Poll workers are saturated, retrying in " + retryDelayMillis + "ms");
+            schedule(task, retryDelayMillis);
+          }
+        }
+      }
+    };
+    if (delayMillis <= 0) {
+      handOver.run();
+      return null;
+    }
+    return timer.newTimeout(handOver, delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public void shutdown() {
+    timer.stop();
+    workers.shutdown();
+  }
+
+  public class PeriodicPoll implements Runnable {
+
+    private final Runnable pollTask;
+    private final long intervalNanos;
+    private final AtomicBoolean idle = new AtomicBoolean(true);
+    private long nextDeadline;
+    private HashedWheelTimer.Timeout timeout;
+    private boolean cancelled;
+
+    protected PeriodicPoll(Runnable pollTask, long intervalMillis, long firstDeadline) {
+      this.pollTask = pollTask;
+      this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+      this.nextDeadline = firstDeadline;
+    }
+
+    /**
+     * Invoked by the timer when a poll is due.
+     */
+    @Override
+    public void run() {
+      scheduleNext();
+      if (!idle.compareAndSet(true, false)) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("Skipping poll as previous poll is still in progress");
+        }
+        return;
+      }
+      try {
+        workers.execute(new Runnable() {
+
+          @Override
+          public void run() {
+            try {
+              pollTask.run();
+            }
+            catch (Exception ex) {
+              logger.warn("Could not execute poll", ex);
+            }
+            finally {
+              idle.set(true);
+            }
+          }
+        });
+      }
+      catch (RejectedExecutionException ex) {
+        idle.set(true);
+        logger.warn("Skipping poll as poll workers are saturated");
+      }
+    }
+
+    public synchronized void cancel() {
+      cancelled = true;
+      if (timeout != null) {
+        timeout.cancel();
+      }
+    }
+
+    protected synchronized void scheduleNext() {
+      if (cancelled) {
+        return;
+      }
+      final long delay = Math.max(0, nextDeadline - System.nanoTime());
+      nextDeadline += intervalNanos;
+      timeout = timer.newTimeout(this, delay, TimeUnit.NANOSECONDS);
+    }
+  }
+}
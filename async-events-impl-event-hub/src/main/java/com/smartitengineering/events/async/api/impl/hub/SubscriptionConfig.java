@@ -0,0 +1,292 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+/**
+ * Tunable, optional configurations of {@link EventSubscriberImpl}. All configurations have defaults and thus need
+ * not be bound.
+ * @author imyousuf
+ */
+public class SubscriptionConfig {
+
+  @Inject(optional = true)
+  @Named("subscribeEntryFetchParallelism")
+  private Integer entryFetchParallelism = new Integer(4);
+  @Inject(optional = true)
+  @Named("subscribeInlineEventContent")
+  private Boolean inlineEventContent = Boolean.FALSE;
+  @Inject(optional = true)
+  @Named("subscribeDuplicateSuppressionCapacity")
+  private Integer duplicateSuppressionCapacity = new Integer(0);
+  @Inject(optional = true)
+  @Named("subscribeConsumerQueueCapacity")
+  private Integer consumerQueueCapacity = new Integer(0);
+  @Inject(optional = true)
+  @Named("subscribeConsumerBatchSize")
+  private Integer consumerBatchSize = new Integer(0);
+  @Inject(optional = true)
+  @Named("subscribeAdaptivePolling")
+  private Boolean adaptivePolling = Boolean.FALSE;
+  @Inject(optional = true)
+  @Named("subscribePollMinIntervalMillis")
+  private Long pollMinIntervalMillis = new Long(1000);
+  @Inject(optional = true)
+  @Named("subscribePollMaxIntervalMillis")
+  private Long pollMaxIntervalMillis = new Long(60000);
+  @Inject(optional = true)
+  @Named("subscribeSharedScheduler")
+  private Boolean sharedScheduler = Boolean.FALSE;
+  @Inject(optional = true)
+  @Named("subscribePollIntervalMillis")
+  private Long pollIntervalMillis = new Long(60000);
+  @Inject(optional = true)
+  @Named("subscribeSchedulerWorkerThreads")
+  private Integer schedulerWorkerThreads = new Integer(8);
+  @Inject(optional = true)
+  @Named("subscribeSchedulerQueueCapacity")
+  private Integer schedulerQueueCapacity = new Integer(1024);
+  @Inject(optional = true)
+  @Named("subscribeSchedulerTickMillis")
+  private Long schedulerTickMillis = new Long(100);
+  @Inject(optional = true)
+  @Named("subscribeMaxPagesPerPoll")
+  private Integer maxPagesPerPoll = new Integer(0);
+  @Inject(optional = true)
+  @Named("subscribeConditionalGet")
+  private Boolean conditionalGet = Boolean.FALSE;
+  @Inject(optional = true)
+  @Named("subscribeEventCacheDirectory")
+  private String eventCacheDirectory;
+  @Inject(optional = true)
+  @Named("subscribeEventCacheMaxBytes")
+  private Long eventCacheMaxBytes = new Long(256L * 1024 * 1024);
+  @Inject(optional = true)
+  @Named("subscribeEventCacheSegmentBytes")
+  private Long eventCacheSegmentBytes = new Long(16L * 1024 * 1024);
+
+  /**
+   * Maximum number of event entries of a feed page fetched concurrently. A value of 1 or less fetches them one at
+   * a time in the polling thread.
+   */
+  public int getEntryFetchParallelism() {
+    return entryFetchParallelism == null ? 1 : entryFetchParallelism.intValue();
+  }
+
+  public void setEntryFetchParallelism(int entryFetchParallelism) {
+    this.entryFetchParallelism = entryFetchParallelism;
+  }
+
+  /**
+   * Whether to decode events from the content of feed entries when the hub embeds them there, falling back to
+   * fetching the event from the alternate link of the entry when it does not.
+   */
+  public boolean isInlineEventContent() {
+    return inlineEventContent != null && inlineEventContent.booleanValue();
+  }
+
+  public void setInlineEventContent(boolean inlineEventContent) {
+    this.inlineEventContent = inlineEventContent;
+  }
+
+  /**
+   * Number of ids of recently consumed events remembered to drop duplicate deliveries before they reach consumers.
+   * A value of 0 or less disables duplicate suppression.
+   */
+  public int getDuplicateSuppressionCapacity() {
+    return duplicateSuppressionCapacity == null ? 0 : duplicateSuppressionCapacity.intValue();
+  }
+
+  public void setDuplicateSuppressionCapacity(int duplicateSuppressionCapacity) {
+    this.duplicateSuppressionCapacity = duplicateSuppressionCapacity;
+  }
+
+  /**
+   * Capacity of the queue of events of each consumer when each consumer is dispatched events by its own worker
+   * thread. A value of 0 or less delivers events to all consumers one after another in the polling thread.
+   */
+  public int getConsumerQueueCapacity() {
+    return consumerQueueCapacity == null ? 0 : consumerQueueCapacity.intValue();
+  }
+
+  public void setConsumerQueueCapacity(int consumerQueueCapacity) {
+    this.consumerQueueCapacity = consumerQueueCapacity;
+  }
+
+  /**
+   * Maximum number of events handed to a {@link com.smartitengineering.events.async.api.BatchEventConsumer} in one
+   * call. A value of 0 or less hands all events of a feed page at once.
+   */
+  public int getConsumerBatchSize() {
+    return consumerBatchSize == null ? 0 : consumerBatchSize.intValue();
+  }
+
+  public void setConsumerBatchSize(int consumerBatchSize) {
+    this.consumerBatchSize = consumerBatchSize;
+  }
+
+  /**
+   * Whether to poll adaptively instead of on the cron expression. An adaptive poll is scheduled right after a poll
+   * that consumed events, and after polls that did not with an interval doubling from the minimum to the maximum.
+   * Adaptive polls are run by the {@link SharedPollScheduler}.
+   */
+  public boolean isAdaptivePolling() {
+    return adaptivePolling != null && adaptivePolling.booleanValue();
+  }
+
+  public void setAdaptivePolling(boolean adaptivePolling) {
+    this.adaptivePolling = adaptivePolling;
+  }
+
+  /**
+   * Interval in milliseconds before polling again after the first poll that found no events.
+   */
+  public long getPollMinIntervalMillis() {
+    return pollMinIntervalMillis == null ? 1000 : pollMinIntervalMillis.longValue();
+  }
+
+  public void setPollMinIntervalMillis(long pollMinIntervalMillis) {
+    this.pollMinIntervalMillis = pollMinIntervalMillis;
+  }
+
+  /**
+   * Ceiling in milliseconds of the interval between consecutive polls finding no events.
+   */
+  public long getPollMaxIntervalMillis() {
+    return pollMaxIntervalMillis == null ? 60000 : pollMaxIntervalMillis.longValue();
+  }
+
+  public void setPollMaxIntervalMillis(long pollMaxIntervalMillis) {
+    this.pollMaxIntervalMillis = pollMaxIntervalMillis;
+  }
+
+  /**
+   * Whether to poll every {@link #getPollIntervalMillis() poll interval} using the {@link SharedPollScheduler}
+   * instead of scheduling the cron expression with Quartz, the default. The cron expression is ignored then.
+   */
+  public boolean isSharedScheduler() {
+    return sharedScheduler != null && sharedScheduler.booleanValue();
+  }
+
+  public void setSharedScheduler(boolean sharedScheduler) {
+    this.sharedScheduler = sharedScheduler;
+  }
+
+  public long getPollIntervalMillis() {
+    return pollIntervalMillis == null ? 60000 : pollIntervalMillis.longValue();
+  }
+
+  public void setPollIntervalMillis(long pollIntervalMillis) {
+    this.pollIntervalMillis = pollIntervalMillis;
+  }
+
+  /**
+   * Number of threads of the {@link SharedPollScheduler} running polls of all subscriptions. Only the configuration
+   * of the first subscription using the shared scheduler takes effect.
+   */
+  public int getSchedulerWorkerThreads() {
+    return schedulerWorkerThreads == null ? 8 : schedulerWorkerThreads.intValue();
+  }
+
+  public void setSchedulerWorkerThreads(int schedulerWorkerThreads) {
+    this.schedulerWorkerThreads = schedulerWorkerThreads;
+  }
+
+  /**
+   * Number of due polls that may wait for a thread of the {@link SharedPollScheduler}.
+   */
+  public int getSchedulerQueueCapacity() {
+    return schedulerQueueCapacity == null ? 1024 : schedulerQueueCapacity.intValue();
+  }
+
+  public void setSchedulerQueueCapacity(int schedulerQueueCapacity) {
+    this.schedulerQueueCapacity = schedulerQueueCapacity;
+  }
+
+  /**
+   * Resolution in milliseconds of the timer of the {@link SharedPollScheduler}.
+   */
+  public long getSchedulerTickMillis() {
+    return schedulerTickMillis == null ? 100 : schedulerTickMillis.longValue();
+  }
+
+  public void setSchedulerTickMillis(long schedulerTickMillis) {
+    this.schedulerTickMillis = schedulerTickMillis;
+  }
+
+  /**
+   * Maximum number of feed pages processed in a poll, after which the poll ends with the next page stored as the
+   * URI to poll next. A value of 0 or less processes all pages available.
+   */
+  public int getMaxPagesPerPoll() {
+    return maxPagesPerPoll == null ? 0 : maxPagesPerPoll.intValue();
+  }
+
+  public void setMaxPagesPerPoll(int maxPagesPerPoll) {
+    this.maxPagesPerPoll = maxPagesPerPoll;
+  }
+
+  /**
+   * Whether to poll the stored page with a conditional request first, skipping the poll if the hub responds that
+   * the page has not been modified since the last poll.
+   */
+  public boolean isConditionalGet() {
+    return conditionalGet != null && conditionalGet.booleanValue();
+  }
+
+  public void setConditionalGet(boolean conditionalGet) {
+    this.conditionalGet = conditionalGet;
+  }
+
+  /**
+   * Directory of the on-disk cache of events fetched from the hub, so that events of pages polled again, after a
+   * consumer failure or a restart, are read locally. Events are not cached if it is not set.
+   */
+  public String getEventCacheDirectory() {
+    return eventCacheDirectory;
+  }
+
+  public void setEventCacheDirectory(String eventCacheDirectory) {
+    this.eventCacheDirectory = eventCacheDirectory;
+  }
+
+  /**
+   * Maximum size in bytes of the event cache on disk.
+   */
+  public long getEventCacheMaxBytes() {
+    return eventCacheMaxBytes == null ? 256L * 1024 * 1024 : eventCacheMaxBytes.longValue();
+  }
+
+  public void setEventCacheMaxBytes(long eventCacheMaxBytes) {
+    this.eventCacheMaxBytes = eventCacheMaxBytes;
+  }
+
+  /**
+   * Size in bytes of each segment file of the event cache.
+   */
+  public long getEventCacheSegmentBytes() {
+    return eventCacheSegmentBytes == null ? 16L * 1024 * 1024 : eventCacheSegmentBytes.longValue();
+  }
+
+  public void setEventCacheSegmentBytes(long eventCacheSegmentBytes) {
+    this.eventCacheSegmentBytes = eventCacheSegmentBytes;
+  }
+}
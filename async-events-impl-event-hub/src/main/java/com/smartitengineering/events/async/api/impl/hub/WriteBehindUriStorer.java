@@ -0,0 +1,231 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.smartitengineering.events.async.api.UriStorer;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A URI storer that keeps the checkpoint in memory and writes it to the decorated storer from a background thread.
+ * Storing a checkpoint only swaps an atomic reference, so consumption never waits for disk I/O, and reads are served
+ * from memory without locking. Checkpoints stored between two flushes are coalesced so only the latest one is
+ * written. {@link #flush()} writes the pending checkpoint synchronously; it is also invoked on {@link #close()} and
+ * from a JVM shutdown hook so that the latest checkpoint is not lost on a graceful shutdown.
+ * @author imyousuf
+ */
+@Singleton
+public class WriteBehindUriStorer implements UriStorer, Flushable, Closeable {
+
+  private final UriStorer storer;
+  @Inject(optional = true)
+  @Named("uriStorerFlushIntervalMillis")
+  private Long flushIntervalMillis = new Long(100);
+  private final AtomicReference<Checkpoint> pendingCheckpoint = new AtomicReference<Checkpoint>();
+  private final Object flushMutex = new Object();
+  private final Object wakeUpMutex = new Object();
+  private volatile Checkpoint checkpoint;
+  private volatile boolean flushing;
+  private Thread flusher;
+  private Thread shutdownHook;
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  @Inject
+  public WriteBehindUriStorer(@Named("writeBehindUriStorer") UriStorer storer) {
+    this.storer = storer;
+  }
+
+  @Override
+  public void storeNextUri(String uri) {
+    storeCheckpoint(uri, null);
+  }
+
+  @Override
+  public void storeCheckpoint(String uri, String lastConsumedEventId) {
+    final Checkpoint newCheckpoint = new Checkpoint(uri, lastConsumedEventId);
+    checkpoint = newCheckpoint;
+    pendingCheckpoint.set(newCheckpoint);
+    ensureFlusherStarted();
+  }
+
+  @Override
+  public String getNextUri() {
+    final String uri = getCheckpoint().uri;
+    return StringUtils.isBlank(uri) ? null : uri;
+  }
+
+  @Override
+  public String getLastConsumedEventId() {
+    final String eventId = getCheckpoint().lastConsumedEventId;
+    return StringUtils.isBlank(eventId) ? null : eventId;
+  }
+
+  /**
+   * Write the latest checkpoint, if any is pending, to the decorated storer.
+   */
+  @Override
+  public void flush() throws IOException {
+    synchronized (flushMutex) {
+      final Checkpoint toWrite = pendingCheckpoint.getAndSet(null);
+      if (toWrite == null) {
+        return;
+      }
+      try {
+        storer.storeCheckpoint(toWrite.uri, toWrite.lastConsumedEventId);
+      }
+      catch (RuntimeException ex) {
+        //Retry with next flush unless a newer checkpoint is already pending
+        pendingCheckpoint.compareAndSet(null, toWrite);
+        throw new IOException(ex);
+      }
+      if (storer instanceof Flushable) {
+        ((Flushable) storer).flush();
+      }
+    }
+  }
+
+  /**
+   * Stop the background flusher, waiting for the flush it is doing, and then write the pending checkpoint. The flusher
+   * is woken up rather than interrupted, as interrupting a thread writing to a file channel closes the channel.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (flusher != null) {
+        flushing = false;
+        synchronized (wakeUpMutex) {
+          wakeUpMutex.notifyAll();
+        }
+        try {
+          flusher.join();
+        }
+        catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        flusher = null;
+      }
+      if (shutdownHook != null) {
+        try {
+          Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        }
+        catch (IllegalStateException ex) {
+          logger.debug("Shutdown is in progress, shutdown hook not removed", ex);
+        }
+        shutdownHook = null;
+      }
+    }
+    flush();
+    if (storer instanceof Closeable) {
+      ((Closeable) storer).close();
+    }
+  }
+
+  public void setFlushIntervalMillis(Long flushIntervalMillis) {
+    this.flushIntervalMillis = flushIntervalMillis;
+  }
+
+  protected Checkpoint getCheckpoint() {
+    Checkpoint current = checkpoint;
+    if (current == null) {
+      synchronized (this) {
+        current = checkpoint;
+        if (current == null) {
+          current = new Checkpoint(storer.getNextUri(), storer.getLastConsumedEventId());
+          checkpoint = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  protected synchronized void ensureFlusherStarted() {
+    if (flusher != null) {
+      return;
+    }
+    flushing = true;
+    final DaemonThreadFactory threadFactory = new DaemonThreadFactory("uri-storer-flusher");
+    flusher = threadFactory.newThread(new Runnable() {
+
+      @Override
+      public void run() {
+        flushContinuously();
+      }
+    });
+    flusher.start();
+    if (shutdownHook == null) {
+      shutdownHook = new Thread(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            flush();
+          }
+          catch (Exception ex) {
+            logger.error("Could not flush checkpoint at shutdown!", ex);
+          }
+        }
+      }, "uri-storer-shutdown-flush");
+      Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+  }
+
+  protected void flushContinuously() {
+    final long interval = Math.max(1, flushIntervalMillis.longValue());
+    while (flushing) {
+      synchronized (wakeUpMutex) {
+        try {
+          if (flushing) {
+            wakeUpMutex.wait(interval);
+          }
+        }
+        catch (InterruptedException ex) {
+          logger.debug("Flusher interrupted while waiting", ex);
+        }
+      }
+      if (!flushing) {
+        return;
+      }
+      try {
+        flush();
+      }
+      catch (Exception ex) {
+        logger.warn("Could not flush checkpoint!", ex);
+      }
+    }
+  }
+
+  protected static class Checkpoint {
+
+    private final String uri;
+    private final String lastConsumedEventId;
+
+    public Checkpoint(String uri, String lastConsumedEventId) {
+      this.uri = uri;
+      this.lastConsumedEventId = lastConsumedEventId;
+    }
+  }
+}
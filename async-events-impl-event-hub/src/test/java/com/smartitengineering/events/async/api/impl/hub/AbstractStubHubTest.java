@@ -0,0 +1,210 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.EventConsumer;
+import com.smartitengineering.events.async.api.UriStorer;
+import com.smartitengineering.util.rest.client.ConnectionConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.commons.lang.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+
+/**
+ * Base of tests polling a stub hub. The stub serves the page <tt>/events</tt> with the configured number of events,
+ * newest first, linking to the empty newer page <tt>/events/newer</tt>, and each event at <tt>/events/{id}</tt>.
+ * Requests are handled concurrently and the path of each is recorded.
+ */
+public abstract class AbstractStubHubTest {
+
+  protected static final String STORE_FOLDER = "./target/stub-hub/";
+  protected final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+  protected HttpServer server;
+  protected String baseUri;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    baseUri = "http://localhost:" + server.getAddress().getPort();
+    server.createContext("/", new HttpHandler() {
+
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          requests.add(exchange.getRequestURI().getPath());
+          respond(exchange);
+        }
+        finally {
+          exchange.close();
+        }
+      }
+    });
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  /**
+   * Create a subscriber polling the stub hub, resuming from the page <tt>/events</tt>.
+   */
+  protected EventSubscriberImpl createSubscriber(String storeFile, SubscriptionConfig subscriptionConfig,
+                                                 List<? extends EventConsumer> consumers) throws Exception {
+    return createSubscriber(createStorer(storeFile, baseUri + "/events"), subscriptionConfig, consumers);
+  }
+
+  protected EventSubscriberImpl createSubscriber(UriStorer storer, SubscriptionConfig subscriptionConfig,
+                                                 List<? extends EventConsumer> consumers) throws Exception {
+    ConnectionConfig config = new ConnectionConfig();
+    config.setBasicUri("");
+    config.setContextPath("/");
+    config.setHost("localhost");
+    config.setPort(server.getAddress().getPort());
+    final EventSubscriberImpl subscriber = new EventSubscriberImpl("0/1 * * * * ?", baseUri + "/events", config,
+                                                                   storer, new ArrayList<EventConsumer>(consumers));
+    subscriber.setSubscriptionConfig(subscriptionConfig);
+    return subscriber;
+  }
+
+  /**
+   * Create a storer with the URI as checkpoint, a blank URI making the subscriber start from the oldest page.
+   */
+  protected FileSystemUriStorer createStorer(String storeFile, String nextUri) {
+    final FileSystemUriStorer storer = new FileSystemUriStorer(STORE_FOLDER, storeFile);
+    storer.storeNextUri(nextUri);
+    return storer;
+  }
+
+  /**
+   * Number of events on the page <tt>/events</tt>.
+   */
+  protected abstract int getEventCount();
+
+  /**
+   * Retrieve the page at the path.
+   * @return The page or null if there is no page at the path
+   */
+  protected String getPage(String path) {
+    if ("/events".equals(path)) {
+      final StringBuilder feed = startFeed();
+      feed.append("<link rel=\"previous\" href=\"/events/newer\"/>");
+      for (int i = getEventCount(); i > 0; --i) {
+        appendEntry(feed, i);
+      }
+      return endFeed(feed);
+    }
+    if ("/events/newer".equals(path)) {
+      return endFeed(startFeed());
+    }
+    return null;
+  }
+
+  protected void respond(HttpExchange exchange) throws IOException {
+    final String path = exchange.getRequestURI().getPath();
+    final String page = getPage(path);
+    if (page != null) {
+      write(exchange, "application/atom+xml", page);
+      return;
+    }
+    final String id = StringUtils.removeStart(path, "/events/");
+    if (!id.equals(path) && StringUtils.isNumeric(id) && StringUtils.isNotBlank(id)) {
+      respondEvent(exchange, Integer.parseInt(id));
+    }
+    else {
+      exchange.sendResponseHeaders(404, -1);
+    }
+  }
+
+  protected void respondEvent(HttpExchange exchange, int id) throws IOException {
+    write(exchange, "application/json", getEvent(id));
+  }
+
+  protected StringBuilder startFeed() {
+    final StringBuilder feed = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    feed.append("<feed xmlns=\"http://www.w3.org/2005/Atom\"><id>events</id><title>Events</title>");
+    return feed.append("<updated>2011-01-01T00:00:00Z</updated>");
+  }
+
+  protected String endFeed(StringBuilder feed) {
+    return feed.append("</feed>").toString();
+  }
+
+  /**
+   * Append the entry of the event, linking to the event on the stub hub.
+   */
+  protected void appendEntry(StringBuilder feed, int id) {
+    feed.append("<entry><id>").append(id).append("</id><title>Event ").append(id).append("</title>");
+    feed.append("<updated>2011-01-01T00:00:00Z</updated>");
+    appendEntryContent(feed, id);
+    feed.append("<link rel=\"alternate\" type=\"application/json\" href=\"").append(baseUri).append("/events/").
+        append(id).append("\"/></entry>");
+  }
+
+  /**
+   * Append the content of the entry of the event, if any; entries have no content by default.
+   */
+  protected void appendEntryContent(StringBuilder feed, int id) {
+  }
+
+  protected static String getEvent(int id) {
+    return new StringBuilder("{\"id\":\"").append(id).append("\",\"uniqueId\":\"event-").append(id).append(
+        "\",\"content-type\":\"text/plain\",\"content-as-string\":\"Event ").append(id).append(
+        "\",\"created-at\":\"2011-01-01T00:00:00Z\"}").toString();
+  }
+
+  /**
+   * Paths of the events requested from the stub hub, in the order they were requested.
+   */
+  protected List<String> getEventRequests() {
+    final List<String> eventRequests = new ArrayList<String>();
+    synchronized (requests) {
+      for (String path : requests) {
+        if (getPage(path) == null) {
+          eventRequests.add(path);
+        }
+      }
+    }
+    return eventRequests;
+  }
+
+  protected static void write(HttpExchange exchange, String contentType, String body) throws IOException {
+    final byte[] bytes = body.getBytes("UTF-8");
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(200, bytes.length);
+    final OutputStream stream = exchange.getResponseBody();
+    stream.write(bytes);
+    stream.flush();
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.EventConsumer;
+import com.smartitengineering.util.rest.client.ConnectionConfig;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the intervals between polls scheduled by the adaptive poll scheduler.
+ */
+public class AdaptivePollSchedulerTest {
+
+  @Test
+  public void testPollEndingEarlyIsBackedOff() throws Exception {
+    final SharedPollScheduler scheduler = new SharedPollScheduler(1, 16, 10);
+    try {
+      final AdaptivePollScheduler adaptive = new AdaptivePollScheduler(new StubSubscriber(), scheduler, 100, 500);
+      Assert.assertEquals(0, adaptive.nextDelay(5, false));
+      Assert.assertEquals(100, adaptive.nextDelay(5, true));
+      Assert.assertEquals(200, adaptive.nextDelay(5, true));
+      Assert.assertEquals(400, adaptive.nextDelay(0, false));
+      Assert.assertEquals(500, adaptive.nextDelay(5, true));
+      Assert.assertEquals(500, adaptive.nextDelay(5, true));
+      Assert.assertEquals(0, adaptive.nextDelay(5, false));
+      Assert.assertEquals(100, adaptive.nextDelay(5, true));
+    }
+    finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  public void testPersistentlyFailingConsumerIsNotPolledInTightLoop() throws Exception {
+    final SharedPollScheduler scheduler = new SharedPollScheduler(1, 16, 10);
+    final StubSubscriber subscriber = new StubSubscriber();
+    final AdaptivePollScheduler adaptive = new AdaptivePollScheduler(subscriber, scheduler, 50, 1000);
+    try {
+      adaptive.start();
+      Thread.sleep(500);
+    }
+    finally {
+      adaptive.stop();
+      scheduler.shutdown();
+    }
+    //Polls at about 0, 50, 150 and 350ms; a tight loop would have polled thousands of times
+    Assert.assertTrue(subscriber.polls.get() >= 2);
+    Assert.assertTrue(subscriber.polls.get() <= 6);
+  }
+
+  /**
+   * A subscriber whose every poll finds events but ends early, as when a consumer keeps failing.
+   */
+  private static class StubSubscriber extends EventSubscriberImpl {
+
+    private final AtomicInteger polls = new AtomicInteger();
+
+    public StubSubscriber() throws Exception {
+      super("0/1 * * * * ?", "http://localhost:10080/hub/api/channels/test/events", getConfig(),
+            new FileSystemUriStorer("./target/store/", "adaptivePollTest.txt"),
+            Collections.<EventConsumer>emptyList());
+    }
+
+    @Override
+    public void poll() {
+      polls.incrementAndGet();
+    }
+
+    @Override
+    public int getLastPollEventCount() {
+      return 5;
+    }
+
+    @Override
+    public boolean hasLastPollEndedEarly() {
+      return true;
+    }
+
+    private static ConnectionConfig getConfig() {
+      ConnectionConfig config = new ConnectionConfig();
+      config.setBasicUri("");
+      config.setContextPath("/hub/");
+      config.setHost("localhost");
+      config.setPort(10080);
+      return config;
+    }
+  }
+}
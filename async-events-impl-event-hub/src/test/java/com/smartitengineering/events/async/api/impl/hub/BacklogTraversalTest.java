@@ -0,0 +1,148 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.EventConsumer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests traversing a backlog of pages from the oldest page against a stub hub serving three pages of two events
+ * each at <tt>/events/page/{index}</tt>, the oldest first, followed by an empty page. The head <tt>/events</tt>
+ * serves the newest page.
+ */
+public class BacklogTraversalTest extends AbstractStubHubTest {
+
+  private static final int PAGES = 3;
+  private static final int EVENTS_PER_PAGE = 2;
+  private boolean linkLast = true;
+
+  @Test
+  public void testPollStopsAtPageLimitAndNextPollResumes() throws Exception {
+    final RecordingConsumer consumer = new RecordingConsumer();
+    final EventSubscriberImpl subscriber = createSubscriber(createStorer("pageLimit.txt", ""), getConfig(2),
+                                                            Collections.singletonList(consumer));
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList("Event 1", "Event 2", "Event 3", "Event 4"), consumer.consumed);
+    Assert.assertTrue(subscriber.hasBacklog());
+    Assert.assertEquals(baseUri + "/events/page/2", subscriber.getNextUriStorer().getNextUri());
+    Assert.assertEquals(Arrays.asList("/events", "/events/page/0", "/events/page/1"), getPageRequests());
+    requests.clear();
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList("Event 1", "Event 2", "Event 3", "Event 4", "Event 5", "Event 6"),
+                        consumer.consumed);
+    Assert.assertFalse(subscriber.hasBacklog());
+    Assert.assertEquals(baseUri + "/events/page/3", subscriber.getNextUriStorer().getNextUri());
+    Assert.assertEquals(Arrays.asList("/events/page/2", "/events/page/3"), getPageRequests());
+  }
+
+  @Test
+  public void testOlderPagesAreFollowedWithoutLastLink() throws Exception {
+    linkLast = false;
+    final RecordingConsumer consumer = new RecordingConsumer();
+    final EventSubscriberImpl subscriber = createSubscriber(createStorer("olderPages.txt", ""), getConfig(0),
+                                                            Collections.singletonList(consumer));
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList("Event 1", "Event 2", "Event 3", "Event 4", "Event 5", "Event 6"),
+                        consumer.consumed);
+    Assert.assertFalse(subscriber.hasBacklog());
+    Assert.assertEquals(baseUri + "/events/page/3", subscriber.getNextUriStorer().getNextUri());
+    Assert.assertEquals(Arrays.asList("/events", "/events/page/1", "/events/page/0", "/events/page/1",
+                                      "/events/page/2", "/events/page/3"), getPageRequests());
+  }
+
+  @Override
+  protected int getEventCount() {
+    return PAGES * EVENTS_PER_PAGE;
+  }
+
+  /**
+   * Serve the pages, each linking to the newer page, to the older page, if any, and, unless disabled, to the oldest
+   * page.
+   */
+  @Override
+  protected String getPage(String path) {
+    final int index;
+    if ("/events".equals(path)) {
+      index = PAGES - 1;
+    }
+    else if (path.startsWith("/events/page/") && StringUtils.isNumeric(path.substring("/events/page/".length()))) {
+      index = Integer.parseInt(path.substring("/events/page/".length()));
+    }
+    else {
+      return null;
+    }
+    final StringBuilder feed = startFeed();
+    if (index >= PAGES) {
+      return endFeed(feed);
+    }
+    feed.append("<link rel=\"previous\" href=\"/events/page/").append(index + 1).append("\"/>");
+    if (index > 0) {
+      feed.append("<link rel=\"next\" href=\"/events/page/").append(index - 1).append("\"/>");
+    }
+    if (linkLast) {
+      feed.append("<link rel=\"last\" href=\"/events/page/0\"/>");
+    }
+    for (int i = EVENTS_PER_PAGE; i > 0; --i) {
+      appendEntry(feed, index * EVENTS_PER_PAGE + i);
+    }
+    return endFeed(feed);
+  }
+
+  private List<String> getPageRequests() {
+    final List<String> pageRequests = new ArrayList<String>();
+    synchronized (requests) {
+      for (String path : requests) {
+        if (getPage(path) != null) {
+          pageRequests.add(path);
+        }
+      }
+    }
+    return pageRequests;
+  }
+
+  private static SubscriptionConfig getConfig(int maxPagesPerPoll) {
+    final SubscriptionConfig subscriptionConfig = new SubscriptionConfig();
+    subscriptionConfig.setMaxPagesPerPoll(maxPagesPerPoll);
+    return subscriptionConfig;
+  }
+
+  private static class RecordingConsumer implements EventConsumer {
+
+    private final List<String> consumed = new ArrayList<String>();
+
+    @Override
+    public void startConsumption() {
+    }
+
+    @Override
+    public void consume(String eventContentType, String eventMessage) {
+      consumed.add(eventMessage);
+    }
+
+    @Override
+    public void endConsumption(boolean prematureEnd) {
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.BatchEventConsumer;
+import com.smartitengineering.events.async.api.ConsumableEvent;
+import com.smartitengineering.events.async.api.UriStorer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests handing the events of a page to a batch consumer against a stub hub serving a page of five events.
+ */
+public class BatchEventConsumerTest extends AbstractStubHubTest {
+
+  @Test
+  public void testBatchesAreCheckpointedAfterConsumption() throws Exception {
+    final FileSystemUriStorer storer = createStorer("batchCheckpoint.txt", baseUri + "/events");
+    final RecordingBatchConsumer consumer = new RecordingBatchConsumer(storer, 0);
+    final EventSubscriberImpl subscriber = createSubscriber(storer, getConfig(2), Collections.singletonList(
+        consumer));
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList(Arrays.asList("event-1", "event-2"), Arrays.asList("event-3", "event-4"),
+                                      Arrays.asList("event-5")), consumer.batches);
+    Assert.assertEquals(Arrays.asList(null, "event-2", "event-4"), consumer.checkpoints);
+    Assert.assertEquals(baseUri + "/events/newer", storer.getNextUri());
+    Assert.assertNull(storer.getLastConsumedEventId());
+    final ConsumableEvent event = consumer.firstEvent;
+    Assert.assertEquals("1", event.getId());
+    Assert.assertEquals("text/plain", event.getContentType());
+    Assert.assertEquals("Event 1", event.getContentAsString());
+    Assert.assertNotNull(event.getCreationDate());
+  }
+
+  @Test
+  public void testFailedBatchIsResumedAfterLastCheckpoint() throws Exception {
+    final FileSystemUriStorer storer = createStorer("batchFailure.txt", baseUri + "/events");
+    final RecordingBatchConsumer consumer = new RecordingBatchConsumer(storer, 2);
+    final EventSubscriberImpl subscriber = createSubscriber(storer, getConfig(2), Collections.singletonList(
+        consumer));
+    subscriber.poll();
+    Assert.assertEquals(Collections.singletonList(Arrays.asList("event-1", "event-2")), consumer.batches);
+    Assert.assertEquals(baseUri + "/events", storer.getNextUri());
+    Assert.assertEquals("event-2", storer.getLastConsumedEventId());
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList(Arrays.asList("event-1", "event-2"), Arrays.asList("event-3", "event-4"),
+                                      Arrays.asList("event-5")), consumer.batches);
+    Assert.assertEquals(baseUri + "/events/newer", storer.getNextUri());
+  }
+
+  @Test
+  public void testPageIsOneBatchByDefault() throws Exception {
+    final FileSystemUriStorer storer = createStorer("pageBatch.txt", baseUri + "/events");
+    final RecordingBatchConsumer consumer = new RecordingBatchConsumer(storer, 0);
+    final EventSubscriberImpl subscriber = createSubscriber(storer, getConfig(0), Collections.singletonList(
+        consumer));
+    subscriber.poll();
+    Assert.assertEquals(Collections.singletonList(Arrays.asList("event-1", "event-2", "event-3", "event-4",
+                                                                "event-5")), consumer.batches);
+  }
+
+  @Override
+  protected int getEventCount() {
+    return 5;
+  }
+
+  private static SubscriptionConfig getConfig(int consumerBatchSize) {
+    final SubscriptionConfig subscriptionConfig = new SubscriptionConfig();
+    subscriptionConfig.setConsumerBatchSize(consumerBatchSize);
+    return subscriptionConfig;
+  }
+
+  /**
+   * Records the ids of the events of each batch it consumes along with the checkpoint stored when the batch was
+   * handed to it, failing once on the n-th batch.
+   */
+  private static class RecordingBatchConsumer implements BatchEventConsumer {
+
+    private final List<List<String>> batches = new ArrayList<List<String>>();
+    private final List<String> checkpoints = new ArrayList<String>();
+    private final UriStorer storer;
+    private final int failOn;
+    private int handed;
+    private ConsumableEvent firstEvent;
+
+    public RecordingBatchConsumer(UriStorer storer, int failOn) {
+      this.storer = storer;
+      this.failOn = failOn;
+    }
+
+    @Override
+    public void consumeBatch(List<? extends ConsumableEvent> events) {
+      if (++handed == failOn) {
+        throw new IllegalStateException("Failing on batch " + handed);
+      }
+      checkpoints.add(storer.getLastConsumedEventId());
+      final List<String> ids = new ArrayList<String>(events.size());
+      for (ConsumableEvent event : events) {
+        ids.add(event.getUniqueId());
+      }
+      batches.add(ids);
+      if (firstEvent == null) {
+        firstEvent = events.get(0);
+      }
+    }
+
+    @Override
+    public void consume(String eventContentType, String eventMessage) {
+      throw new UnsupportedOperationException("Events are to be consumed in batches");
+    }
+
+    @Override
+    public void startConsumption() {
+    }
+
+    @Override
+    public void endConsumption(boolean prematureEnd) {
+    }
+  }
+}
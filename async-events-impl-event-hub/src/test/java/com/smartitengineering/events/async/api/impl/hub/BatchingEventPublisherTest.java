@@ -0,0 +1,206 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.EventPublicationException;
+import com.smartitengineering.events.async.api.EventPublisher;
+import com.smartitengineering.events.async.api.PublicationCallback;
+import com.smartitengineering.events.async.api.PublicationResult;
+import com.smartitengineering.events.async.api.PublishableEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests coalescing of single publications into batches.
+ */
+public class BatchingEventPublisherTest {
+
+  @Test
+  public void testConcurrentPublicationsAreBatched() throws Exception {
+    final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+    final EventPublisher decoratee = new EventPublisher() {
+
+      @Override
+      public boolean publishEvent(String eventContentType, String eventMessage) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+        batchSizes.add(events.size());
+        List<PublicationResult> results = new ArrayList<PublicationResult>();
+        for (PublishableEvent event : events) {
+          results.add(new PublicationResult(event, !"fail".equals(event.getMessage()), null));
+        }
+        return results;
+      }
+
+      @Override
+      public Future<Boolean> publishEventAsync(String eventContentType, String eventMessage,
+                                               PublicationCallback callback) {
+        throw new UnsupportedOperationException();
+      }
+    };
+    final BatchingEventPublisher publisher = new BatchingEventPublisher(decoratee);
+    final int count = 50;
+    final CountDownLatch latch = new CountDownLatch(1);
+    ExecutorService service = Executors.newFixedThreadPool(count);
+    List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+    for (int i = 0; i < count; ++i) {
+      final String message = i == 0 ? "fail" : "Message " + i;
+      futures.add(service.submit(new Callable<Boolean>() {
+
+        @Override
+        public Boolean call() throws Exception {
+          latch.await();
+          return publisher.publishEvent("text/plain", message);
+        }
+      }));
+    }
+    latch.countDown();
+    int published = 0;
+    for (Future<Boolean> future : futures) {
+      if (future.get().booleanValue()) {
+        published++;
+      }
+    }
+    service.shutdown();
+    publisher.shutdown();
+    Assert.assertEquals(count - 1, published);
+    int total = 0;
+    for (Integer size : batchSizes) {
+      total += size;
+    }
+    Assert.assertEquals(count, total);
+    Assert.assertTrue(batchSizes.size() < count);
+  }
+
+  @Test
+  public void testPublicationIsRejectedWhenQueueIsFull() throws Exception {
+    final GatedPublisher decoratee = new GatedPublisher();
+    final BatchingEventPublisher publisher = new BatchingEventPublisher(decoratee);
+    publisher.setQueueCapacity(1);
+    publisher.setBlockWhenFull(false);
+    final Future<Boolean> first = publisher.publishEventAsync("text/plain", "Message 1", null);
+    Assert.assertTrue(decoratee.entered.await(5, TimeUnit.SECONDS));
+    final Future<Boolean> second = publisher.publishEventAsync("text/plain", "Message 2", null);
+    try {
+      publisher.publishEventAsync("text/plain", "Message 3", null);
+      Assert.fail("Publication should have been rejected");
+    }
+    catch (EventPublicationException ex) {
+    }
+    decoratee.gate.countDown();
+    Assert.assertTrue(first.get(5, TimeUnit.SECONDS));
+    Assert.assertTrue(second.get(5, TimeUnit.SECONDS));
+    publisher.shutdown();
+    Assert.assertEquals(2, decoratee.published.get());
+  }
+
+  @Test
+  public void testShutdownWaitsForBatchInProgress() throws Exception {
+    final GatedPublisher decoratee = new GatedPublisher();
+    final BatchingEventPublisher publisher = new BatchingEventPublisher(decoratee);
+    final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+    futures.add(publisher.publishEventAsync("text/plain", "Message 0", null));
+    Assert.assertTrue(decoratee.entered.await(5, TimeUnit.SECONDS));
+    for (int i = 1; i < 10; ++i) {
+      futures.add(publisher.publishEventAsync("text/plain", "Message " + i, null));
+    }
+    final Thread opener = new Thread(new Runnable() {
+
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(200);
+        }
+        catch (InterruptedException ex) {
+        }
+        decoratee.gate.countDown();
+      }
+    });
+    opener.start();
+    publisher.shutdown();
+    for (Future<Boolean> future : futures) {
+      Assert.assertTrue(future.isDone());
+      Assert.assertTrue(future.get());
+    }
+    Assert.assertEquals(10, decoratee.published.get());
+    Assert.assertEquals(1, decoratee.maxConcurrent.get());
+  }
+
+  /**
+   * Holds batches at a gate, recording how many were published concurrently at most.
+   */
+  private static class GatedPublisher implements EventPublisher {
+
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private final AtomicInteger published = new AtomicInteger();
+
+    @Override
+    public boolean publishEvent(String eventContentType, String eventMessage) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+      final int current = concurrent.incrementAndGet();
+      int max = maxConcurrent.get();
+      while (current > max && !maxConcurrent.compareAndSet(max, current)) {
+        max = maxConcurrent.get();
+      }
+      entered.countDown();
+      try {
+        gate.await();
+      }
+      catch (InterruptedException ex) {
+        throw new EventPublicationException(ex);
+      }
+      finally {
+        concurrent.decrementAndGet();
+      }
+      List<PublicationResult> results = new ArrayList<PublicationResult>();
+      for (PublishableEvent event : events) {
+        published.incrementAndGet();
+        results.add(new PublicationResult(event, true, null));
+      }
+      return results;
+    }
+
+    @Override
+    public Future<Boolean> publishEventAsync(String eventContentType, String eventMessage,
+                                             PublicationCallback callback) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
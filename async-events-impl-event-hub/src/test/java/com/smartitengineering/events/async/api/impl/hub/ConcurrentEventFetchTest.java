@@ -0,0 +1,146 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.EventConsumer;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests fetching the events of a page concurrently from a stub hub that answers requests for older events slower,
+ * so that they complete in a different order than the entries.
+ */
+public class ConcurrentEventFetchTest extends AbstractStubHubTest {
+
+  private static final int EVENTS = 8;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private volatile int failingEvent;
+
+  @Test
+  public void testEventsAreConsumedInEntryOrder() throws Exception {
+    final RecordingConsumer consumer = new RecordingConsumer();
+    final EventSubscriberImpl subscriber = createSubscriber("concurrentFetch.txt", getConfig(4),
+                                                            Collections.singletonList(consumer));
+    subscriber.poll();
+    Assert.assertEquals(getExpectedEvents(), consumer.consumed);
+    Assert.assertEquals(EVENTS, getEventRequests().size());
+    Assert.assertTrue("Events were not fetched concurrently", maxInFlight.get() > 1);
+    Assert.assertTrue(maxInFlight.get() <= 4);
+  }
+
+  @Test
+  public void testEventsAreFetchedOneAfterAnotherWithoutParallelism() throws Exception {
+    final RecordingConsumer consumer = new RecordingConsumer();
+    final EventSubscriberImpl subscriber = createSubscriber("sequentialFetch.txt", getConfig(1),
+                                                            Collections.singletonList(consumer));
+    subscriber.poll();
+    Assert.assertEquals(getExpectedEvents(), consumer.consumed);
+    Assert.assertEquals(1, maxInFlight.get());
+  }
+
+  @Test
+  public void testPageIsRetriedWhenAFetchFails() throws Exception {
+    failingEvent = 3;
+    final RecordingConsumer consumer = new RecordingConsumer();
+    final EventSubscriberImpl subscriber = createSubscriber("failedFetch.txt", getConfig(4),
+                                                            Collections.singletonList(consumer));
+    subscriber.poll();
+    Assert.assertTrue(consumer.consumed.isEmpty());
+    Assert.assertEquals(baseUri + "/events", subscriber.getNextUriStorer().getNextUri());
+    Assert.assertNull(subscriber.getNextUriStorer().getLastConsumedEventId());
+    subscriber.poll();
+    Assert.assertEquals(getExpectedEvents(), consumer.consumed);
+    Assert.assertEquals(baseUri + "/events/newer", subscriber.getNextUriStorer().getNextUri());
+  }
+
+  @Override
+  protected int getEventCount() {
+    return EVENTS;
+  }
+
+  /**
+   * Answer the request for an event after a delay that is the longer the older the event is, failing the request
+   * for the failing event once.
+   */
+  @Override
+  protected void respondEvent(HttpExchange exchange, int id) throws IOException {
+    final int current = inFlight.incrementAndGet();
+    try {
+      synchronized (maxInFlight) {
+        if (current > maxInFlight.get()) {
+          maxInFlight.set(current);
+        }
+      }
+      try {
+        Thread.sleep((EVENTS + 1 - id) * 30);
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      if (id == failingEvent) {
+        failingEvent = 0;
+        exchange.sendResponseHeaders(500, -1);
+        return;
+      }
+      super.respondEvent(exchange, id);
+    }
+    finally {
+      inFlight.decrementAndGet();
+    }
+  }
+
+  private static SubscriptionConfig getConfig(int parallelism) {
+    final SubscriptionConfig subscriptionConfig = new SubscriptionConfig();
+    subscriptionConfig.setEntryFetchParallelism(parallelism);
+    return subscriptionConfig;
+  }
+
+  private static List<String> getExpectedEvents() {
+    final List<String> expected = new ArrayList<String>();
+    for (int i = 1; i <= EVENTS; ++i) {
+      expected.add("Event " + i);
+    }
+    return expected;
+  }
+
+  private static class RecordingConsumer implements EventConsumer {
+
+    private final List<String> consumed = new ArrayList<String>();
+
+    @Override
+    public void startConsumption() {
+    }
+
+    @Override
+    public void consume(String eventContentType, String eventMessage) {
+      consumed.add(eventMessage);
+    }
+
+    @Override
+    public void endConsumption(boolean prematureEnd) {
+    }
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.EventConsumer;
+import com.smartitengineering.util.rest.client.ConnectionConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests polling the stored page with conditional requests against a stub hub that serves a page with an
+ * <tt>ETag</tt> and answers <tt>304 Not Modified</tt> when it is sent back.
+ */
+public class ConditionalGetTest {
+
+  private static final String ETAG = "\"page-1\"";
+  private static final String NEWER_ETAG = "\"page-2\"";
+  private HttpServer server;
+  private String baseUri;
+  private final List<String> responses = Collections.synchronizedList(new ArrayList<String>());
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    baseUri = "http://localhost:" + server.getAddress().getPort();
+    server.createContext("/", new HttpHandler() {
+
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          respond(exchange);
+        }
+        finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testPageIsRetriedAfterConsumerFailure() throws Exception {
+    final FailingConsumer consumer = new FailingConsumer(1);
+    final EventSubscriberImpl subscriber = createSubscriber("failFirst.txt", consumer);
+    subscriber.poll();
+    Assert.assertTrue(consumer.consumed.isEmpty());
+    Assert.assertEquals(Collections.singletonList("/events 200"), responses);
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList("Event 1", "Event 2"), consumer.consumed);
+    Assert.assertEquals(Arrays.asList("/events 200", "/events 200", "/events/newer 200"), responses);
+    subscriber.poll();
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList("/events 200", "/events 200", "/events/newer 200", "/events/newer 200",
+                                      "/events/newer 304"), responses);
+    Assert.assertEquals(2, consumer.consumed.size());
+    Assert.assertEquals(1, subscriber.getConditionalGetNotModifiedCount());
+  }
+
+  @Test
+  public void testPageIsResumedAfterConsumerFailureMidPage() throws Exception {
+    final FailingConsumer consumer = new FailingConsumer(2);
+    final EventSubscriberImpl subscriber = createSubscriber("failSecond.txt", consumer);
+    subscriber.poll();
+    Assert.assertEquals(Collections.singletonList("Event 1"), consumer.consumed);
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList("Event 1", "Event 2"), consumer.consumed);
+    Assert.assertEquals(Arrays.asList("/events 200", "/events 200", "/events/newer 200"), responses);
+    subscriber.poll();
+    subscriber.poll();
+    Assert.assertEquals("/events/newer 304", responses.get(responses.size() - 1));
+    Assert.assertEquals(2, consumer.consumed.size());
+  }
+
+  protected EventSubscriberImpl createSubscriber(String storeFile, EventConsumer consumer) throws Exception {
+    final FileSystemUriStorer storer = new FileSystemUriStorer("./target/conditional-get/", storeFile);
+    storer.storeNextUri(baseUri + "/events");
+    ConnectionConfig config = new ConnectionConfig();
+    config.setBasicUri("");
+    config.setContextPath("/");
+    config.setHost("localhost");
+    config.setPort(server.getAddress().getPort());
+    final EventSubscriberImpl subscriber = new EventSubscriberImpl("0/1 * * * * ?", baseUri + "/events", config,
+                                                                   storer, Collections.singletonList(consumer));
+    final SubscriptionConfig subscriptionConfig = new SubscriptionConfig();
+    subscriptionConfig.setConditionalGet(true);
+    subscriber.setSubscriptionConfig(subscriptionConfig);
+    return subscriber;
+  }
+
+  protected void respond(HttpExchange exchange) throws IOException {
+    final String path = exchange.getRequestURI().getPath();
+    if ("/events".equals(path) || "/events/newer".equals(path)) {
+      final boolean newer = "/events/newer".equals(path);
+      final String etag = newer ? NEWER_ETAG : ETAG;
+      if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        responses.add(path + " 304");
+        exchange.sendResponseHeaders(304, -1);
+        return;
+      }
+      responses.add(path + " 200");
+      exchange.getResponseHeaders().set("ETag", etag);
+      write(exchange, "application/atom+xml", getFeed(newer ? 0 : 2));
+    }
+    else if (path.startsWith("/events/")) {
+      final String id = path.substring("/events/".length());
+      write(exchange, "application/json", new StringBuilder("{\"id\":\"").append(id).append(
+          "\",\"uniqueId\":\"event-").append(id).append(
+          "\",\"content-type\":\"text/plain\",\"content-as-string\":\"Event ").append(id).append(
+          "\",\"created-at\":\"2011-01-01T00:00:00Z\"}").toString());
+    }
+    else {
+      exchange.sendResponseHeaders(404, -1);
+    }
+  }
+
+  /**
+   * A page of the feed with the newest events first, as the hub serves them, linking to the newer page by a
+   * relative link.
+   */
+  protected String getFeed(int entries) {
+    final StringBuilder feed = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    feed.append("<feed xmlns=\"http://www.w3.org/2005/Atom\"><id>events</id><title>Events</title>");
+    feed.append("<updated>2011-01-01T00:00:00Z</updated>");
+    if (entries > 0) {
+      feed.append("<link rel=\"previous\" href=\"/events/newer\"/>");
+    }
+    for (int i = entries; i > 0; --i) {
+      feed.append("<entry><id>").append(i).append("</id><title>Event ").append(i).append("</title>");
+      feed.append("<updated>2011-01-01T00:00:00Z</updated>");
+      feed.append("<link rel=\"alternate\" type=\"application/json\" href=\"").append(baseUri).append("/events/").
+          append(i).append("\"/></entry>");
+    }
+    return feed.append("</feed>").toString();
+  }
+
+  private static void write(HttpExchange exchange, String contentType, String body) throws IOException {
+    final byte[] bytes = body.getBytes("UTF-8");
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(200, bytes.length);
+    final OutputStream stream = exchange.getResponseBody();
+    stream.write(bytes);
+    stream.flush();
+  }
+
+  /**
+   * Fails once, on the n-th event it is handed.
+   */
+  private static class FailingConsumer implements EventConsumer {
+
+    private final List<String> consumed = new ArrayList<String>();
+    private final int failOn;
+    private int handed;
+
+    public FailingConsumer(int failOn) {
+      this.failOn = failOn;
+    }
+
+    @Override
+    public void startConsumption() {
+    }
+
+    @Override
+    public void consume(String eventContentType, String eventMessage) {
+      if (++handed == failOn) {
+        throw new IllegalStateException("Failing on event " + handed);
+      }
+      consumed.add(eventMessage);
+    }
+
+    @Override
+    public void endConsumption(boolean prematureEnd) {
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.EventConsumer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests dispatching events to each consumer from its own queue, with a consumer that blocks on its first event till
+ * released.
+ */
+public class ConsumerDispatchTest extends AbstractStubHubTest {
+
+  private static final List<String> EVENTS = Arrays.asList("Event 1", "Event 2", "Event 3", "Event 4");
+
+  @Test
+  public void testSlowConsumerDoesNotStallOthers() throws Exception {
+    final RecordingConsumer slowConsumer = new RecordingConsumer(true);
+    final RecordingConsumer fastConsumer = new RecordingConsumer(false);
+    final EventSubscriberImpl subscriber = createSubscriber("slowConsumer.txt", getConfig(8), Arrays.asList(
+        slowConsumer, fastConsumer));
+    final Thread poller = startPoll(subscriber);
+    Assert.assertTrue(fastConsumer.awaitConsumed(EVENTS.size()));
+    Assert.assertEquals(EVENTS, fastConsumer.getConsumed());
+    Assert.assertTrue(slowConsumer.getConsumed().isEmpty());
+    Assert.assertTrue(poller.isAlive());
+    slowConsumer.release();
+    poller.join(5000);
+    Assert.assertFalse(poller.isAlive());
+    for (RecordingConsumer consumer : Arrays.asList(slowConsumer, fastConsumer)) {
+      Assert.assertTrue(consumer.ended.await(5, TimeUnit.SECONDS));
+      Assert.assertEquals(EVENTS, consumer.getConsumed());
+      Assert.assertEquals(1, consumer.started.get());
+      Assert.assertFalse(consumer.prematureEnd);
+    }
+    Assert.assertEquals(baseUri + "/events/newer", subscriber.getNextUriStorer().getNextUri());
+  }
+
+  @Test
+  public void testFullQueueHoldsBackDispatch() throws Exception {
+    final RecordingConsumer slowConsumer = new RecordingConsumer(true);
+    final RecordingConsumer fastConsumer = new RecordingConsumer(false);
+    final EventSubscriberImpl subscriber = createSubscriber("fullQueue.txt", getConfig(1), Arrays.asList(
+        slowConsumer, fastConsumer));
+    final Thread poller = startPoll(subscriber);
+    Assert.assertFalse(fastConsumer.awaitConsumed(EVENTS.size()));
+    Assert.assertTrue(fastConsumer.getConsumed().size() < EVENTS.size());
+    Assert.assertTrue(poller.isAlive());
+    slowConsumer.release();
+    poller.join(5000);
+    Assert.assertFalse(poller.isAlive());
+    for (RecordingConsumer consumer : Arrays.asList(slowConsumer, fastConsumer)) {
+      Assert.assertTrue(consumer.ended.await(5, TimeUnit.SECONDS));
+      Assert.assertEquals(EVENTS, consumer.getConsumed());
+    }
+  }
+
+  @Override
+  protected int getEventCount() {
+    return EVENTS.size();
+  }
+
+  private static SubscriptionConfig getConfig(int consumerQueueCapacity) {
+    final SubscriptionConfig subscriptionConfig = new SubscriptionConfig();
+    subscriptionConfig.setConsumerQueueCapacity(consumerQueueCapacity);
+    return subscriptionConfig;
+  }
+
+  private static Thread startPoll(final EventSubscriberImpl subscriber) {
+    final Thread poller = new Thread(new Runnable() {
+
+      @Override
+      public void run() {
+        subscriber.poll();
+      }
+    });
+    poller.start();
+    return poller;
+  }
+
+  private static class RecordingConsumer implements EventConsumer {
+
+    private final List<String> consumed = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch released;
+    private final CountDownLatch ended = new CountDownLatch(1);
+    private final AtomicInteger started = new AtomicInteger();
+    private volatile boolean prematureEnd = true;
+
+    public RecordingConsumer(boolean blocking) {
+      released = new CountDownLatch(blocking ? 1 : 0);
+    }
+
+    @Override
+    public void startConsumption() {
+      started.incrementAndGet();
+    }
+
+    @Override
+    public void consume(String eventContentType, String eventMessage) {
+      try {
+        released.await();
+      }
+      catch (InterruptedException ex) {
+        throw new IllegalStateException(ex);
+      }
+      consumed.add(eventMessage);
+    }
+
+    @Override
+    public void endConsumption(boolean prematureEnd) {
+      this.prematureEnd = prematureEnd;
+      ended.countDown();
+    }
+
+    public void release() {
+      released.countDown();
+    }
+
+    public List<String> getConsumed() {
+      synchronized (consumed) {
+        return new ArrayList<String>(consumed);
+      }
+    }
+
+    /**
+     * Wait up to a second for the consumer to have consumed the number of events.
+     */
+    public boolean awaitConsumed(int count) throws InterruptedException {
+      final long deadline = System.currentTimeMillis() + 1000;
+      while (consumed.size() < count && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      return consumed.size() >= count;
+    }
+  }
+}
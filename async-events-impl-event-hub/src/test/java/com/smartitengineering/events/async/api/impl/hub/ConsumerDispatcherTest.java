@@ -0,0 +1,81 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.EventConsumer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests stopping the worker of a consumer dispatcher.
+ */
+public class ConsumerDispatcherTest {
+
+  @Test
+  public void testShutdownDeliversDispatchedTasksAndStopsWorker() throws Exception {
+    final CountDownLatch released = new CountDownLatch(1);
+    final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+    final List<Thread> workers = new ArrayList<Thread>();
+    final ConsumerDispatcher dispatcher = new ConsumerDispatcher(new EventConsumer() {
+
+      @Override
+      public void startConsumption() {
+        try {
+          released.await();
+        }
+        catch (InterruptedException ex) {
+          throw new IllegalStateException(ex);
+        }
+        calls.add("start");
+      }
+
+      @Override
+      public void consume(String eventContentType, String eventMessage) {
+      }
+
+      @Override
+      public void endConsumption(boolean prematureEnd) {
+        calls.add("end " + prematureEnd);
+      }
+    }, 1, new ThreadFactory() {
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread worker = new Thread(runnable);
+        worker.setDaemon(true);
+        workers.add(worker);
+        return worker;
+      }
+    });
+    dispatcher.startConsumption();
+    //Fills the queue while the worker is held up by the consumer
+    dispatcher.endConsumption(false);
+    dispatcher.shutdown();
+    released.countDown();
+    workers.get(0).join(5000);
+    Assert.assertFalse(workers.get(0).isAlive());
+    Assert.assertEquals(Arrays.asList("start", "end false"), calls);
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the bounded duplicate event filter.
+ */
+public class DuplicateEventFilterTest {
+
+  @Test
+  public void testDuplicatesAreSuppressed() {
+    DuplicateEventFilter filter = new DuplicateEventFilter(10);
+    Assert.assertFalse(filter.isDuplicate("a"));
+    filter.record("a");
+    filter.record("b");
+    Assert.assertTrue(filter.isDuplicate("a"));
+    Assert.assertTrue(filter.isDuplicate("b"));
+    Assert.assertFalse(filter.isDuplicate("c"));
+    Assert.assertEquals(2, filter.getSuppressedCount());
+  }
+
+  @Test
+  public void testOldestIdsAreForgotten() {
+    final int capacity = 100;
+    DuplicateEventFilter filter = new DuplicateEventFilter(capacity);
+    for (int i = 0; i < capacity * 10; ++i) {
+      filter.record("event-" + i);
+      Assert.assertTrue(filter.size() <= capacity);
+    }
+    for (int i = 0; i < capacity * 9; ++i) {
+      Assert.assertFalse(filter.isDuplicate("event-" + i));
+    }
+    for (int i = capacity * 9; i < capacity * 10; ++i) {
+      Assert.assertTrue(filter.isDuplicate("event-" + i));
+    }
+    Assert.assertEquals(capacity, filter.size());
+  }
+}
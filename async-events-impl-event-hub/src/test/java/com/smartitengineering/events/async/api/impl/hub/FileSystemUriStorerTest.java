@@ -0,0 +1,43 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests persistence of checkpoints by the file system based URI storer.
+ */
+public class FileSystemUriStorerTest {
+
+  private static final String FOLDER = "./target/store/";
+
+  @Test
+  public void testCheckpointIsReadBack() {
+    FileSystemUriStorer storer = new FileSystemUriStorer(FOLDER, "checkpointTest.txt");
+    storer.storeCheckpoint("http://localhost/events?before=2", "event-2");
+    FileSystemUriStorer reloaded = new FileSystemUriStorer(FOLDER, "checkpointTest.txt");
+    Assert.assertEquals("http://localhost/events?before=2", reloaded.getNextUri());
+    Assert.assertEquals("event-2", reloaded.getLastConsumedEventId());
+    reloaded.storeNextUri("http://localhost/events?before=3");
+    reloaded = new FileSystemUriStorer(FOLDER, "checkpointTest.txt");
+    Assert.assertEquals("http://localhost/events?before=3", reloaded.getNextUri());
+    Assert.assertNull(reloaded.getLastConsumedEventId());
+  }
+}
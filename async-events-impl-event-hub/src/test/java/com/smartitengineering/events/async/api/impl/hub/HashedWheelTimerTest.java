@@ -0,0 +1,90 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests expiry and cancellation of timeouts of the hashed wheel timer.
+ */
+public class HashedWheelTimerTest {
+
+  @Test
+  public void testTimeoutsExpireNotBeforeTheirDelay() throws Exception {
+    final HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 8);
+    try {
+      final int timeouts = 50;
+      final CountDownLatch latch = new CountDownLatch(timeouts);
+      final AtomicLong earlyExpiries = new AtomicLong();
+      for (int i = 0; i < timeouts; ++i) {
+        final long delay = i * 7;
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        timer.newTimeout(new Runnable() {
+
+          @Override
+          public void run() {
+            if (System.nanoTime() < deadline) {
+              earlyExpiries.incrementAndGet();
+            }
+            latch.countDown();
+          }
+        }, delay, TimeUnit.MILLISECONDS);
+      }
+      Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+      Assert.assertEquals(0, earlyExpiries.get());
+    }
+    finally {
+      timer.stop();
+    }
+  }
+
+  @Test
+  public void testCancelledTimeoutDoesNotExpire() throws Exception {
+    final HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 8);
+    try {
+      final AtomicBoolean expired = new AtomicBoolean();
+      final CountDownLatch latch = new CountDownLatch(1);
+      HashedWheelTimer.Timeout timeout = timer.newTimeout(new Runnable() {
+
+        @Override
+        public void run() {
+          expired.set(true);
+        }
+      }, 50, TimeUnit.MILLISECONDS);
+      timer.newTimeout(new Runnable() {
+
+        @Override
+        public void run() {
+          latch.countDown();
+        }
+      }, 200, TimeUnit.MILLISECONDS);
+      timeout.cancel();
+      Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+      Assert.assertFalse(expired.get());
+    }
+    finally {
+      timer.stop();
+    }
+  }
+}
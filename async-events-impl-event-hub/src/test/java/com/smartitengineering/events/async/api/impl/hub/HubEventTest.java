@@ -0,0 +1,50 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests decoding of events read from the hub.
+ */
+public class HubEventTest {
+
+  private static final String CONTENT = "Message with non ASCII \u00e9\u4e2d\ud83d\ude00";
+
+  @Test
+  public void testContentIsDecodedAsUtf8Bytes() throws Exception {
+    final String json = "{\"id\":\"1\",\"uniqueId\":\"u1\",\"content-type\":\"text/plain\",\"content-as-string\":\"" +
+        CONTENT + "\",\"created-at\":\"2011-01-01\"}";
+    HubEvent event = new ObjectMapper().readValue(json, HubEvent.class);
+    Assert.assertEquals("u1", event.getUniqueId());
+    Assert.assertEquals("text/plain", event.getContentType());
+    Assert.assertEquals(CONTENT, event.getContentAsString());
+    InputStream stream = event.getContentAsStream();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int read;
+    while ((read = stream.read()) >= 0) {
+      bytes.write(read);
+    }
+    Assert.assertArrayEquals(CONTENT.getBytes("UTF-8"), bytes.toByteArray());
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.EventConsumer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests decoding events embedded in the content of feed entries against a stub hub that embeds the events in
+ * all entries but those without content.
+ */
+public class InlineEventContentTest extends AbstractStubHubTest {
+
+  private final List<Integer> entriesWithoutContent = new ArrayList<Integer>();
+
+  @Test
+  public void testInlineEventsAreNotFetched() throws Exception {
+    final RecordingConsumer consumer = new RecordingConsumer();
+    final EventSubscriberImpl subscriber = createSubscriber("inlineContent.txt", getConfig(true),
+                                                            Collections.singletonList(consumer));
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList("Event 1", "Event 2", "Event 3"), consumer.consumed);
+    Assert.assertTrue(getEventRequests().isEmpty());
+  }
+
+  @Test
+  public void testEntriesWithoutContentAreFetched() throws Exception {
+    entriesWithoutContent.add(2);
+    final RecordingConsumer consumer = new RecordingConsumer();
+    final EventSubscriberImpl subscriber = createSubscriber("partialInlineContent.txt", getConfig(true),
+                                                            Collections.singletonList(consumer));
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList("Event 1", "Event 2", "Event 3"), consumer.consumed);
+    Assert.assertEquals(Collections.singletonList("/events/2"), getEventRequests());
+  }
+
+  @Test
+  public void testInlineEventsAreFetchedWhenDisabled() throws Exception {
+    final RecordingConsumer consumer = new RecordingConsumer();
+    final EventSubscriberImpl subscriber = createSubscriber("inlineContentDisabled.txt", getConfig(false),
+                                                            Collections.singletonList(consumer));
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList("Event 1", "Event 2", "Event 3"), consumer.consumed);
+    Assert.assertEquals(3, getEventRequests().size());
+  }
+
+  @Override
+  protected int getEventCount() {
+    return 3;
+  }
+
+  @Override
+  protected void appendEntryContent(StringBuilder feed, int id) {
+    if (!entriesWithoutContent.contains(id)) {
+      feed.append("<content type=\"text\">").append(StringEscapeUtils.escapeXml(getEvent(id))).append("</content>");
+    }
+  }
+
+  private static SubscriptionConfig getConfig(boolean inlineEventContent) {
+    final SubscriptionConfig subscriptionConfig = new SubscriptionConfig();
+    subscriptionConfig.setInlineEventContent(inlineEventContent);
+    return subscriptionConfig;
+  }
+
+  private static class RecordingConsumer implements EventConsumer {
+
+    private final List<String> consumed = new ArrayList<String>();
+
+    @Override
+    public void startConsumption() {
+    }
+
+    @Override
+    public void consume(String eventContentType, String eventMessage) {
+      consumed.add(eventMessage);
+    }
+
+    @Override
+    public void endConsumption(boolean prematureEnd) {
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests recovery and compaction of the journal based URI storer.
+ */
+public class JournalUriStorerTest {
+
+  private static final String FOLDER = "./target/store/";
+
+  @Test
+  public void testLastValidRecordIsRecovered() throws Exception {
+    final File journal = new File(FOLDER, "recoveryTest.journal");
+    journal.delete();
+    JournalUriStorer storer = new JournalUriStorer(FOLDER, "recoveryTest.journal");
+    storer.setRecordSize(256);
+    storer.storeCheckpoint("http://localhost/events?before=1", "event-1");
+    storer.storeCheckpoint("http://localhost/events?before=2", "event-2");
+    storer.close();
+    JournalUriStorer reloaded = new JournalUriStorer(FOLDER, "recoveryTest.journal");
+    Assert.assertEquals("http://localhost/events?before=2", reloaded.getNextUri());
+    Assert.assertEquals("event-2", reloaded.getLastConsumedEventId());
+    reloaded.close();
+    //Simulate a torn write of the last record
+    RandomAccessFile file = new RandomAccessFile(journal, "rw");
+    file.seek(JournalUriStorer.HEADER_SIZE + 256 + 40);
+    file.write(new byte[]{1, 2, 3});
+    file.close();
+    reloaded = new JournalUriStorer(FOLDER, "recoveryTest.journal");
+    Assert.assertEquals("http://localhost/events?before=1", reloaded.getNextUri());
+    Assert.assertEquals("event-1", reloaded.getLastConsumedEventId());
+    reloaded.storeNextUri("http://localhost/events?before=3");
+    reloaded.close();
+    reloaded = new JournalUriStorer(FOLDER, "recoveryTest.journal");
+    Assert.assertEquals("http://localhost/events?before=3", reloaded.getNextUri());
+    Assert.assertNull(reloaded.getLastConsumedEventId());
+    reloaded.close();
+  }
+
+  @Test
+  public void testJournalIsCompacted() throws Exception {
+    final File journal = new File(FOLDER, "compactionTest.journal");
+    journal.delete();
+    JournalUriStorer storer = new JournalUriStorer(FOLDER, "compactionTest.journal");
+    storer.setRecordSize(256);
+    storer.setMaxRecords(4);
+    storer.setSyncPolicy(JournalUriStorer.SyncPolicy.NEVER);
+    for (int i = 0; i < 10; ++i) {
+      storer.storeCheckpoint("http://localhost/events?before=" + i, "event-" + i);
+    }
+    storer.close();
+    Assert.assertTrue(journal.length() <= JournalUriStorer.HEADER_SIZE + 4 * 256);
+    JournalUriStorer reloaded = new JournalUriStorer(FOLDER, "compactionTest.journal");
+    Assert.assertEquals("http://localhost/events?before=9", reloaded.getNextUri());
+    Assert.assertEquals("event-9", reloaded.getLastConsumedEventId());
+    reloaded.close();
+  }
+
+  @Test
+  public void testJournalIsReopenedAfterInterrupt() throws Exception {
+    final File journal = new File(FOLDER, "interruptTest.journal");
+    journal.delete();
+    JournalUriStorer storer = new JournalUriStorer(FOLDER, "interruptTest.journal");
+    storer.setRecordSize(256);
+    storer.storeCheckpoint("http://localhost/events?before=1", "event-1");
+    //Writing from an interrupted thread closes the channel
+    Thread.currentThread().interrupt();
+    try {
+      storer.storeCheckpoint("http://localhost/events?before=2", "event-2");
+      Assert.fail("Write should fail on an interrupted thread");
+    }
+    catch (RuntimeException ex) {
+      //Expected
+    }
+    finally {
+      Thread.interrupted();
+    }
+    storer.storeCheckpoint("http://localhost/events?before=3", "event-3");
+    storer.close();
+    JournalUriStorer reloaded = new JournalUriStorer(FOLDER, "interruptTest.journal");
+    Assert.assertEquals("http://localhost/events?before=3", reloaded.getNextUri());
+    Assert.assertEquals("event-3", reloaded.getLastConsumedEventId());
+    reloaded.close();
+  }
+}
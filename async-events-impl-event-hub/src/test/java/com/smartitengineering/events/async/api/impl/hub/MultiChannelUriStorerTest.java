@@ -0,0 +1,82 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.UriStorer;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that the cursors of channels are stored in files of their own and are reloaded independently.
+ */
+public class MultiChannelUriStorerTest {
+
+  private static final String FOLDER = "./target/store/";
+
+  @Test
+  public void testChannelsAreCheckpointedIndependently() throws Exception {
+    final File cursors = new File(FOLDER, "multiChannelTest");
+    final File[] files = cursors.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    MultiChannelUriStorer storer = new MultiChannelUriStorer(FOLDER, "multiChannelTest");
+    final UriStorer orders = storer.getChannelStorer("orders");
+    Assert.assertSame(orders, storer.getChannelStorer("orders"));
+    orders.storeCheckpoint("http://localhost/channels/orders/events?before=1", "event-1");
+    storer.getChannelStorer("http://localhost/channels/users").storeNextUri("http://localhost/channels/users/events");
+    Assert.assertEquals(2, cursors.list().length);
+    orders.storeNextUri("http://localhost/channels/orders/events?before=2");
+    storer = new MultiChannelUriStorer(FOLDER, "multiChannelTest");
+    Assert.assertEquals(new HashSet<String>(Arrays.asList("orders", "http://localhost/channels/users")),
+                        storer.getChannels());
+    final UriStorer reloaded = storer.getChannelStorer("orders");
+    Assert.assertEquals("http://localhost/channels/orders/events?before=2", reloaded.getNextUri());
+    Assert.assertNull(reloaded.getLastConsumedEventId());
+    Assert.assertEquals("http://localhost/channels/users/events",
+                        storer.getChannelStorer("http://localhost/channels/users").getNextUri());
+    Assert.assertNull(storer.getChannelStorer("payments").getNextUri());
+  }
+
+  @Test
+  public void testClosedChannelStorerIgnoresCheckpoints() throws Exception {
+    final File cursors = new File(FOLDER, "closedChannelTest");
+    final File[] files = cursors.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    final MultiChannelUriStorer storer = new MultiChannelUriStorer(FOLDER, "closedChannelTest");
+    final UriStorer orders = storer.getChannelStorer("orders");
+    orders.storeCheckpoint("http://localhost/channels/orders/events?before=1", "event-1");
+    storer.closeChannelStorer("orders");
+    orders.storeNextUri("http://localhost/channels/orders/events?before=2");
+    final UriStorer reopened = storer.getChannelStorer("orders");
+    Assert.assertNotSame(orders, reopened);
+    Assert.assertEquals("http://localhost/channels/orders/events?before=1", reopened.getNextUri());
+    Assert.assertEquals("event-1", reopened.getLastConsumedEventId());
+    storer.closeChannelStorer("payments");
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.EventPublicationException;
+import com.smartitengineering.events.async.api.EventPublisher;
+import com.smartitengineering.events.async.api.PublicationCallback;
+import com.smartitengineering.events.async.api.PublicationResult;
+import com.smartitengineering.events.async.api.PublishableEvent;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests appending events to the outbox and draining them to the decorated publisher.
+ */
+public class OutboxEventPublisherTest {
+
+  private static final String FOLDER = "./target/outbox/";
+
+  @Test
+  public void testEventsAreDrainedInOrderOnceAvailable() throws Exception {
+    final File folder = cleanFolder("drainTest");
+    final RecordingPublisher decoratee = new RecordingPublisher();
+    decoratee.available = false;
+    OutboxEventPublisher publisher = new OutboxEventPublisher(decoratee, folder.getPath());
+    publisher.setSegmentBytes(128);
+    publisher.setDrainBatchSize(3);
+    publisher.setDrainRetryMillis(20);
+    for (int i = 0; i < 10; ++i) {
+      Assert.assertTrue(publisher.publishEvent("text/plain", "Message " + i));
+    }
+    Assert.assertTrue(publisher.publishEventAsync("text/plain", "Message 10", null).get());
+    Thread.sleep(100);
+    Assert.assertTrue(decoratee.messages.isEmpty());
+    decoratee.available = true;
+    waitForMessages(decoratee, 11);
+    publisher.shutdown();
+    for (int i = 0; i < 11; ++i) {
+      Assert.assertEquals("Message " + i, decoratee.messages.get(i));
+    }
+    Assert.assertEquals(1, folder.list(new SuffixFilter(".log")).length);
+  }
+
+  @Test
+  public void testCheckpointSurvivesRestartAndTornRecordIsTruncated() throws Exception {
+    final File folder = cleanFolder("restartTest");
+    final RecordingPublisher decoratee = new RecordingPublisher();
+    OutboxEventPublisher publisher = new OutboxEventPublisher(decoratee, folder.getPath());
+    publisher.publishEvent("text/plain", "Message 0");
+    waitForMessages(decoratee, 1);
+    publisher.shutdown();
+    decoratee.available = false;
+    publisher = new OutboxEventPublisher(decoratee, folder.getPath());
+    publisher.publishEvent("text/plain", "Message 1");
+    publisher.publishEvent(null, "Message 2");
+    publisher.shutdown();
+    //Simulate a torn write of another record
+    final File segment = folder.listFiles(new SuffixFilter(".log"))[0];
+    RandomAccessFile file = new RandomAccessFile(segment, "rw");
+    file.seek(file.length());
+    file.write(new byte[]{0, 0, 0, 100, 1, 2});
+    file.close();
+    decoratee.available = true;
+    publisher = new OutboxEventPublisher(decoratee, folder.getPath());
+    publisher.publishEvent("text/plain", "Message 3");
+    waitForMessages(decoratee, 4);
+    publisher.shutdown();
+    Assert.assertEquals("Message 0", decoratee.messages.get(0));
+    Assert.assertEquals("Message 1", decoratee.messages.get(1));
+    Assert.assertEquals("Message 2", decoratee.messages.get(2));
+    Assert.assertEquals("Message 3", decoratee.messages.get(3));
+    Assert.assertNull(decoratee.contentTypes.get(2));
+  }
+
+  @Test
+  public void testEventsLeftInOutboxAreDrainedOnStart() throws Exception {
+    final File folder = cleanFolder("startTest");
+    final RecordingPublisher decoratee = new RecordingPublisher();
+    decoratee.available = false;
+    OutboxEventPublisher publisher = new OutboxEventPublisher(decoratee, folder.getPath());
+    publisher.publishEvent("text/plain", "Message 0");
+    publisher.publishEvent("text/plain", "Message 1");
+    publisher.shutdown();
+    decoratee.available = true;
+    publisher = new OutboxEventPublisher(decoratee, folder.getPath());
+    publisher.start();
+    waitForMessages(decoratee, 2);
+    publisher.shutdown();
+    Assert.assertEquals("Message 0", decoratee.messages.get(0));
+    Assert.assertEquals("Message 1", decoratee.messages.get(1));
+  }
+
+  @Test
+  public void testFailureWithinBatchDoesNotPublishLaterEventsTwice() throws Exception {
+    final File folder = cleanFolder("orderTest");
+    final RecordingPublisher decoratee = new RecordingPublisher();
+    decoratee.available = false;
+    decoratee.failOnceOn = "Message 1";
+    OutboxEventPublisher publisher = new OutboxEventPublisher(decoratee, folder.getPath());
+    publisher.setDrainBatchSize(3);
+    publisher.setDrainRetryMillis(20);
+    for (int i = 0; i < 3; ++i) {
+      publisher.publishEvent("text/plain", "Message " + i);
+    }
+    decoratee.available = true;
+    waitForMessages(decoratee, 3);
+    Thread.sleep(100);
+    publisher.shutdown();
+    Assert.assertEquals(3, decoratee.messages.size());
+    for (int i = 0; i < 3; ++i) {
+      Assert.assertEquals("Message " + i, decoratee.messages.get(i));
+    }
+  }
+
+  @Test
+  public void testRejectedEventIsDeadLetteredAfterMaxAttempts() throws Exception {
+    final File folder = cleanFolder("deadLetterTest");
+    final RecordingPublisher decoratee = new RecordingPublisher();
+    decoratee.rejected = "Message 1";
+    OutboxEventPublisher publisher = new OutboxEventPublisher(decoratee, folder.getPath());
+    publisher.setDrainRetryMillis(20);
+    publisher.setMaxAttempts(3);
+    for (int i = 0; i < 3; ++i) {
+      publisher.publishEvent("text/plain", "Message " + i);
+    }
+    waitForMessages(decoratee, 2);
+    publisher.shutdown();
+    Assert.assertEquals("Message 0", decoratee.messages.get(0));
+    Assert.assertEquals("Message 2", decoratee.messages.get(1));
+    Assert.assertEquals(1, publisher.getDeadLetteredCount());
+    final File deadLetters = new File(folder, "dead-letters");
+    final FileChannel channel = new RandomAccessFile(deadLetters, "r").getChannel();
+    try {
+      final OutboxEventPublisher.Record record = OutboxEventPublisher.read(channel, 0, channel.size());
+      Assert.assertNotNull(record);
+    }
+    finally {
+      channel.close();
+    }
+  }
+
+  @Test
+  public void testShutdownWaitsForDrainerAndKeepsOutboxClosed() throws Exception {
+    final File folder = cleanFolder("shutdownTest");
+    final RecordingPublisher decoratee = new RecordingPublisher();
+    decoratee.delayMillis = 200;
+    OutboxEventPublisher publisher = new OutboxEventPublisher(decoratee, folder.getPath());
+    publisher.publishEvent("text/plain", "Message 0");
+    Thread.sleep(50);
+    publisher.shutdown();
+    Assert.assertEquals(1, decoratee.messages.size());
+    try {
+      publisher.publishEvent("text/plain", "Message 1");
+      Assert.fail("Outbox should not be opened again once shut down");
+    }
+    catch (EventPublicationException ex) {
+      //Expected
+    }
+    decoratee.delayMillis = 0;
+    publisher.start();
+    publisher.publishEvent("text/plain", "Message 1");
+    waitForMessages(decoratee, 2);
+    Thread.sleep(50);
+    publisher.shutdown();
+    Assert.assertEquals(2, decoratee.messages.size());
+    Assert.assertEquals("Message 0", decoratee.messages.get(0));
+    Assert.assertEquals("Message 1", decoratee.messages.get(1));
+  }
+
+  private static File cleanFolder(String name) {
+    final File folder = new File(FOLDER, name);
+    final File[] files = folder.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    return folder;
+  }
+
+  private static void waitForMessages(RecordingPublisher decoratee, int count) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (decoratee.messages.size() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(count, decoratee.messages.size());
+  }
+
+  private static class RecordingPublisher implements EventPublisher {
+
+    private final List<String> contentTypes = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    private volatile boolean available = true;
+    private volatile String failOnceOn;
+    private volatile String rejected;
+    private volatile long delayMillis;
+
+    @Override
+    public boolean publishEvent(String eventContentType, String eventMessage) {
+      if (delayMillis > 0) {
+        try {
+          Thread.sleep(delayMillis);
+        }
+        catch (InterruptedException ex) {
+          throw new EventPublicationException(ex);
+        }
+      }
+      if (!available) {
+        throw new EventPublicationException(null);
+      }
+      if (eventMessage.equals(rejected)) {
+        return false;
+      }
+      if (eventMessage.equals(failOnceOn)) {
+        failOnceOn = null;
+        throw new EventPublicationException(null);
+      }
+      contentTypes.add(eventContentType);
+      messages.add(eventMessage);
+      return true;
+    }
+
+    @Override
+    public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Future<Boolean> publishEventAsync(String eventContentType, String eventMessage,
+                                             PublicationCallback callback) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static class SuffixFilter implements FilenameFilter {
+
+    private final String suffix;
+
+    public SuffixFilter(String suffix) {
+      this.suffix = suffix;
+    }
+
+    @Override
+    public boolean accept(File dir, String name) {
+      return name.endsWith(suffix);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests persistence and eviction of the segmented file cache.
+ */
+public class SegmentedFileCacheTest {
+
+  private static final String FOLDER = "./target/cache/";
+
+  @Test
+  public void testEntriesAreReusedAcrossRestarts() throws Exception {
+    final File directory = newDirectory("restart");
+    SegmentedFileCache cache = new SegmentedFileCache(directory, 1024 * 1024, 64 * 1024);
+    cache.put("http://localhost/events/1", "first".getBytes("UTF-8"));
+    cache.put("http://localhost/events/2", "second".getBytes("UTF-8"));
+    cache.put("http://localhost/events/1", "first again".getBytes("UTF-8"));
+    Assert.assertNull(cache.get("http://localhost/events/3"));
+    cache.close();
+    cache = new SegmentedFileCache(directory, 1024 * 1024, 64 * 1024);
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals("first again", new String(cache.get("http://localhost/events/1"), "UTF-8"));
+    Assert.assertEquals("second", new String(cache.get("http://localhost/events/2"), "UTF-8"));
+    cache.close();
+  }
+
+  @Test
+  public void testSizeIsCappedKeepingRecentlyUsedEntries() throws Exception {
+    final File directory = newDirectory("eviction");
+    final byte[] value = new byte[1000];
+    Arrays.fill(value, (byte) 7);
+    SegmentedFileCache cache = new SegmentedFileCache(directory, 8 * 1024, 4 * 1024);
+    cache.put("hot", value);
+    for (int i = 0; i < 100; ++i) {
+      cache.put("cold-" + i, value);
+      Assert.assertNotNull(cache.get("hot"));
+    }
+    Assert.assertNull(cache.get("cold-0"));
+    Assert.assertNotNull(cache.get("cold-99"));
+    long total = 0;
+    for (File file : directory.listFiles()) {
+      total += file.length();
+    }
+    Assert.assertTrue(total <= 8 * 1024 + 4 * 1024);
+    cache.close();
+  }
+
+  @Test
+  public void testClosedCacheIsOpenedAgainOnRetrieval() throws Exception {
+    final File directory = newDirectory("reopen");
+    final SegmentedFileCache cache = SegmentedFileCache.getCache(directory, 1024 * 1024, 64 * 1024);
+    Assert.assertSame(cache, SegmentedFileCache.getCache(directory, 1024 * 1024, 64 * 1024));
+    cache.put("http://localhost/events/1", "first".getBytes("UTF-8"));
+    cache.close();
+    Assert.assertTrue(cache.isClosed());
+    Assert.assertNull(cache.get("http://localhost/events/1"));
+    cache.put("http://localhost/events/2", "second".getBytes("UTF-8"));
+    final SegmentedFileCache reopened = SegmentedFileCache.getCache(directory, 1024 * 1024, 64 * 1024);
+    Assert.assertNotSame(cache, reopened);
+    Assert.assertEquals(1, reopened.size());
+    Assert.assertEquals("first", new String(reopened.get("http://localhost/events/1"), "UTF-8"));
+    reopened.close();
+  }
+
+  @Test
+  public void testCorruptValueIsDroppedOnRetrieval() throws Exception {
+    final File directory = newDirectory("corrupt");
+    SegmentedFileCache cache = new SegmentedFileCache(directory, 1024 * 1024, 64 * 1024);
+    cache.put("http://localhost/events/1", "first".getBytes("UTF-8"));
+    cache.put("http://localhost/events/2", "second".getBytes("UTF-8"));
+    cache.close();
+    //Flip the last byte of the value of the first record
+    final RandomAccessFile file = new RandomAccessFile(new File(directory, "segment-0.cache"), "rw");
+    final long position = 12 + "http://localhost/events/1".length() + "first".length() - 1;
+    file.seek(position);
+    final int last = file.read();
+    file.seek(position);
+    file.write(last ^ 0xff);
+    file.close();
+    cache = new SegmentedFileCache(directory, 1024 * 1024, 64 * 1024);
+    Assert.assertEquals(2, cache.size());
+    Assert.assertNull(cache.get("http://localhost/events/1"));
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals("second", new String(cache.get("http://localhost/events/2"), "UTF-8"));
+    cache.close();
+  }
+
+  private File newDirectory(String name) {
+    final File directory = new File(FOLDER, name);
+    if (directory.exists()) {
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+    }
+    return directory;
+  }
+}
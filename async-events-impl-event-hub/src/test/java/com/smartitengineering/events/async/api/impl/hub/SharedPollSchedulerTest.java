@@ -0,0 +1,266 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.EventConsumer;
+import com.smartitengineering.util.rest.client.ConnectionConfig;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests periodic polls scheduled on the shared poll scheduler.
+ */
+public class SharedPollSchedulerTest {
+
+  @Test
+  public void testFirstPollIsJitteredWithinInterval() throws Exception {
+    final SharedPollScheduler scheduler = new SharedPollScheduler(4, 64, 10);
+    final List<SharedPollScheduler.PeriodicPoll> polls = new ArrayList<SharedPollScheduler.PeriodicPoll>();
+    final List<Long> firstPolls = Collections.synchronizedList(new ArrayList<Long>());
+    final int count = 20;
+    final CountDownLatch polled = new CountDownLatch(count);
+    final long start = System.nanoTime();
+    try {
+      for (int i = 0; i < count; ++i) {
+        final AtomicInteger runs = new AtomicInteger();
+        polls.add(scheduler.schedulePoll(new Runnable() {
+
+          @Override
+          public void run() {
+            if (runs.incrementAndGet() == 1) {
+              firstPolls.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+              polled.countDown();
+            }
+          }
+        }, 500));
+      }
+      Assert.assertTrue(polled.await(5, TimeUnit.SECONDS));
+    }
+    finally {
+      for (SharedPollScheduler.PeriodicPoll poll : polls) {
+        poll.cancel();
+      }
+      scheduler.shutdown();
+    }
+    final long first = Collections.min(firstPolls);
+    final long last = Collections.max(firstPolls);
+    Assert.assertTrue("Last first poll at " + last + "ms", last < 700);
+    Assert.assertTrue("First polls spread over " + (last - first) + "ms", last - first >= 100);
+  }
+
+  @Test
+  public void testFirstPollWaitsForInitialDelay() throws Exception {
+    final SharedPollScheduler scheduler = new SharedPollScheduler(1, 16, 10) {
+
+      @Override
+      protected long getInitialDelay(long intervalMillis) {
+        return 300;
+      }
+    };
+    final CountingTask task = new CountingTask();
+    final SharedPollScheduler.PeriodicPoll poll = scheduler.schedulePoll(task, 1000);
+    try {
+      Thread.sleep(150);
+      Assert.assertEquals(0, task.runs.get());
+      Thread.sleep(400);
+      Assert.assertEquals(1, task.runs.get());
+    }
+    finally {
+      poll.cancel();
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  public void testPollIsSkippedWhilePreviousPollRuns() throws Exception {
+    final SharedPollScheduler scheduler = new SharedPollScheduler(4, 16, 10);
+    final CountingTask task = new CountingTask();
+    task.gate = new CountDownLatch(1);
+    final SharedPollScheduler.PeriodicPoll poll = scheduler.schedulePoll(task, 20);
+    try {
+      Thread.sleep(300);
+      Assert.assertEquals(1, task.runs.get());
+      task.gate.countDown();
+      Thread.sleep(300);
+      Assert.assertTrue(task.runs.get() > 1);
+      Assert.assertEquals(1, task.maxConcurrent.get());
+    }
+    finally {
+      poll.cancel();
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  public void testCancelledPollIsNotRunAgain() throws Exception {
+    final SharedPollScheduler scheduler = new SharedPollScheduler(1, 16, 10);
+    final CountingTask task = new CountingTask();
+    final SharedPollScheduler.PeriodicPoll poll = scheduler.schedulePoll(task, 20);
+    try {
+      final long deadline = System.currentTimeMillis() + 5000;
+      while (task.runs.get() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      poll.cancel();
+      //A poll already handed to the workers may still run once
+      final int runs = task.runs.get();
+      Thread.sleep(300);
+      Assert.assertTrue(task.runs.get() <= runs + 1);
+    }
+    finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  public void testPollIsSkippedWhenWorkersAreSaturated() throws Exception {
+    final SharedPollScheduler scheduler = new SharedPollScheduler(1, 1, 10);
+    final CountingTask blocker = new CountingTask();
+    blocker.gate = new CountDownLatch(1);
+    final CountingTask queued = new CountingTask();
+    final CountingTask task = new CountingTask();
+    scheduler.schedule(blocker, 0);
+    scheduler.schedule(queued, 0);
+    final SharedPollScheduler.PeriodicPoll poll = scheduler.schedulePoll(task, 20);
+    try {
+      Thread.sleep(300);
+      Assert.assertEquals(1, blocker.runs.get());
+      Assert.assertEquals(0, queued.runs.get());
+      Assert.assertEquals(0, task.runs.get());
+      blocker.gate.countDown();
+      Thread.sleep(300);
+      Assert.assertEquals(1, queued.runs.get());
+      //Skipped polls do not keep later polls from running
+      Assert.assertTrue(task.runs.get() > 0);
+    }
+    finally {
+      poll.cancel();
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  public void testRejectedTaskIsRetried() throws Exception {
+    final SharedPollScheduler scheduler = new SharedPollScheduler(1, 1, 10);
+    final CountingTask blocker = new CountingTask();
+    blocker.gate = new CountDownLatch(1);
+    final CountingTask queued = new CountingTask();
+    final CountingTask rejected = new CountingTask();
+    try {
+      Assert.assertNull(scheduler.schedule(blocker, 0));
+      scheduler.schedule(queued, 0);
+      scheduler.schedule(rejected, 0);
+      Thread.sleep(250);
+      Assert.assertEquals(0, rejected.runs.get());
+      blocker.gate.countDown();
+      final long deadline = System.currentTimeMillis() + 5000;
+      while (rejected.runs.get() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      Assert.assertEquals(1, queued.runs.get());
+      Assert.assertEquals(1, rejected.runs.get());
+    }
+    finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  public void testSubscriberPollsOnSharedScheduler() throws Exception {
+    final StubSubscriber subscriber = new StubSubscriber();
+    final SubscriptionConfig config = new SubscriptionConfig();
+    config.setSharedScheduler(true);
+    config.setPollIntervalMillis(50);
+    subscriber.setSubscriptionConfig(config);
+    subscriber.initCronJob();
+    try {
+      Thread.sleep(400);
+      Assert.assertTrue(subscriber.polls.get() >= 3);
+    }
+    finally {
+      subscriber.stopPolling();
+    }
+    final int polls = subscriber.polls.get();
+    Thread.sleep(200);
+    Assert.assertTrue(subscriber.polls.get() <= polls + 1);
+  }
+
+  /**
+   * Counts its runs, optionally holding each run at a gate.
+   */
+  private static class CountingTask implements Runnable {
+
+    private final AtomicInteger runs = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private volatile CountDownLatch gate;
+
+    @Override
+    public void run() {
+      runs.incrementAndGet();
+      final int current = concurrent.incrementAndGet();
+      int max = maxConcurrent.get();
+      while (current > max && !maxConcurrent.compareAndSet(max, current)) {
+        max = maxConcurrent.get();
+      }
+      try {
+        if (gate != null) {
+          gate.await();
+        }
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      finally {
+        concurrent.decrementAndGet();
+      }
+    }
+  }
+
+  private static class StubSubscriber extends EventSubscriberImpl {
+
+    private final AtomicInteger polls = new AtomicInteger();
+
+    public StubSubscriber() throws Exception {
+      super("0/1 * * * * ?", "http://localhost:10080/hub/api/channels/test/events", getConfig(),
+            new FileSystemUriStorer("./target/store/", "sharedPollTest.txt"),
+            Collections.<EventConsumer>emptyList());
+    }
+
+    @Override
+    public void poll() {
+      polls.incrementAndGet();
+    }
+
+    private static ConnectionConfig getConfig() {
+      ConnectionConfig config = new ConnectionConfig();
+      config.setBasicUri("");
+      config.setContextPath("/hub/");
+      config.setHost("localhost");
+      config.setPort(10080);
+      return config;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.hub;
+
+import com.smartitengineering.events.async.api.UriStorer;
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests coalescing of checkpoints by the write behind URI storer.
+ */
+public class WriteBehindUriStorerTest {
+
+  @Test
+  public void testLatestCheckpointIsWrittenBehind() throws Exception {
+    final RecordingUriStorer decoratee = new RecordingUriStorer();
+    final WriteBehindUriStorer storer = new WriteBehindUriStorer(decoratee);
+    Assert.assertEquals("http://localhost/events?before=0", storer.getNextUri());
+    for (int i = 1; i <= 1000; ++i) {
+      storer.storeCheckpoint("http://localhost/events?before=" + i, "event-" + i);
+      Assert.assertEquals("event-" + i, storer.getLastConsumedEventId());
+    }
+    storer.close();
+    Assert.assertEquals("http://localhost/events?before=1000", decoratee.nextUri);
+    Assert.assertEquals("event-1000", decoratee.lastConsumedEventId);
+    Assert.assertTrue(decoratee.writes.get() < 1000);
+  }
+
+  @Test
+  public void testCloseLeavesJournalWritable() throws Exception {
+    final File journal = new File("./target/store/", "writeBehindTest.journal");
+    journal.delete();
+    final JournalUriStorer decoratee = new JournalUriStorer("./target/store/", "writeBehindTest.journal");
+    final WriteBehindUriStorer storer = new WriteBehindUriStorer(decoratee);
+    storer.setFlushIntervalMillis(1L);
+    for (int i = 1; i <= 200; ++i) {
+      storer.storeCheckpoint("http://localhost/events?before=" + i, "event-" + i);
+      if (i % 50 == 0) {
+        Thread.sleep(5);
+      }
+    }
+    storer.close();
+    final JournalUriStorer reloaded = new JournalUriStorer("./target/store/", "writeBehindTest.journal");
+    Assert.assertEquals("http://localhost/events?before=200", reloaded.getNextUri());
+    Assert.assertEquals("event-200", reloaded.getLastConsumedEventId());
+    reloaded.close();
+  }
+
+  private static class RecordingUriStorer implements UriStorer {
+
+    private final AtomicInteger writes = new AtomicInteger();
+    private volatile String nextUri = "http://localhost/events?before=0";
+    private volatile String lastConsumedEventId;
+
+    @Override
+    public void storeNextUri(String uri) {
+      storeCheckpoint(uri, null);
+    }
+
+    @Override
+    public void storeCheckpoint(String uri, String lastConsumedEventId) {
+      writes.incrementAndGet();
+      this.nextUri = uri;
+      this.lastConsumedEventId = lastConsumedEventId;
+    }
+
+    @Override
+    public String getNextUri() {
+      return nextUri;
+    }
+
+    @Override
+    public String getLastConsumedEventId() {
+      return lastConsumedEventId;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.memory;
+
+import com.smartitengineering.events.async.api.ConsumableEvent;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * An event published on the in memory event bus. The same instance is handed to every subscriber, hence it is
+ * immutable.
+ * @author imyousuf
+ */
+public class InMemoryEvent implements ConsumableEvent {
+
+  private final long sequence;
+  private final String contentType;
+  private final String content;
+  private final long creationTime;
+
+  public InMemoryEvent(long sequence, String contentType, String content, long creationTime) {
+    this.sequence = sequence;
+    this.contentType = contentType;
+    this.content = content;
+    this.creationTime = creationTime;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  @Override
+  public String getId() {
+    return String.valueOf(sequence);
+  }
+
+  @Override
+  public String getUniqueId() {
+    return getId();
+  }
+
+  @Override
+  public String getContentType() {
+    return contentType;
+  }
+
+  @Override
+  public String getContentAsString() {
+    return content;
+  }
+
+  @Override
+  public InputStream getContentAsStream() {
+    if (content == null) {
+      return new ByteArrayInputStream(new byte[0]);
+    }
+    try {
+      return new ByteArrayInputStream(content.getBytes("UTF-8"));
+    }
+    catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * @return Creation date in ISO 8601 format
+   */
+  @Override
+  public String getCreationDate() {
+    return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date(creationTime));
+  }
+
+  public long getCreationTime() {
+    return creationTime;
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.memory;
+
+import com.google.inject.Singleton;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connects in memory publishers with in memory subscribers of the same JVM. Every event published is offered to the
+ * queue of every subscriber registered at the time; unlike the hub, events are not retained for subscribers that
+ * register later. Being a singleton, publishers and subscribers created by the same injector share the bus.
+ * @author imyousuf
+ */
+@Singleton
+public class InMemoryEventBus {
+
+  private final AtomicLong sequence = new AtomicLong();
+  private final CopyOnWriteArrayList<InMemoryEventSubscriber> subscribers =
+                                                              new CopyOnWriteArrayList<InMemoryEventSubscriber>();
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  /**
+   * Publish an event to all subscribers.
+   * @return True if every subscriber accepted the event, false if any of them had its queue full
+   */
+  public boolean publish(String eventContentType, String eventMessage) {
+    final InMemoryEvent event = new InMemoryEvent(sequence.incrementAndGet(), eventContentType, eventMessage,
+                                                  System.currentTimeMillis());
+    boolean accepted = true;
+    for (InMemoryEventSubscriber subscriber : subscribers) {
+      if (!subscriber.offer(event)) {
+        logger.warn("Queue of subscriber full, event " + event.getId() + " not delivered to it");
+        accepted = false;
+      }
+    }
+    return accepted;
+  }
+
+  public void register(InMemoryEventSubscriber subscriber) {
+    subscribers.addIfAbsent(subscriber);
+  }
+
+  public void unregister(InMemoryEventSubscriber subscriber) {
+    subscribers.remove(subscriber);
+  }
+
+  public int getSubscriberCount() {
+    return subscribers.size();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.memory;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.smartitengineering.events.async.api.EventPublisher;
+import com.smartitengineering.events.async.api.PublicationCallback;
+import com.smartitengineering.events.async.api.PublicationFuture;
+import com.smartitengineering.events.async.api.PublicationResult;
+import com.smartitengineering.events.async.api.PublishableEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * A publisher handing events to the subscribers of the same JVM through the {@link InMemoryEventBus}, without any
+ * network hop. Publication completes once the event is queued for every subscriber, so asynchronous publications
+ * are complete when returned.
+ * @author imyousuf
+ */
+@Singleton
+public class InMemoryEventPublisher implements EventPublisher {
+
+  private final InMemoryEventBus bus;
+  @Inject(optional = true)
+  @Named("publicationCallbackExecutor")
+  private Executor callbackExecutor;
+
+  @Inject
+  public InMemoryEventPublisher(InMemoryEventBus bus) {
+    this.bus = bus;
+  }
+
+  @Override
+  public boolean publishEvent(String eventContentType, String eventMessage) {
+    return bus.publish(eventContentType, eventMessage);
+  }
+
+  @Override
+  public List<PublicationResult> publishEvents(Collection<PublishableEvent> events) {
+    final List<PublicationResult> results = new ArrayList<PublicationResult>(events.size());
+    for (PublishableEvent event : events) {
+      results.add(new PublicationResult(event, bus.publish(event.getContentType(), event.getMessage()), null));
+    }
+    return results;
+  }
+
+  @Override
+  public Future<Boolean> publishEventAsync(String eventContentType, String eventMessage,
+                                           PublicationCallback callback) {
+    final PublicationFuture future = new PublicationFuture(callback, callbackExecutor);
+    future.set(bus.publish(eventContentType, eventMessage));
+    return future;
+  }
+}
@@ -0,0 +1,322 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.memory;
+
+import com.google.inject.Inject;
+import com.google.inject.internal.Nullable;
+import com.google.inject.name.Named;
+import com.smartitengineering.events.async.api.BatchEventConsumer;
+import com.smartitengineering.events.async.api.EventConsumer;
+import com.smartitengineering.events.async.api.EventSubscriber;
+import com.smartitengineering.events.async.api.StreamEventConsumer;
+import com.smartitengineering.events.async.api.SubscriptionPreconditionChecker;
+import com.smartitengineering.events.async.api.UriStorer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A subscriber receiving events published by the {@link InMemoryEventPublisher} of the same JVM. Events are queued
+ * in a lock-free queue as they are published and delivered to the consumers from a dedicated thread as soon as they
+ * arrive, instead of being polled for; push delivery can be turned off in which case events are delivered on
+ * {@link #poll()} only. Consumers are handed the events with the same start, consume and end sequence as the hub
+ * subscriber; should a consumer fail, delivery stops and resumes from the failed event on the next delivery, so
+ * events are delivered at least once. Events are held back while there are no consumers or the precondition is not
+ * met.
+ * <p>
+ * To use it in place of the hub, bind {@link EventPublisher} to {@link InMemoryEventPublisher} and
+ * {@link EventSubscriber} to this class; consumers are injected the same way as for the hub subscriber.
+ * @author imyousuf
+ */
+public class InMemoryEventSubscriber implements EventSubscriber {
+
+  private final InMemoryEventBus bus;
+  private final List<EventConsumer> consumers = new CopyOnWriteArrayList<EventConsumer>();
+  private final ConcurrentLinkedQueue<InMemoryEvent> queue = new ConcurrentLinkedQueue<InMemoryEvent>();
+  private final AtomicInteger queueSize = new AtomicInteger();
+  private final List<InMemoryEvent> pendingEvents = new ArrayList<InMemoryEvent>();
+  @Inject(optional = true)
+  private SubscriptionPreconditionChecker checker;
+  @Inject(optional = true)
+  @Named("subscribeInMemoryPushDelivery")
+  private Boolean pushDelivery = Boolean.TRUE;
+  @Inject(optional = true)
+  @Named("subscribeInMemoryRetryMillis")
+  private Long retryMillis = new Long(1000);
+  @Inject(optional = true)
+  @Named("subscribeInMemoryQueueCapacity")
+  private Integer queueCapacity = new Integer(0);
+  @Inject(optional = true)
+  @Named("subscribeInMemoryMaxEventsPerDelivery")
+  private Integer maxEventsPerDelivery = new Integer(1000);
+  private final Object delivererLock = new Object();
+  private volatile Thread deliverer;
+  private volatile boolean running = true;
+  protected final transient Logger logger = LoggerFactory.getLogger(getClass());
+
+  @Inject
+  public InMemoryEventSubscriber(InMemoryEventBus bus, @Nullable Collection<EventConsumer> consumers) {
+    this.bus = bus;
+    if (consumers != null && !consumers.isEmpty()) {
+      this.consumers.addAll(consumers);
+    }
+    bus.register(this);
+  }
+
+  @Override
+  public void addConsumer(EventConsumer consumer) {
+    consumers.add(consumer);
+    wakeDeliverer();
+  }
+
+  @Override
+  public void removeConsumer(EventConsumer consumer) {
+    consumers.remove(consumer);
+  }
+
+  @Override
+  public void removeAllConsumers() {
+    consumers.clear();
+  }
+
+  @Override
+  public void poll() {
+    deliver();
+  }
+
+  @Override
+  public Collection<EventConsumer> getConsumers() {
+    return Collections.unmodifiableCollection(consumers);
+  }
+
+  /**
+   * @return Null as events are pushed to the subscriber rather than polled for on a schedule
+   */
+  @Override
+  public String getCronExpressionForPollSubscription() {
+    return null;
+  }
+
+  @Override
+  public SubscriptionPreconditionChecker getPreconditionChecker() {
+    return checker;
+  }
+
+  /**
+   * @return Null as there is no feed to keep track of
+   */
+  @Override
+  public UriStorer getNextUriStorer() {
+    return null;
+  }
+
+  public void setPreconditionChecker(SubscriptionPreconditionChecker checker) {
+    this.checker = checker;
+  }
+
+  public void setPushDelivery(boolean pushDelivery) {
+    this.pushDelivery = pushDelivery;
+  }
+
+  public void setRetryMillis(long retryMillis) {
+    this.retryMillis = retryMillis;
+  }
+
+  public void setQueueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * Retrieve the number of events queued, not counting those held back after a consumer failed.
+   */
+  public int getQueueDepth() {
+    return queueSize.get();
+  }
+
+  /**
+   * Stop receiving events and stop the delivery thread. Events not yet delivered are discarded.
+   */
+  public void shutdown() {
+    bus.unregister(this);
+    running = false;
+    final Thread thread = deliverer;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * Queue an event published on the bus.
+   * @return False if the queue is full
+   */
+  protected boolean offer(InMemoryEvent event) {
+    final int capacity = queueCapacity.intValue();
+    if (capacity > 0 && queueSize.incrementAndGet() > capacity) {
+      queueSize.decrementAndGet();
+      return false;
+    }
+    else if (capacity <= 0) {
+      queueSize.incrementAndGet();
+    }
+    queue.offer(event);
+    if (pushDelivery.booleanValue()) {
+      ensureDelivererStarted();
+      wakeDeliverer();
+    }
+    return true;
+  }
+
+  /**
+   * Deliver the events queued, preceded by those held back by an earlier failure, to the consumers.
+   * @return True if there was nothing to deliver or all events were delivered
+   */
+  protected synchronized boolean deliver() {
+    if (checker != null && !checker.isPreconditionMet()) {
+      logger.warn("Holding back events as pre-condition for delivery not met!");
+      return false;
+    }
+    final List<EventConsumer> currentConsumers = new ArrayList<EventConsumer>(consumers);
+    if (currentConsumers.isEmpty()) {
+      return pendingEvents.isEmpty() && queue.isEmpty();
+    }
+    final List<InMemoryEvent> events = new ArrayList<InMemoryEvent>(pendingEvents);
+    pendingEvents.clear();
+    final int maxEvents = Math.max(1, maxEventsPerDelivery.intValue());
+    InMemoryEvent next;
+    while (events.size() < maxEvents && (next = queue.poll()) != null) {
+      queueSize.decrementAndGet();
+      events.add(next);
+    }
+    if (events.isEmpty()) {
+      return true;
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("Delivering " + events.size() + " events");
+    }
+    for (EventConsumer consumer : currentConsumers) {
+      try {
+        consumer.startConsumption();
+      }
+      catch (RuntimeException ex) {
+        logger.warn("Consumer failed to start consumption", ex);
+      }
+    }
+    int delivered = 0;
+    try {
+      for (; delivered < events.size(); ++delivered) {
+        for (EventConsumer consumer : currentConsumers) {
+          if (!(consumer instanceof BatchEventConsumer)) {
+            consumeEvent(consumer, events.get(delivered));
+          }
+        }
+      }
+    }
+    catch (RuntimeException ex) {
+      logger.warn("Consumer failed to consume event " + events.get(delivered).getId() + ", will retry", ex);
+    }
+    if (delivered > 0) {
+      for (EventConsumer consumer : currentConsumers) {
+        if (consumer instanceof BatchEventConsumer) {
+          try {
+            ((BatchEventConsumer) consumer).consumeBatch(events.subList(0, delivered));
+          }
+          catch (RuntimeException ex) {
+            logger.warn("Consumer failed to consume batch of events, will retry", ex);
+            delivered = 0;
+          }
+        }
+      }
+    }
+    final boolean prematureEnd = delivered < events.size();
+    pendingEvents.addAll(events.subList(delivered, events.size()));
+    for (EventConsumer consumer : currentConsumers) {
+      try {
+        consumer.endConsumption(prematureEnd);
+      }
+      catch (RuntimeException ex) {
+        logger.warn("Consumer failed to end consumption", ex);
+      }
+    }
+    return !prematureEnd;
+  }
+
+  protected static void consumeEvent(EventConsumer consumer, InMemoryEvent event) {
+    if (consumer instanceof StreamEventConsumer) {
+      ((StreamEventConsumer) consumer).consumeStream(event.getContentType(), event.getContentAsStream());
+    }
+    else {
+      consumer.consume(event.getContentType(), event.getContentAsString());
+    }
+  }
+
+  /**
+   * Start the delivery thread, if not already, without locking the subscriber so that publishers are not held up by
+   * a delivery in progress.
+   */
+  protected void ensureDelivererStarted() {
+    if (deliverer != null) {
+      return;
+    }
+    synchronized (delivererLock) {
+      if (deliverer == null && running) {
+        final Thread thread = new Thread(new Runnable() {
+
+          @Override
+          public void run() {
+            deliverContinuously();
+          }
+        }, "in-memory-event-delivery");
+        thread.setDaemon(true);
+        deliverer = thread;
+        thread.start();
+      }
+    }
+  }
+
+  protected void deliverContinuously() {
+    while (running) {
+      boolean delivered;
+      try {
+        delivered = deliver();
+      }
+      catch (RuntimeException ex) {
+        logger.warn("Could not deliver events", ex);
+        delivered = false;
+      }
+      if (running && (!delivered || queue.isEmpty())) {
+        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(retryMillis.longValue()));
+      }
+    }
+  }
+
+  private void wakeDeliverer() {
+    final Thread thread = deliverer;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+}
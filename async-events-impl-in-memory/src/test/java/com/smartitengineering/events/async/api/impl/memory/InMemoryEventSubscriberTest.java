@@ -0,0 +1,189 @@
+/*
+ *
+ * This is a framework for Asynchronous Event processing based on event hub.
+ * Copyright (C) 2011  Imran M Yousuf (imyousuf@smartitengineering.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.smartitengineering.events.async.api.impl.memory;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.TypeLiteral;
+import com.smartitengineering.events.async.api.BatchEventConsumer;
+import com.smartitengineering.events.async.api.ConsumableEvent;
+import com.smartitengineering.events.async.api.EventConsumer;
+import com.smartitengineering.events.async.api.EventPublisher;
+import com.smartitengineering.events.async.api.EventSubscriber;
+import com.smartitengineering.events.async.api.StreamEventConsumer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests delivery of events from the in memory publisher to the in memory subscriber.
+ */
+public class InMemoryEventSubscriberTest {
+
+  @Test
+  public void testEventsArePushedToConsumersInOrder() throws Exception {
+    final InMemoryEventBus bus = new InMemoryEventBus();
+    final RecordingConsumer consumer = new RecordingConsumer();
+    final InMemoryEventSubscriber subscriber = new InMemoryEventSubscriber(bus, Collections.<EventConsumer>singleton(
+        consumer));
+    final EventPublisher publisher = new InMemoryEventPublisher(bus);
+    for (int i = 0; i < 100; ++i) {
+      Assert.assertTrue(publisher.publishEvent("text/plain", "Message " + i));
+    }
+    Assert.assertTrue(publisher.publishEventAsync("text/plain", "Message 100", null).get());
+    waitForMessages(consumer, 101);
+    subscriber.shutdown();
+    for (int i = 0; i <= 100; ++i) {
+      Assert.assertEquals("Message " + i, consumer.messages.get(i));
+    }
+    Assert.assertEquals(consumer.starts, consumer.ends);
+    Assert.assertEquals(0, subscriber.getQueueDepth());
+    Assert.assertEquals(0, bus.getSubscriberCount());
+  }
+
+  @Test
+  public void testDeliveryResumesFromFailedEvent() {
+    final InMemoryEventBus bus = new InMemoryEventBus();
+    final RecordingConsumer consumer = new RecordingConsumer();
+    consumer.failOn = "Message 1";
+    final InMemoryEventSubscriber subscriber = new InMemoryEventSubscriber(bus, null);
+    subscriber.setPushDelivery(false);
+    subscriber.addConsumer(consumer);
+    final InMemoryEventPublisher publisher = new InMemoryEventPublisher(bus);
+    publisher.publishEvent("text/plain", "Message 0");
+    publisher.publishEvent("text/plain", "Message 1");
+    publisher.publishEvent("text/plain", "Message 2");
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList("Message 0"), consumer.messages);
+    Assert.assertTrue(consumer.prematureEnd);
+    consumer.failOn = null;
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList("Message 0", "Message 1", "Message 2"), consumer.messages);
+    Assert.assertFalse(consumer.prematureEnd);
+    subscriber.shutdown();
+  }
+
+  @Test
+  public void testStreamAndBatchConsumersAndQueueCapacity() throws Exception {
+    final InMemoryEventBus bus = new InMemoryEventBus();
+    final StreamConsumer streamConsumer = new StreamConsumer();
+    final BatchConsumer batchConsumer = new BatchConsumer();
+    final InMemoryEventSubscriber subscriber = new InMemoryEventSubscriber(bus, Arrays.<EventConsumer>asList(
+        streamConsumer, batchConsumer));
+    subscriber.setPushDelivery(false);
+    subscriber.setQueueCapacity(2);
+    final InMemoryEventPublisher publisher = new InMemoryEventPublisher(bus);
+    Assert.assertTrue(publisher.publishEvent("text/plain", "\u00e9v\u00e9nement"));
+    Assert.assertTrue(publisher.publishEvent("text/plain", "Message 1"));
+    Assert.assertFalse(publisher.publishEvent("text/plain", "Message 2"));
+    subscriber.poll();
+    Assert.assertEquals(Arrays.asList("\u00e9v\u00e9nement", "Message 1"), streamConsumer.messages);
+    Assert.assertEquals(1, batchConsumer.batches.size());
+    Assert.assertEquals(2, batchConsumer.batches.get(0).size());
+    Assert.assertEquals("Message 1", batchConsumer.batches.get(0).get(1).getContentAsString());
+    subscriber.shutdown();
+  }
+
+  @Test
+  public void testPublisherAndSubscriberAreBoundByGuice() throws Exception {
+    final RecordingConsumer consumer = new RecordingConsumer();
+    final Injector injector = Guice.createInjector(new AbstractModule() {
+
+      @Override
+      protected void configure() {
+        bind(new TypeLiteral<Collection<EventConsumer>>() {
+        }).toInstance(Collections.<EventConsumer>singleton(consumer));
+        bind(EventPublisher.class).to(InMemoryEventPublisher.class);
+        bind(EventSubscriber.class).to(InMemoryEventSubscriber.class);
+      }
+    });
+    final InMemoryEventSubscriber subscriber = (InMemoryEventSubscriber) injector.getInstance(EventSubscriber.class);
+    injector.getInstance(EventPublisher.class).publishEvent("text/plain", "Message 0");
+    waitForMessages(consumer, 1);
+    subscriber.shutdown();
+  }
+
+  private static void waitForMessages(RecordingConsumer consumer, int count) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (consumer.messages.size() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(count, consumer.messages.size());
+  }
+
+  private static class RecordingConsumer implements EventConsumer {
+
+    final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    volatile int starts;
+    volatile int ends;
+    volatile boolean prematureEnd;
+    volatile String failOn;
+
+    @Override
+    public void startConsumption() {
+      starts++;
+    }
+
+    @Override
+    public void consume(String eventContentType, String eventMessage) {
+      if (eventMessage.equals(failOn)) {
+        throw new IllegalStateException("Failing on " + eventMessage);
+      }
+      messages.add(eventMessage);
+    }
+
+    @Override
+    public void endConsumption(boolean prematureEnd) {
+      this.prematureEnd = prematureEnd;
+      ends++;
+    }
+  }
+
+  private static class StreamConsumer extends RecordingConsumer implements StreamEventConsumer {
+
+    @Override
+    public void consumeStream(String eventContentType, InputStream eventContent) {
+      try {
+        final byte[] bytes = new byte[eventContent.available()];
+        eventContent.read(bytes);
+        consume(eventContentType, new String(bytes, "UTF-8"));
+      }
+      catch (IOException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+  }
+
+  private static class BatchConsumer extends RecordingConsumer implements BatchEventConsumer {
+
+    private final List<List<ConsumableEvent>> batches = new ArrayList<List<ConsumableEvent>>();
+
+    @Override
+    public void consumeBatch(List<? extends ConsumableEvent> events) {
+      batches.add(new ArrayList<ConsumableEvent>(events));
+    }
+  }
+}